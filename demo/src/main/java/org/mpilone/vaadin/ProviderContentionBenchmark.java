@@ -0,0 +1,142 @@
+package org.mpilone.vaadin;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.mpilone.vaadin.timeline.*;
+
+/**
+ * A simple contention benchmark that compares the {@link ConcurrentItemProvider}
+ * to a {@link BasicItemProvider} guarded by a coarse lock (the way it must be
+ * used when items are written by background threads). A number of reader
+ * threads query random windows while a writer thread adds batches of items.
+ * The benchmark is run from the command line with optional arguments:
+ * <code>[readers] [seconds] [initialItems]</code>.
+ *
+ * @author mpilone
+ */
+public class ProviderContentionBenchmark {
+
+  private static final long DAY = 24 * 60 * 60 * 1000L;
+  private static final long SPAN = 365 * DAY;
+  private static final int BATCH_SIZE = 100;
+
+  public static void main(String[] args) throws Exception {
+    int readers = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.
+        getRuntime().availableProcessors();
+    int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+    int initialItems = args.length > 2 ? Integer.parseInt(args[2]) : 100000;
+
+    System.out.printf("readers=%d, seconds=%d, initialItems=%d%n", readers,
+        seconds, initialItems);
+
+    // Warm up both implementations before measuring.
+    run("warmup (synchronized)", new SynchronizedTarget(), readers, 2,
+        initialItems);
+    run("warmup (concurrent)", new ConcurrentTarget(), readers, 2,
+        initialItems);
+
+    run("synchronized BasicItemProvider", new SynchronizedTarget(), readers,
+        seconds, initialItems);
+    run("ConcurrentItemProvider", new ConcurrentTarget(), readers, seconds,
+        initialItems);
+  }
+
+  private static void run(String name, final Target target, int readers,
+      int seconds, int initialItems) throws InterruptedException {
+
+    final Random random = new Random(42);
+    target.addAll(createItems(random, initialItems));
+
+    final LongAdder reads = new LongAdder();
+    final LongAdder writes = new LongAdder();
+    final LongAdder itemsRead = new LongAdder();
+    final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+
+    ExecutorService executor = Executors.newFixedThreadPool(readers + 1);
+    for (int i = 0; i < readers; ++i) {
+      executor.execute(() -> {
+        Random r = new Random();
+        while (System.nanoTime() < deadline) {
+          long start = (long) (r.nextDouble() * (SPAN - 7 * DAY));
+          itemsRead.add(target.getItems(new Date(start), new Date(start + 7
+              * DAY)).size());
+          reads.increment();
+        }
+      });
+    }
+    executor.execute(() -> {
+      Random r = new Random();
+      while (System.nanoTime() < deadline) {
+        target.addAll(createItems(r, BATCH_SIZE));
+        writes.increment();
+      }
+    });
+
+    executor.shutdown();
+    executor.awaitTermination(seconds + 60, TimeUnit.SECONDS);
+
+    System.out.printf(
+        "%-32s reads/s=%10.0f  write batches/s=%8.0f  avg items/read=%8.1f%n",
+        name, reads.doubleValue() / seconds, writes.doubleValue() / seconds,
+        itemsRead.doubleValue() / Math.max(reads.doubleValue(), 1));
+  }
+
+  private static List<TimelineItem> createItems(Random random, int count) {
+    List<TimelineItem> items = new ArrayList<>(count);
+    for (int i = 0; i < count; ++i) {
+      long start = (long) (random.nextDouble() * SPAN);
+      long duration = (long) (random.nextDouble() * DAY);
+      items.add(new BasicTimelineItem(UUID.randomUUID().toString(), new Date(
+          start), new Date(start + duration), "Item"));
+    }
+    return items;
+  }
+
+  /**
+   * The provider under test.
+   */
+  private interface Target {
+
+    List<TimelineItem> getItems(Date start, Date end);
+
+    void addAll(List<TimelineItem> items);
+  }
+
+  /**
+   * A basic provider guarded by a coarse lock for both reads and writes.
+   */
+  private static class SynchronizedTarget implements Target {
+
+    private final BasicItemProvider provider = new BasicItemProvider();
+
+    @Override
+    public synchronized List<TimelineItem> getItems(Date start, Date end) {
+      return provider.getItems(start, end);
+    }
+
+    @Override
+    public synchronized void addAll(List<TimelineItem> items) {
+      provider.addAllItems(items);
+    }
+  }
+
+  /**
+   * A concurrent provider with no external locking.
+   */
+  private static class ConcurrentTarget implements Target {
+
+    private final ConcurrentItemProvider provider = new ConcurrentItemProvider();
+
+    @Override
+    public List<TimelineItem> getItems(Date start, Date end) {
+      return provider.getItems(start, end);
+    }
+
+    @Override
+    public void addAll(List<TimelineItem> items) {
+      provider.addAllItems(items);
+    }
+  }
+}
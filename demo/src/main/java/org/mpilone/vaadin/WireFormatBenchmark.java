@@ -0,0 +1,102 @@
+package org.mpilone.vaadin;
+
+import java.util.*;
+
+import org.mpilone.vaadin.timeline.ItemColumnEncoder;
+import org.mpilone.vaadin.timeline.shared.TimelineClientRpc;
+
+import com.vaadin.server.JsonCodec;
+
+/**
+ * A simple benchmark that compares the size and server side encoding time of
+ * the object (<code>setItems</code>) and columnar
+ * (<code>setItemsColumnar</code>) item payloads. The items are encoded to
+ * JSON with the same codec Vaadin uses for RPC parameters. The benchmark is
+ * run from the command line with optional arguments:
+ * <code>[items] [groups] [iterations]</code>.
+ *
+ * @author mpilone
+ */
+public class WireFormatBenchmark {
+
+  private static final long DAY = 24 * 60 * 60 * 1000L;
+
+  public static void main(String[] args) {
+    int itemCount = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+    int groupCount = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+    int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+
+    System.out.printf("items=%d, groups=%d, iterations=%d%n", itemCount,
+        groupCount, iterations);
+
+    List<TimelineClientRpc.Item> items = createItems(new Random(42), itemCount,
+        groupCount);
+
+    // Warm up both encodings before measuring.
+    run("warmup (objects)", () -> encodeObjects(items), iterations);
+    run("warmup (columns)", () -> encodeColumns(items), iterations);
+
+    run("objects", () -> encodeObjects(items), iterations);
+    run("columns", () -> encodeColumns(items), iterations);
+
+    // A following send to the same client only includes new strings.
+    ItemColumnEncoder encoder = new ItemColumnEncoder();
+    encoder.encode(items);
+    run("columns (resend)", () -> encode(encoder.encode(items)), iterations);
+  }
+
+  private static void run(String name, Encoder encoder, int iterations) {
+    int size = 0;
+    long start = System.nanoTime();
+    for (int i = 0; i < iterations; ++i) {
+      size = encoder.encode().length();
+    }
+    double millis = (System.nanoTime() - start) / 1e6 / iterations;
+
+    System.out.printf("%-18s bytes=%10d  encode ms=%8.2f%n", name, size,
+        millis);
+  }
+
+  private static String encodeObjects(List<TimelineClientRpc.Item> items) {
+    TimelineClientRpc.Item[] array = items.toArray(
+        new TimelineClientRpc.Item[items.size()]);
+    return JsonCodec.encode(array, null, TimelineClientRpc.Item[].class, null).
+        getEncodedValue().toJson();
+  }
+
+  private static String encodeColumns(List<TimelineClientRpc.Item> items) {
+    return encode(new ItemColumnEncoder().encode(items));
+  }
+
+  private static String encode(TimelineClientRpc.ItemColumns columns) {
+    return JsonCodec.encode(columns, null, TimelineClientRpc.ItemColumns.class,
+        null).getEncodedValue().toJson();
+  }
+
+  private static List<TimelineClientRpc.Item> createItems(Random random,
+      int count, int groupCount) {
+    List<TimelineClientRpc.Item> items = new ArrayList<>(count);
+    for (int i = 0; i < count; ++i) {
+      long start = (long) (random.nextDouble() * 365 * DAY);
+
+      TimelineClientRpc.Item item = new TimelineClientRpc.Item();
+      item.id = String.valueOf(i);
+      item.start = start;
+      item.end = random.nextBoolean() ? null : start + (long) (random.
+          nextDouble() * DAY);
+      item.content = "Item " + i;
+      item.group = "group-" + random.nextInt(groupCount);
+      item.type = item.end == null ? "box" : "range";
+      items.add(item);
+    }
+    return items;
+  }
+
+  /**
+   * An encoding to measure.
+   */
+  private interface Encoder {
+
+    String encode();
+  }
+}
@@ -5,17 +5,27 @@ import java.util.*;
 import com.vaadin.event.EventRouter;
 
 /**
+ * <p>
  * Base implementation of an item provider that can adjust the window to support
  * a window expansion factor and registration of item set change listeners.
+ * </p>
+ * <p>
+ * The provider can optionally quantize the requested windows into tiles (see
+ * {@link #setTilingEnabled(boolean) }) so that small pans are served from
+ * cached tiles rather than calling {@link #doGetItems(java.util.Date, java.util.Date)
+ * } for every unique window.
+ * </p>
  *
  * @author mpilone
  */
 public abstract class AbstractItemProvider implements
     TimelineItemProvider,
-    TimelineItemProvider.ItemSetChangeNotifier {
+    TimelineItemProvider.ItemSetChangeNotifier,
+    TimelineItemProvider.GroupFilterable {
 
   private final EventRouter eventRouter;
   private float windowExpandFactor;
+  private volatile ItemCache<Tile> tileCache;
 
   /**
    * Constructs the provider.
@@ -40,16 +50,206 @@ public abstract class AbstractItemProvider implements
     this.windowExpandFactor = Math.max(factor, 0.0f);
   }
 
-  @Override
-  public List<TimelineItem> getItems(Date startDate, Date endDate) {
+  /**
+   * Returns the amount that the window will be expanded by when getting items.
+   *
+   * @return the amount to expand the window specified as a decimal
+   */
+  public float getWindowExpandFactor() {
+    return windowExpandFactor;
+  }
 
+  /**
+   * Returns the window that will be queried when getting the items for the
+   * given window, that is the window expanded by the window expand factor.
+   *
+   * @param startDate the start date of the visible timeline window
+   * @param endDate the end date of the visible timeline window
+   *
+   * @return the expanded window
+   */
+  public DateRange getExpandedWindow(Date startDate, Date endDate) {
     long window = endDate.getTime() - startDate.getTime();
     long expandMillis = (long) (window * windowExpandFactor) / 2;
 
-    startDate = new Date(startDate.getTime() - expandMillis);
-    endDate = new Date(endDate.getTime() + expandMillis);
+    return new DateRange(new Date(startDate.getTime() - expandMillis),
+        new Date(endDate.getTime() + expandMillis));
+  }
+
+  /**
+   * <p>
+   * Enables or disables tiling of the requested windows. When enabled, the
+   * expanded window is snapped to power-of-two sized time tiles based on the
+   * length of the window (i.e. the zoom level). Each tile is fetched with
+   * {@link #doGetItems(java.util.Date, java.util.Date) } and cached
+   * separately so the result of {@link #getItems(java.util.Date, java.util.Date)
+   * } is assembled from the cached tiles and only the missing tiles are
+   * fetched. Because any drag produces a unique window, this allows small pans
+   * to be served almost entirely from the cache.
+   * </p>
+   * <p>
+   * When items are requested for a set of groups with
+   * {@link #getItems(java.util.Date, java.util.Date, java.util.Set) }, the
+   * tiles are fetched with
+   * {@link #doGetItems(java.util.Date, java.util.Date, java.util.Set) } and
+   * cached separately for each set of groups. This keeps any group filtering
+   * pushed down by subclasses (e.g. into a database query) at the cost of not
+   * sharing tiles between different sets of groups.
+   * </p>
+   * <p>
+   * The tile cache is cleared whenever an item set change event is fired and
+   * tiles that were being fetched at the time are not cached. Tiling is
+   * disabled by default.
+   * </p>
+   *
+   * @param enabled true to enable tiling, false to disable
+   */
+  public void setTilingEnabled(boolean enabled) {
+    if (enabled && tileCache == null) {
+      tileCache = new ItemCache<>(64, 100000);
+    }
+    else if (!enabled) {
+      tileCache = null;
+    }
+  }
+
+  /**
+   * Returns true if tiling of the requested windows is enabled.
+   *
+   * @return true if enabled
+   */
+  public boolean isTilingEnabled() {
+    return tileCache != null;
+  }
+
+  /**
+   * Returns the number of tiles that were served from the tile cache.
+   *
+   * @return the tile hit count or 0 if tiling is disabled
+   */
+  public long getTileHitCount() {
+    ItemCache<Tile> cache = tileCache;
+    return cache == null ? 0 : cache.getHitCount();
+  }
+
+  /**
+   * Returns the number of tiles that had to be fetched with
+   * {@link #doGetItems(java.util.Date, java.util.Date) }.
+   *
+   * @return the tile miss count or 0 if tiling is disabled
+   */
+  public long getTileMissCount() {
+    ItemCache<Tile> cache = tileCache;
+    return cache == null ? 0 : cache.getMissCount();
+  }
+
+  @Override
+  public List<TimelineItem> getItems(Date startDate, Date endDate) {
+
+    DateRange expanded = getExpandedWindow(startDate, endDate);
+    startDate = expanded.getStart();
+    endDate = expanded.getEnd();
 
-    return doGetItems(startDate, endDate);
+    ItemCache<Tile> cache = tileCache;
+    if (cache == null) {
+      return doGetItems(startDate, endDate);
+    }
+    else {
+      return getTiledItems(cache, startDate.getTime(), endDate.getTime(),
+          null);
+    }
+  }
+
+  @Override
+  public List<TimelineItem> getItems(Date startDate, Date endDate,
+      Set<String> groupIds) {
+
+    DateRange expanded = getExpandedWindow(startDate, endDate);
+    startDate = expanded.getStart();
+    endDate = expanded.getEnd();
+
+    ItemCache<Tile> cache = tileCache;
+    if (cache == null) {
+      return doGetItems(startDate, endDate, groupIds);
+    }
+    else {
+      return getTiledItems(cache, startDate.getTime(), endDate.getTime(),
+          groupIds);
+    }
+  }
+
+  /**
+   * Assembles the items in the window from the tiles covering the window,
+   * fetching any tiles that are not cached.
+   *
+   * @param cache the tile cache
+   * @param start the start of the expanded window in millis
+   * @param end the end of the expanded window in millis
+   * @param groupIds the IDs of the groups to return items for or null for all
+   * groups
+   *
+   * @return the list of events intersecting the window
+   */
+  private List<TimelineItem> getTiledItems(ItemCache<Tile> cache, long start,
+      long end, Set<String> groupIds) {
+
+    // The largest power of two not larger than the window so the window
+    // always covers 2 or 3 tiles.
+    long tileSize = Long.highestOneBit(Math.max(end - start, 1));
+    long firstIndex = Math.floorDiv(start, tileSize);
+
+    // Copy the groups once because they are part of every tile key.
+    Set<String> groups = groupIds == null ? null : new HashSet<>(groupIds);
+
+    List<TimelineItem> result = new ArrayList<>();
+
+    for (long index = firstIndex; index <= Math.floorDiv(end, tileSize);
+        ++index) {
+      Tile tile = new Tile(tileSize, index, groups);
+      long tileStart = index * tileSize;
+      long tileEnd = tileStart + tileSize - 1;
+
+      List<TimelineItem> items = cache.get(tile);
+      if (items == null) {
+        // The cache may be cleared by an item set change while the tile is
+        // being fetched so it is only cached if the generation is unchanged.
+        long generation = cache.getGeneration();
+        items = groups == null ? doGetItems(new Date(tileStart), new Date(
+            tileEnd)) : doGetItems(new Date(tileStart), new Date(tileEnd),
+                groups);
+        items = cache.put(tile, items == null
+            ? Collections.<TimelineItem>emptyList() : items, generation);
+      }
+
+      for (TimelineItem item : items) {
+        // Items in the edge tiles may be outside the window. An item that
+        // spans tiles is in every tile it spans so it is only taken from the
+        // first tile in the window that it intersects.
+        if (intersects(item, start, end) && (index == firstIndex || item.
+            getStart().getTime() >= tileStart)) {
+          result.add(item);
+        }
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns true if the item intersects the given window. An item with no end
+   * is treated as point data and must start within the window.
+   *
+   * @param item the item to check
+   * @param start the start of the window in millis
+   * @param end the end of the window in millis
+   *
+   * @return true if the item intersects the window
+   */
+  private static boolean intersects(TimelineItem item, long start, long end) {
+    long itemStart = item.getStart().getTime();
+    long itemEnd = item.getEnd() == null ? itemStart : item.getEnd().getTime();
+
+    return itemStart <= end && itemEnd >= start;
   }
 
   /**
@@ -64,6 +264,45 @@ public abstract class AbstractItemProvider implements
    */
   protected abstract List<TimelineItem> doGetItems(Date startDate, Date endDate);
 
+  /**
+   * Performs the actual item retrieval limited to the given groups. This
+   * method is called by {@link #getItems(java.util.Date, java.util.Date, java.util.Set)
+   * } after the start and end date have been adjusted to include the preload
+   * time. The default implementation filters the result of
+   * {@link #doGetItems(java.util.Date, java.util.Date) }. Subclasses that can
+   * filter more efficiently (e.g. in a database query) should override this
+   * method.
+   *
+   * @param startDate the start date of the visible timeline window
+   * @param endDate the end date of the visible timeline window
+   * @param groupIds the IDs of the groups to return items for
+   *
+   * @return the list of events intersecting the window in the groups
+   */
+  protected List<TimelineItem> doGetItems(Date startDate, Date endDate,
+      Set<String> groupIds) {
+    return filterGroups(doGetItems(startDate, endDate), groupIds);
+  }
+
+  /**
+   * Returns the items that belong to one of the given groups.
+   *
+   * @param items the items to filter
+   * @param groupIds the IDs of the groups to keep
+   *
+   * @return the filtered items
+   */
+  private static List<TimelineItem> filterGroups(List<TimelineItem> items,
+      Set<String> groupIds) {
+    List<TimelineItem> result = new ArrayList<>();
+    for (TimelineItem item : items) {
+      if (item.getGroupId() != null && groupIds.contains(item.getGroupId())) {
+        result.add(item);
+      }
+    }
+    return result;
+  }
+
   @Override
   public void addItemSetChangeListener(ItemSetChangeListener listener) {
     eventRouter.addListener(ItemSetChangeEvent.class, listener,
@@ -72,7 +311,7 @@ public abstract class AbstractItemProvider implements
 
   @Override
   public void removeItemSetChangeListener(ItemSetChangeListener listener) {
-    eventRouter.addListener(ItemSetChangeEvent.class, listener,
+    eventRouter.removeListener(ItemSetChangeEvent.class, listener,
         ItemSetChangeListener.ITEM_SET_CHANGE_METHOD);
   }
 
@@ -82,7 +321,51 @@ public abstract class AbstractItemProvider implements
    * @param evt the event to fire
    */
   protected void fireEvent(ItemSetChangeEvent evt) {
+    ItemCache<Tile> cache = tileCache;
+    if (cache != null) {
+      cache.clear();
+    }
+
     eventRouter.fireEvent(evt);
   }
 
+  /**
+   * A single tile of time identified by the tile size, the index of the tile
+   * from the epoch, and the groups the tile was fetched for.
+   */
+  private static class Tile {
+
+    private final long size;
+    private final long index;
+    private final Set<String> groupIds;
+
+    public Tile(long size, long index, Set<String> groupIds) {
+      this.size = size;
+      this.index = index;
+      this.groupIds = groupIds;
+    }
+
+    @Override
+    public int hashCode() {
+      int hash = 7;
+      hash = 83 * hash + Long.hashCode(this.size);
+      hash = 83 * hash + Long.hashCode(this.index);
+      hash = 83 * hash + Objects.hashCode(this.groupIds);
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj == null) {
+        return false;
+      }
+      if (getClass() != obj.getClass()) {
+        return false;
+      }
+      final Tile other = (Tile) obj;
+      return this.size == other.size && this.index == other.index && Objects.
+          equals(this.groupIds, other.groupIds);
+    }
+  }
+
 }
@@ -0,0 +1,57 @@
+
+package org.mpilone.vaadin.timeline;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * <p>
+ * A provider of {@link TimelineItem}s that retrieves the items asynchronously.
+ * When a {@link Timeline} uses an asynchronous provider, the items are fetched
+ * without holding the session lock so a slow backend doesn't freeze the UI.
+ * The items are applied to the timeline via
+ * {@link com.vaadin.ui.UI#access(java.lang.Runnable) } when the future
+ * completes so server push should be enabled on the UI for the items to be
+ * displayed immediately. Results for windows that are no longer visible are
+ * discarded.
+ * </p>
+ * <p>
+ * A simple implementation can delegate to an existing provider on an executor,
+ * for example:
+ * <code>CompletableFuture.supplyAsync(() -&gt; provider.getItems(startDate,
+ * endDate), executor)</code>. The implementation must not access the UI or the
+ * session while fetching the items.
+ * </p>
+ *
+ * @author mpilone
+ */
+public interface AsyncTimelineItemProvider extends TimelineItemProvider {
+
+  /**
+   * Retrieves the items intersecting the visible timeline window
+   * asynchronously.
+   *
+   * @param startDate the start date of the visible timeline window
+   * @param endDate the end date of the visible timeline window
+   *
+   * @return the future list of events intersecting the window
+   */
+  public CompletableFuture<List<TimelineItem>> getItemsAsync(Date startDate,
+      Date endDate);
+
+  /**
+   * Retrieves the items intersecting the visible timeline window by waiting
+   * for the asynchronous result. This method is only used when items are
+   * requested directly rather than by the timeline.
+   *
+   * @param startDate the start date of the visible timeline window
+   * @param endDate the end date of the visible timeline window
+   *
+   * @return the list of events intersecting the window
+   */
+  @Override
+  public default List<TimelineItem> getItems(Date startDate, Date endDate) {
+    return getItemsAsync(startDate, endDate).join();
+  }
+}
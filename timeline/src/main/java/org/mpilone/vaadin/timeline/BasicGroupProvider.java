@@ -0,0 +1,111 @@
+
+package org.mpilone.vaadin.timeline;
+
+import java.util.*;
+
+import com.vaadin.event.EventRouter;
+
+/**
+ * A group provider that keeps a list of groups in memory. Changes made
+ * through the provider fire a group set change event. If a group is modified
+ * directly, {@link #refresh() } must be called so the change is displayed.
+ *
+ * @author mpilone
+ */
+public class BasicGroupProvider implements TimelineGroupProvider,
+    TimelineGroupProvider.GroupSetChangeNotifier {
+
+  private final EventRouter eventRouter;
+  private final List<TimelineGroup> groups;
+
+  /**
+   * Constructs the provider with no groups.
+   */
+  public BasicGroupProvider() {
+    this(null);
+  }
+
+  /**
+   * Constructs the provider.
+   *
+   * @param groups the initial groups or null
+   */
+  public BasicGroupProvider(Collection<? extends TimelineGroup> groups) {
+    this.eventRouter = new EventRouter();
+    this.groups = new ArrayList<>();
+
+    if (groups != null) {
+      this.groups.addAll(groups);
+    }
+  }
+
+  @Override
+  public List<TimelineGroup> getGroups() {
+    return Collections.unmodifiableList(groups);
+  }
+
+  /**
+   * Adds the group to the end of the groups.
+   *
+   * @param group the group to add
+   */
+  public void addGroup(TimelineGroup group) {
+    groups.add(group);
+
+    fireEvent(new GroupSetChangeEvent(this));
+  }
+
+  /**
+   * Removes the group.
+   *
+   * @param group the group to remove
+   */
+  public void removeGroup(TimelineGroup group) {
+    if (groups.remove(group)) {
+      fireEvent(new GroupSetChangeEvent(this));
+    }
+  }
+
+  /**
+   * Replaces all the groups.
+   *
+   * @param groups the new groups or null to remove all groups
+   */
+  public void setGroups(Collection<? extends TimelineGroup> groups) {
+    this.groups.clear();
+    if (groups != null) {
+      this.groups.addAll(groups);
+    }
+
+    fireEvent(new GroupSetChangeEvent(this));
+  }
+
+  /**
+   * Fires the group set change event to notify listeners that one or more
+   * groups were modified directly.
+   */
+  public void refresh() {
+    fireEvent(new GroupSetChangeEvent(this));
+  }
+
+  @Override
+  public void addGroupSetChangeListener(GroupSetChangeListener listener) {
+    eventRouter.addListener(GroupSetChangeEvent.class, listener,
+        GroupSetChangeListener.GROUP_SET_CHANGE_METHOD);
+  }
+
+  @Override
+  public void removeGroupSetChangeListener(GroupSetChangeListener listener) {
+    eventRouter.removeListener(GroupSetChangeEvent.class, listener,
+        GroupSetChangeListener.GROUP_SET_CHANGE_METHOD);
+  }
+
+  /**
+   * Fires the group set change event to all registered listeners.
+   *
+   * @param evt the event to fire
+   */
+  protected void fireEvent(GroupSetChangeEvent evt) {
+    eventRouter.fireEvent(evt);
+  }
+}
@@ -0,0 +1,104 @@
+
+package org.mpilone.vaadin.timeline;
+
+import java.util.*;
+
+/**
+ * A group provider that keeps a hierarchy of groups in memory. Groups added
+ * without a parent are the top level groups. Changes made through the provider
+ * fire a group set change event. If a group is modified directly,
+ * {@link #refresh() } must be called so the change is displayed.
+ *
+ * @author mpilone
+ */
+public class BasicHierarchicalGroupProvider extends BasicGroupProvider
+    implements TimelineGroupProvider.Hierarchical {
+
+  private final Map<String, List<TimelineGroup>> children;
+
+  /**
+   * Constructs the provider with no groups.
+   */
+  public BasicHierarchicalGroupProvider() {
+    this.children = new HashMap<>();
+  }
+
+  @Override
+  public boolean hasChildren(String groupId) {
+    List<TimelineGroup> groupChildren = children.get(groupId);
+    return groupChildren != null && !groupChildren.isEmpty();
+  }
+
+  @Override
+  public List<TimelineGroup> getChildren(String parentId) {
+    List<TimelineGroup> groupChildren = children.get(parentId);
+    return groupChildren == null ? Collections.<TimelineGroup>emptyList()
+        : Collections.unmodifiableList(groupChildren);
+  }
+
+  /**
+   * Adds the group to the end of the children of the parent group.
+   *
+   * @param group the group to add
+   * @param parentId the ID of the parent group or null to add a top level
+   * group
+   */
+  public void addGroup(TimelineGroup group, String parentId) {
+    if (parentId == null) {
+      addGroup(group);
+    }
+    else {
+      List<TimelineGroup> groupChildren = children.get(parentId);
+      if (groupChildren == null) {
+        groupChildren = new ArrayList<>();
+        children.put(parentId, groupChildren);
+      }
+      groupChildren.add(group);
+
+      fireEvent(new GroupSetChangeEvent(this));
+    }
+  }
+
+  /**
+   * Removes the group and all of its descendants.
+   *
+   * @param group the group to remove
+   */
+  @Override
+  public void removeGroup(TimelineGroup group) {
+    removeDescendants(group.getId());
+
+    boolean removed = false;
+    for (List<TimelineGroup> groupChildren : children.values()) {
+      removed |= groupChildren.remove(group);
+    }
+
+    if (removed) {
+      fireEvent(new GroupSetChangeEvent(this));
+    }
+    else {
+      // A top level group.
+      super.removeGroup(group);
+    }
+  }
+
+  @Override
+  public void setGroups(Collection<? extends TimelineGroup> groups) {
+    children.clear();
+    super.setGroups(groups);
+  }
+
+  /**
+   * Removes all the descendants of the group.
+   *
+   * @param groupId the ID of the group
+   */
+  private void removeDescendants(String groupId) {
+    List<TimelineGroup> groupChildren = children.remove(groupId);
+    if (groupChildren != null) {
+      for (TimelineGroup child : groupChildren) {
+        removeDescendants(child.getId());
+      }
+    }
+  }
+}
@@ -55,14 +55,16 @@ public class BasicItemProvider extends AbstractItemProvider implements
   public void addItem(TimelineItem item) {
     items.add(item);
 
-    fireEvent(new ItemSetChangeEvent(this));
+    fireEvent(new ItemSetChangeEvent(this, Collections.singleton(item), null,
+        null));
   }
 
   @Override
   public void removeItem(TimelineItem item) {
-    items.remove(item);
-
-    fireEvent(new ItemSetChangeEvent(this));
+    if (items.remove(item)) {
+      fireEvent(new ItemSetChangeEvent(this, null, Collections.singleton(item),
+          null));
+    }
   }
 
   /**
@@ -81,9 +83,9 @@ public class BasicItemProvider extends AbstractItemProvider implements
    * @param items the items to add
    */
   public void addAllItems(Collection<TimelineItem> items) {
-    items.addAll(items);
+    this.items.addAll(items);
 
-    fireEvent(new ItemSetChangeEvent(this));
+    fireEvent(new ItemSetChangeEvent(this, items, null, null));
   }
 
 }
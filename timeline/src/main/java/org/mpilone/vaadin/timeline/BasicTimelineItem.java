@@ -172,6 +172,16 @@ public class BasicTimelineItem implements TimelineItem {
     return editable;
   }
 
+  /**
+   * Overrides the editable option of the timeline for this item.
+   *
+   * @param editable true if editable, false if not, null to not override the
+   * global editable flag
+   */
+  public void setEditable(Boolean editable) {
+    this.editable = editable;
+  }
+
   @Override
   public String getStyle() {
     return style;
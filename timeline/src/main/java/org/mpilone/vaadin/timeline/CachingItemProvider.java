@@ -0,0 +1,202 @@
+
+package org.mpilone.vaadin.timeline;
+
+import java.util.*;
+
+import com.vaadin.event.EventRouter;
+
+/**
+ * <p>
+ * An item provider that decorates another provider and caches the items
+ * returned for each window. When the user pans back to a window that was
+ * recently displayed, the items are returned from the cache rather than
+ * querying the wrapped provider again. This is most useful when the wrapped
+ * provider is expensive such as a database backed provider and the decorator
+ * is shared by multiple timelines.
+ * </p>
+ * <p>
+ * The cache is bounded by the number of windows and the total number of items
+ * cached and evicts the least recently used windows first. The cached items
+ * are softly referenced so they will be reclaimed under memory pressure. If
+ * the wrapped provider is an {@link ItemSetChangeNotifier}, the cache is
+ * invalidated automatically when the wrapped provider fires an
+ * {@link ItemSetChangeEvent} and the event is relayed to the listeners of this
+ * provider. Otherwise {@link #invalidate() } must be called when the items
+ * change.
+ * </p>
+ *
+ * @author mpilone
+ */
+public class CachingItemProvider implements TimelineItemProvider,
+    TimelineItemProvider.ItemSetChangeNotifier,
+    TimelineItemProvider.ItemSetChangeListener,
+    TimelineItemProvider.Editable {
+
+  private final EventRouter eventRouter;
+  private final TimelineItemProvider provider;
+  private final ItemCache<DateRange> cache;
+
+  /**
+   * Constructs the provider caching up to 32 windows and 100,000 items.
+   *
+   * @param provider the provider to decorate
+   */
+  public CachingItemProvider(TimelineItemProvider provider) {
+    this(provider, 32, 100000);
+  }
+
+  /**
+   * Constructs the provider.
+   *
+   * @param provider the provider to decorate
+   * @param maxWindows the maximum number of windows to cache
+   * @param maxItems the maximum total number of items cached in all windows
+   */
+  public CachingItemProvider(TimelineItemProvider provider, int maxWindows,
+      int maxItems) {
+    Objects.requireNonNull(provider, "provider cannot be null");
+
+    this.eventRouter = new EventRouter();
+    this.provider = provider;
+    this.cache = new ItemCache<>(maxWindows, maxItems);
+
+    if (provider instanceof ItemSetChangeNotifier) {
+      ((ItemSetChangeNotifier) provider).addItemSetChangeListener(this);
+    }
+  }
+
+  /**
+   * Returns the provider being decorated.
+   *
+   * @return the wrapped provider
+   */
+  public TimelineItemProvider getProvider() {
+    return provider;
+  }
+
+  @Override
+  public List<TimelineItem> getItems(Date startDate, Date endDate) {
+    DateRange window = new DateRange(startDate, endDate);
+
+    List<TimelineItem> items = cache.get(window);
+    if (items == null) {
+      // The cache may be invalidated while the wrapped provider is loading
+      // so the items are only cached if the generation is unchanged.
+      long generation = cache.getGeneration();
+      items = provider.getItems(startDate, endDate);
+      items = cache.put(window, items == null
+          ? Collections.<TimelineItem>emptyList() : items, generation);
+    }
+
+    return items;
+  }
+
+  /**
+   * Removes all the cached items and fires the item set change event so
+   * listeners will reload the items.
+   */
+  public void invalidate() {
+    cache.clear();
+
+    fireEvent(new ItemSetChangeEvent(this));
+  }
+
+  /**
+   * Returns the number of windows currently cached.
+   *
+   * @return the number of cached windows
+   */
+  public int getCachedWindowCount() {
+    return cache.size();
+  }
+
+  /**
+   * Returns the number of requests that were served from the cache.
+   *
+   * @return the hit count
+   */
+  public long getHitCount() {
+    return cache.getHitCount();
+  }
+
+  /**
+   * Returns the number of requests that were passed to the wrapped provider.
+   *
+   * @return the miss count
+   */
+  public long getMissCount() {
+    return cache.getMissCount();
+  }
+
+  @Override
+  public void itemSetChange(ItemSetChangeEvent evt) {
+    if (evt.getSource() == provider) {
+      cache.clear();
+
+      // Relay the details of the change so listeners can apply it
+      // incrementally.
+      fireEvent(evt.isDetailed() ? new ItemSetChangeEvent(this, evt.
+          getAddedItems(), evt.getRemovedItems(), evt.getUpdatedItems(), evt.
+          getAffectedRange()) : new ItemSetChangeEvent(this));
+    }
+  }
+
+  @Override
+  public void addItem(TimelineItem item) {
+    getEditableProvider().addItem(item);
+
+    // Only needed if the wrapped provider doesn't notify us.
+    if (!(provider instanceof ItemSetChangeNotifier)) {
+      invalidate();
+    }
+  }
+
+  @Override
+  public void removeItem(TimelineItem item) {
+    getEditableProvider().removeItem(item);
+
+    // Only needed if the wrapped provider doesn't notify us.
+    if (!(provider instanceof ItemSetChangeNotifier)) {
+      invalidate();
+    }
+  }
+
+  /**
+   * Returns the wrapped provider as an editable provider.
+   *
+   * @return the editable provider
+   *
+   * @throws UnsupportedOperationException if the wrapped provider is not
+   * editable
+   */
+  private Editable getEditableProvider() {
+    if (provider instanceof Editable) {
+      return (Editable) provider;
+    }
+    else {
+      throw new UnsupportedOperationException(
+          "Item provider does not support editing items");
+    }
+  }
+
+  @Override
+  public void addItemSetChangeListener(ItemSetChangeListener listener) {
+    eventRouter.addListener(ItemSetChangeEvent.class, listener,
+        ItemSetChangeListener.ITEM_SET_CHANGE_METHOD);
+  }
+
+  @Override
+  public void removeItemSetChangeListener(ItemSetChangeListener listener) {
+    eventRouter.removeListener(ItemSetChangeEvent.class, listener,
+        ItemSetChangeListener.ITEM_SET_CHANGE_METHOD);
+  }
+
+  /**
+   * Fires the item set change event to all registered listeners.
+   *
+   * @param evt the event to fire
+   */
+  protected void fireEvent(ItemSetChangeEvent evt) {
+    eventRouter.fireEvent(evt);
+  }
+}
@@ -1,7 +1,7 @@
 package org.mpilone.vaadin.timeline;
 
 import java.lang.reflect.Method;
-import java.util.Date;
+import java.util.*;
 
 import org.mpilone.vaadin.timeline.shared.EventProperties;
 
@@ -32,6 +32,7 @@ public interface ClickListener {
 
     private final EventProperties props;
     private final Object itemId;
+    private final ClusterItem cluster;
 
     /**
      * Constructs the event.
@@ -41,9 +42,23 @@ public interface ClickListener {
      * @param props the event properties relayed from the client side
      */
     public ClickEvent(Timeline source, Object itemId, EventProperties props) {
+      this(source, itemId, null, props);
+    }
+
+    /**
+     * Constructs the event.
+     *
+     * @param source the source component
+     * @param itemId the ID of the item clicked or null
+     * @param cluster the cluster clicked or null if the item is not a cluster
+     * @param props the event properties relayed from the client side
+     */
+    public ClickEvent(Timeline source, Object itemId, ClusterItem cluster,
+        EventProperties props) {
       super(source);
       this.props = props;
       this.itemId = itemId;
+      this.cluster = cluster;
     }
 
     public Date getSnappedTime() {
@@ -62,6 +77,33 @@ public interface ClickListener {
       return itemId;
     }
 
+    /**
+     * Returns the cluster clicked if the item clicked is a cluster.
+     *
+     * @return the cluster or null
+     */
+    public ClusterItem getCluster() {
+      return cluster;
+    }
+
+    /**
+     * Returns the IDs of the items clicked. If a cluster was clicked, these
+     * are the IDs of the items in the cluster.
+     *
+     * @return the item IDs or an empty list if no item was clicked
+     */
+    public List<Object> getItemIds() {
+      if (cluster != null) {
+        return cluster.getItemIds();
+      }
+      else if (itemId != null) {
+        return Collections.singletonList(itemId);
+      }
+      else {
+        return Collections.emptyList();
+      }
+    }
+
     public String getGroup() {
       return props.group;
     }
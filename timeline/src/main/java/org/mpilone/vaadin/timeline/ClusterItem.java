@@ -0,0 +1,170 @@
+
+package org.mpilone.vaadin.timeline;
+
+import java.io.Serializable;
+import java.util.*;
+
+import org.mpilone.vaadin.timeline.TimelineOptions.ItemType;
+
+/**
+ * <p>
+ * A summary item that represents a number of {@link TimelineItem}s in the same
+ * group that are too close together to be displayed individually at the
+ * current zoom level. The cluster spans from the earliest start to the latest
+ * end of the items it contains.
+ * </p>
+ * <p>
+ * Clusters are created by the {@link Timeline} when clustering is enabled and
+ * are never returned by an item provider. The IDs of the items in a cluster are
+ * available via {@link #getItemIds() }.
+ * </p>
+ *
+ * @author mpilone
+ */
+public class ClusterItem implements TimelineItem, Serializable {
+
+  /**
+   * The style name applied to all cluster items.
+   */
+  public static final String STYLE_NAME = "timeline-cluster";
+
+  private final Id id;
+  private final Date start;
+  private final Date end;
+  private final List<Object> itemIds;
+
+  /**
+   * Constructs the cluster.
+   *
+   * @param groupId the ID of the group of the items or null
+   * @param start the earliest start date of the items
+   * @param end the latest end date of the items
+   * @param itemIds the IDs of the items in the cluster
+   */
+  public ClusterItem(String groupId, Date start, Date end,
+      Collection<Object> itemIds) {
+    this.id = new Id(groupId, start.getTime(), end.getTime());
+    this.start = start;
+    this.end = end;
+    this.itemIds = Collections.unmodifiableList(new ArrayList<>(itemIds));
+  }
+
+  /**
+   * Returns the IDs of the items in the cluster.
+   *
+   * @return the unmodifiable list of item IDs
+   */
+  public List<Object> getItemIds() {
+    return itemIds;
+  }
+
+  /**
+   * Returns the number of items in the cluster.
+   *
+   * @return the number of items
+   */
+  public int getCount() {
+    return itemIds.size();
+  }
+
+  @Override
+  public Object getId() {
+    return id;
+  }
+
+  @Override
+  public String getGroupId() {
+    return id.groupId;
+  }
+
+  @Override
+  public Date getStart() {
+    return start;
+  }
+
+  @Override
+  public Date getEnd() {
+    // A cluster of point items at the same time is displayed as a point.
+    return start.equals(end) ? null : end;
+  }
+
+  @Override
+  public String getContent() {
+    return String.valueOf(getCount());
+  }
+
+  @Override
+  public ItemType getType() {
+    return start.equals(end) ? ItemType.BOX : ItemType.RANGE;
+  }
+
+  @Override
+  public String getStyleName() {
+    return STYLE_NAME;
+  }
+
+  @Override
+  public String getTitle() {
+    return getCount() + " items";
+  }
+
+  @Override
+  public Boolean getEditable() {
+    return Boolean.FALSE;
+  }
+
+  @Override
+  public String getStyle() {
+    return null;
+  }
+
+  @Override
+  public String getSubgroupId() {
+    return null;
+  }
+
+  /**
+   * The ID of a cluster which is unique for the group and time span so it can't
+   * conflict with the ID of a real item.
+   */
+  private static class Id implements Serializable {
+
+    private final String groupId;
+    private final long start;
+    private final long end;
+
+    public Id(String groupId, long start, long end) {
+      this.groupId = groupId;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    public int hashCode() {
+      int hash = 7;
+      hash = 59 * hash + Objects.hashCode(this.groupId);
+      hash = 59 * hash + Long.hashCode(this.start);
+      hash = 59 * hash + Long.hashCode(this.end);
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (obj == null || getClass() != obj.getClass()) {
+        return false;
+      }
+
+      final Id other = (Id) obj;
+      return start == other.start && end == other.end && Objects.equals(
+          groupId, other.groupId);
+    }
+
+    @Override
+    public String toString() {
+      return "cluster[" + groupId + ", " + start + ", " + end + "]";
+    }
+  }
+}
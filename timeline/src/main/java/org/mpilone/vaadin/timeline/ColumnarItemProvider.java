@@ -0,0 +1,464 @@
+
+package org.mpilone.vaadin.timeline;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import org.mpilone.vaadin.timeline.TimelineOptions.ItemType;
+
+/**
+ * <p>
+ * A read-mostly item provider that stores the items in columns of primitive
+ * arrays sorted by start time rather than as individual {@link TimelineItem}
+ * objects. Start and end times are kept as <code>long</code>s and the
+ * frequently repeated strings (group ID, subgroup ID, style name, and style)
+ * are dictionary encoded as <code>int</code> codes. The content and title of
+ * the items, which are usually unique, are packed as UTF-8 into a single byte
+ * array per column. This greatly reduces the heap required for large
+ * historical data sets. The item IDs can be any object so they are the only
+ * values still kept as one object per item.
+ * </p>
+ * <p>
+ * The maximum end time of each block of items is kept so a query only scans
+ * the blocks that can intersect the window even if a few items span a long
+ * time.
+ * </p>
+ * <p>
+ * {@link TimelineItem} instances are only created as light weight views for
+ * the items returned from {@link #getItems(java.util.Date, java.util.Date) }.
+ * The views are read only and reflect the values at the time the items were
+ * set on the provider. The items can be replaced as a whole using
+ * {@link #setItems(java.util.Collection) } which fires an item set change
+ * event.
+ * </p>
+ * <p>
+ * The intersection rules are the same as the {@link BasicItemProvider}. An item
+ * with an end date is returned if it overlaps the window while an item with no
+ * end date is treated as point data.
+ * </p>
+ *
+ * @author mpilone
+ */
+public class ColumnarItemProvider extends AbstractItemProvider implements
+    TimelineItemProvider,
+    TimelineItemProvider.ItemSetChangeNotifier {
+
+  /**
+   * The sentinel value in the end column to indicate no end date (i.e. point
+   * data).
+   */
+  private static final long NO_END = Long.MIN_VALUE;
+
+  private static final ItemType[] ITEM_TYPES = ItemType.values();
+
+  /**
+   * The number of items in each block of the max end index.
+   */
+  private static final int BLOCK_SIZE = 64;
+
+  private Columns columns;
+
+  /**
+   * Constructs the provider with no items.
+   */
+  public ColumnarItemProvider() {
+    this(Collections.<TimelineItem>emptyList());
+  }
+
+  /**
+   * Constructs the provider with the given items. The items are copied into
+   * the columnar store so the original objects can be discarded.
+   *
+   * @param items the items to store
+   */
+  public ColumnarItemProvider(Collection<? extends TimelineItem> items) {
+    this.columns = new Columns(items);
+  }
+
+  /**
+   * Replaces all the items in the provider and fires the item set change
+   * event. The items are copied into the columnar store so the original objects
+   * can be discarded.
+   *
+   * @param items the items to store
+   */
+  public void setItems(Collection<? extends TimelineItem> items) {
+    this.columns = new Columns(items);
+
+    fireEvent(new ItemSetChangeEvent(this));
+  }
+
+  /**
+   * Returns the number of items in the provider.
+   *
+   * @return the number of items
+   */
+  public int size() {
+    return columns.starts.length;
+  }
+
+  @Override
+  protected List<TimelineItem> doGetItems(Date startDate, Date endDate) {
+    // Grab a local reference in case the columns are replaced.
+    final Columns c = columns;
+
+    long start = startDate.getTime();
+    long end = endDate.getTime();
+
+    // The first block where any item at or before it could reach the start
+    // of the window and the first index starting after the end of the window.
+    int from = c.firstBlockMaxEndAtOrAfter(start);
+    int to = c.firstStartAfter(end);
+
+    List<TimelineItem> result = new ArrayList<>();
+    for (int block = from; block * BLOCK_SIZE < to; ++block) {
+      // Skip the blocks that end before the window even if an earlier block
+      // has a long item.
+      if (c.blockMaxEnds[block] < start) {
+        continue;
+      }
+
+      for (int i = block * BLOCK_SIZE; i < Math.min((block + 1) * BLOCK_SIZE,
+          to); ++i) {
+        long itemEnd = c.ends[i] == NO_END ? c.starts[i] : c.ends[i];
+        if (itemEnd >= start) {
+          result.add(new ItemView(c, i));
+        }
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * The immutable set of columns holding all the item data.
+   */
+  private static class Columns {
+
+    private final long[] starts;
+    private final long[] ends;
+    private final long[] blockMaxEnds;
+    private final long[] runningMaxEnds;
+    private final Object[] ids;
+    private final StringColumn contents;
+    private final StringColumn titles;
+    private final int[] groupIds;
+    private final int[] subgroupIds;
+    private final int[] styleNames;
+    private final int[] styles;
+    private final byte[] types;
+    private final byte[] editables;
+    private final String[] dictionary;
+
+    /**
+     * Constructs the columns by sorting and encoding the given items.
+     *
+     * @param items the items to encode
+     */
+    public Columns(Collection<? extends TimelineItem> items) {
+      List<TimelineItem> sorted = new ArrayList<>(items);
+      sorted.sort((i1, i2) -> i1.getStart().compareTo(i2.getStart()));
+
+      int size = sorted.size();
+      int blocks = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+      starts = new long[size];
+      ends = new long[size];
+      blockMaxEnds = new long[blocks];
+      runningMaxEnds = new long[blocks];
+      ids = new Object[size];
+      StringColumn.Builder contentBuilder = new StringColumn.Builder(size);
+      StringColumn.Builder titleBuilder = new StringColumn.Builder(size);
+      groupIds = new int[size];
+      subgroupIds = new int[size];
+      styleNames = new int[size];
+      styles = new int[size];
+      types = new byte[size];
+      editables = new byte[size];
+
+      // Code 0 is reserved for null.
+      Map<String, Integer> codes = new HashMap<>();
+      List<String> values = new ArrayList<>();
+      values.add(null);
+
+      long maxEnd = Long.MIN_VALUE;
+      for (int i = 0; i < size; ++i) {
+        TimelineItem item = sorted.get(i);
+        int block = i / BLOCK_SIZE;
+
+        starts[i] = item.getStart().getTime();
+        ends[i] = item.getEnd() == null ? NO_END : item.getEnd().getTime();
+        long itemEnd = ends[i] == NO_END ? starts[i] : ends[i];
+        blockMaxEnds[block] = i % BLOCK_SIZE == 0 ? itemEnd : Math.max(
+            blockMaxEnds[block], itemEnd);
+        maxEnd = Math.max(maxEnd, itemEnd);
+        runningMaxEnds[block] = maxEnd;
+
+        ids[i] = item.getId();
+        contentBuilder.add(item.getContent());
+        titleBuilder.add(item.getTitle());
+        groupIds[i] = encode(item.getGroupId(), codes, values);
+        subgroupIds[i] = encode(item.getSubgroupId(), codes, values);
+        styleNames[i] = encode(item.getStyleName(), codes, values);
+        styles[i] = encode(item.getStyle(), codes, values);
+        types[i] = (byte) (item.getType() == null ? -1 : item.getType().
+            ordinal());
+        editables[i] = (byte) (item.getEditable() == null ? -1 : item.
+            getEditable() ? 1 : 0);
+      }
+
+      dictionary = values.toArray(new String[values.size()]);
+      contents = contentBuilder.build();
+      titles = titleBuilder.build();
+    }
+
+    /**
+     * Returns the dictionary code for the given value, adding it to the
+     * dictionary if needed.
+     *
+     * @param value the value to encode
+     * @param codes the existing codes by value
+     * @param values the existing values by code
+     *
+     * @return the code of the value
+     */
+    private static int encode(String value, Map<String, Integer> codes,
+        List<String> values) {
+      if (value == null) {
+        return 0;
+      }
+
+      Integer code = codes.get(value);
+      if (code == null) {
+        code = values.size();
+        codes.put(value, code);
+        values.add(value);
+      }
+      return code;
+    }
+
+    /**
+     * Returns the first block where the running maximum end time is at or
+     * after the given time. No item before this block can intersect a window
+     * starting at the given time.
+     *
+     * @param time the time in millis
+     *
+     * @return the block or the number of blocks if there is no such block
+     */
+    private int firstBlockMaxEndAtOrAfter(long time) {
+      int low = 0;
+      int high = runningMaxEnds.length;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (runningMaxEnds[mid] < time) {
+          low = mid + 1;
+        }
+        else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+
+    /**
+     * Returns the first index where the start time is after the given time.
+     *
+     * @param time the time in millis
+     *
+     * @return the index or the number of items if there is no such index
+     */
+    private int firstStartAfter(long time) {
+      int low = 0;
+      int high = starts.length;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (starts[mid] <= time) {
+          low = mid + 1;
+        }
+        else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+  }
+
+  /**
+   * A column of strings packed as UTF-8 into a single byte array.
+   */
+  private static class StringColumn {
+
+    private final byte[] data;
+    private final int[] offsets;
+    private final BitSet nulls;
+
+    /**
+     * Constructs the column.
+     *
+     * @param data the UTF-8 data of all the strings
+     * @param offsets the offset of each string in the data followed by the
+     * length of the data
+     * @param nulls the indexes of the null strings
+     */
+    private StringColumn(byte[] data, int[] offsets, BitSet nulls) {
+      this.data = data;
+      this.offsets = offsets;
+      this.nulls = nulls;
+    }
+
+    /**
+     * Returns the string at the given index.
+     *
+     * @param index the index of the string
+     *
+     * @return the string or null
+     */
+    public String get(int index) {
+      if (nulls.get(index)) {
+        return null;
+      }
+      return new String(data, offsets[index], offsets[index + 1]
+          - offsets[index], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Builds a string column by adding the strings in order.
+     */
+    private static class Builder {
+
+      private final ByteArrayOutputStream data;
+      private final int[] offsets;
+      private final BitSet nulls;
+      private int size;
+
+      /**
+       * Constructs the builder.
+       *
+       * @param capacity the number of strings that will be added
+       */
+      public Builder(int capacity) {
+        this.data = new ByteArrayOutputStream();
+        this.offsets = new int[capacity + 1];
+        this.nulls = new BitSet(capacity);
+      }
+
+      /**
+       * Adds the next string to the column.
+       *
+       * @param value the string or null
+       */
+      public void add(String value) {
+        if (value == null) {
+          nulls.set(size);
+        }
+        else {
+          byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+          data.write(bytes, 0, bytes.length);
+        }
+        offsets[++size] = data.size();
+      }
+
+      /**
+       * Builds the column.
+       *
+       * @return the new column
+       */
+      public StringColumn build() {
+        return new StringColumn(data.toByteArray(), offsets, nulls);
+      }
+    }
+  }
+
+  /**
+   * A read only view of a single row in the columns.
+   */
+  private static class ItemView implements TimelineItem {
+
+    private final Columns columns;
+    private final int index;
+
+    /**
+     * Constructs the view.
+     *
+     * @param columns the columns containing the data
+     * @param index the index of the row in the columns
+     */
+    public ItemView(Columns columns, int index) {
+      this.columns = columns;
+      this.index = index;
+    }
+
+    @Override
+    public Object getId() {
+      return columns.ids[index];
+    }
+
+    @Override
+    public String getGroupId() {
+      return columns.dictionary[columns.groupIds[index]];
+    }
+
+    @Override
+    public Date getStart() {
+      return new Date(columns.starts[index]);
+    }
+
+    @Override
+    public Date getEnd() {
+      long end = columns.ends[index];
+      return end == NO_END ? null : new Date(end);
+    }
+
+    @Override
+    public String getContent() {
+      return columns.contents.get(index);
+    }
+
+    @Override
+    public ItemType getType() {
+      byte type = columns.types[index];
+      return type < 0 ? null : ITEM_TYPES[type];
+    }
+
+    @Override
+    public String getStyleName() {
+      return columns.dictionary[columns.styleNames[index]];
+    }
+
+    @Override
+    public String getTitle() {
+      return columns.titles.get(index);
+    }
+
+    @Override
+    public Boolean getEditable() {
+      byte editable = columns.editables[index];
+      return editable < 0 ? null : editable == 1;
+    }
+
+    @Override
+    public String getStyle() {
+      return columns.dictionary[columns.styles[index]];
+    }
+
+    @Override
+    public String getSubgroupId() {
+      return columns.dictionary[columns.subgroupIds[index]];
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(getId());
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj == null || getClass() != obj.getClass()) {
+        return false;
+      }
+      final ItemView other = (ItemView) obj;
+      return Objects.equals(getId(), other.getId());
+    }
+  }
+}
@@ -0,0 +1,238 @@
+
+package org.mpilone.vaadin.timeline;
+
+import java.util.*;
+
+/**
+ * <p>
+ * A thread safe, in memory item provider for data that is written by
+ * background (e.g. ingest) threads while being read by UI threads. Readers
+ * never lock; each query runs against an immutable, copy-on-write snapshot of
+ * the items sorted by start date. Writers are serialized and publish a new
+ * snapshot with a single volatile write so a reader always sees a consistent
+ * set of items.
+ * </p>
+ * <p>
+ * Because each write copies the snapshot, writes should be batched using
+ * {@link #addAllItems(java.util.Collection) } or
+ * {@link #update(java.util.Collection, java.util.Collection) } whenever
+ * possible. Item set change events are fired on the writing thread after the
+ * new snapshot is published.
+ * </p>
+ * <p>
+ * The provider can be used with tiling (see
+ * {@link #setTilingEnabled(boolean) }). Each write clears the tile cache and a
+ * tile read from an older snapshot while a write is in progress is not
+ * cached, so tiles never outlive the snapshot they were read from.
+ * </p>
+ * <p>
+ * The intersection rules are the same as the {@link BasicItemProvider}. The
+ * start and end dates of an item are captured when the item is added.
+ * </p>
+ *
+ * @author mpilone
+ */
+public class ConcurrentItemProvider extends AbstractItemProvider implements
+    TimelineItemProvider,
+    TimelineItemProvider.ItemSetChangeNotifier,
+    TimelineItemProvider.Editable {
+
+  private final Object writeLock = new Object();
+  private volatile Snapshot snapshot;
+
+  /**
+   * Constructs the provider.
+   */
+  public ConcurrentItemProvider() {
+    this.snapshot = Snapshot.EMPTY;
+  }
+
+  @Override
+  protected List<TimelineItem> doGetItems(Date startDate, Date endDate) {
+    return snapshot.getItems(startDate.getTime(), endDate.getTime());
+  }
+
+  @Override
+  public void addItem(TimelineItem item) {
+    update(Collections.singleton(item), Collections.<TimelineItem>emptySet());
+  }
+
+  @Override
+  public void removeItem(TimelineItem item) {
+    update(Collections.<TimelineItem>emptySet(), Collections.singleton(item));
+  }
+
+  /**
+   * Adds all the items to the provider in a single snapshot and fires the
+   * item set change event.
+   *
+   * @param items the items to add
+   */
+  public void addAllItems(Collection<? extends TimelineItem> items) {
+    update(items, Collections.<TimelineItem>emptySet());
+  }
+
+  /**
+   * Removes all the items from the provider and fires the item set change
+   * event.
+   */
+  public void removeAllItems() {
+    Snapshot removed;
+    synchronized (writeLock) {
+      removed = snapshot;
+      snapshot = Snapshot.EMPTY;
+    }
+
+    fireEvent(new ItemSetChangeEvent(this, null, Arrays.asList(removed.items),
+        null));
+  }
+
+  /**
+   * Removes and adds the given items in a single snapshot and fires a single
+   * item set change event.
+   *
+   * @param added the items to add
+   * @param removed the items to remove
+   */
+  public void update(Collection<? extends TimelineItem> added,
+      Collection<? extends TimelineItem> removed) {
+    if (added.isEmpty() && removed.isEmpty()) {
+      return;
+    }
+
+    synchronized (writeLock) {
+      snapshot = snapshot.update(added, removed);
+    }
+
+    fireEvent(new ItemSetChangeEvent(this, added, removed, null));
+  }
+
+  /**
+   * Returns the number of items in the provider.
+   *
+   * @return the number of items
+   */
+  public int size() {
+    return snapshot.items.length;
+  }
+
+  /**
+   * An immutable set of items sorted by start with the cumulative maximum end
+   * to bound the scan of a query.
+   */
+  private static class Snapshot {
+
+    private static final Snapshot EMPTY = new Snapshot(new TimelineItem[0],
+        new long[0], new long[0], new long[0]);
+
+    private final TimelineItem[] items;
+    private final long[] starts;
+    private final long[] ends;
+    private final long[] maxEnds;
+
+    private Snapshot(TimelineItem[] items, long[] starts, long[] ends,
+        long[] maxEnds) {
+      this.items = items;
+      this.starts = starts;
+      this.ends = ends;
+      this.maxEnds = maxEnds;
+    }
+
+    /**
+     * Creates a new snapshot with the given items removed and added. The
+     * added items are sorted and merged into the existing sorted items.
+     *
+     * @param added the items to add
+     * @param removed the items to remove
+     *
+     * @return the new snapshot
+     */
+    private Snapshot update(Collection<? extends TimelineItem> added,
+        Collection<? extends TimelineItem> removed) {
+
+      Set<TimelineItem> removedSet = new HashSet<>(removed);
+
+      List<TimelineItem> sortedAdded = new ArrayList<>(added);
+      sortedAdded.sort((i1, i2) -> i1.getStart().compareTo(i2.getStart()));
+
+      int capacity = items.length + sortedAdded.size();
+      TimelineItem[] newItems = new TimelineItem[capacity];
+      long[] newStarts = new long[capacity];
+      long[] newEnds = new long[capacity];
+      long[] newMaxEnds = new long[capacity];
+
+      int size = 0;
+      int i = 0;
+      int j = 0;
+      long maxEnd = Long.MIN_VALUE;
+      while (i < items.length || j < sortedAdded.size()) {
+        TimelineItem item;
+        long start;
+        long end;
+
+        if (j == sortedAdded.size() || (i < items.length && starts[i]
+            <= sortedAdded.get(j).getStart().getTime())) {
+          // Use the existing captured dates for existing items.
+          item = items[i];
+          start = starts[i];
+          end = ends[i];
+          i++;
+
+          if (removedSet.contains(item)) {
+            continue;
+          }
+        }
+        else {
+          // Point items are treated as ending at the start.
+          item = sortedAdded.get(j++);
+          start = item.getStart().getTime();
+          end = item.getEnd() == null ? start : item.getEnd().getTime();
+        }
+
+        maxEnd = Math.max(maxEnd, end);
+        newItems[size] = item;
+        newStarts[size] = start;
+        newEnds[size] = end;
+        newMaxEnds[size] = maxEnd;
+        size++;
+      }
+
+      return new Snapshot(Arrays.copyOf(newItems, size), Arrays.copyOf(
+          newStarts, size), Arrays.copyOf(newEnds, size), Arrays.copyOf(
+          newMaxEnds, size));
+    }
+
+    /**
+     * Returns the items intersecting the given window.
+     *
+     * @param start the start of the window in millis
+     * @param end the end of the window in millis
+     *
+     * @return the items intersecting the window
+     */
+    private List<TimelineItem> getItems(long start, long end) {
+
+      // Find the first item that could reach the start of the window.
+      int low = 0;
+      int high = maxEnds.length;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (maxEnds[mid] < start) {
+          low = mid + 1;
+        }
+        else {
+          high = mid;
+        }
+      }
+
+      List<TimelineItem> result = new ArrayList<>();
+      for (int i = low; i < items.length && starts[i] <= end; ++i) {
+        if (ends[i] >= start) {
+          result.add(items[i]);
+        }
+      }
+
+      return result;
+    }
+  }
+}
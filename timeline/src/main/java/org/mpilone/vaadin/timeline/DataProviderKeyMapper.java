@@ -7,22 +7,60 @@ import java.util.*;
 /**
  * ItemId to Key to ItemId mapper.
  * <p>
- * This class is a copy of the implementation at
+ * This class is based on the implementation at
  * com.vaadin.data.RpcDataProviderExtension but with package protected methods
- * exposed.</p>
+ * exposed. Each mapped item id is assigned a compact integer key that is sent
+ * to the client as a base 36 string. Both directions are indexed so lookups
+ * are constant time. Each call to {@link #setActiveRows(java.util.Collection) }
+ * starts a new generation and the unpinned item ids not seen in the
+ * generation are evicted so memory is bounded by the active rows plus the
+ * pinned item ids.</p>
+ * <p>
+ * If an {@link ItemKeyCodec} is set, the keys of the item ids it can encode
+ * are derived from the ids and are not stored. Only the remaining item ids are
+ * mapped and their keys are prefixed with
+ * {@link ItemKeyCodec#RESERVED_PREFIX}.</p>
  *
  * @author mpilone
  */
 class DataProviderKeyMapper implements Serializable {
 
-  private final Map<Object, String> itemIdToKey = new HashMap();
+  private static final int KEY_RADIX = 36;
+
+  private final Map<Object, Entry> itemIdToEntry = new HashMap<>();
+  private final Map<Integer, Entry> keyToEntry = new HashMap<>();
   private final Set<Object> pinnedItemIds = new HashSet<>();
-  private long rollingIndex = 0;
+  private int nextKey = 0;
+  private int generation = 0;
+  private ItemKeyCodec codec;
 
   public DataProviderKeyMapper() {
     // private implementation
   }
 
+  /**
+   * Sets the codec used to derive keys from item ids. All existing keys are
+   * discarded because the keys of the item ids change. Pinned item ids remain
+   * pinned.
+   *
+   * @param codec the codec or null to map all item ids to keys
+   */
+  public void setCodec(ItemKeyCodec codec) {
+    this.codec = codec;
+
+    itemIdToEntry.clear();
+    keyToEntry.clear();
+  }
+
+  /**
+   * Returns the codec used to derive keys from item ids.
+   *
+   * @return the codec or null if all item ids are mapped to keys
+   */
+  public ItemKeyCodec getCodec() {
+    return codec;
+  }
+
   /**
    * Sets the currently active rows. This will purge any unpinned rows from
    * cache.
@@ -30,34 +68,108 @@ class DataProviderKeyMapper implements Serializable {
    * @param itemIds collection of itemIds to map to row keys
    */
   public void setActiveRows(Collection<?> itemIds) {
-    Set<Object> itemSet = new HashSet<>(itemIds);
-    Set<Object> itemsRemoved = new HashSet<>();
-    for (Object itemId : itemIdToKey.keySet()) {
-      if (!itemSet.contains(itemId) && !isPinned(itemId)) {
-        itemsRemoved.add(itemId);
+    int activeGeneration = ++generation;
+
+    for (Object itemId : itemIds) {
+      // With a codec, only the item ids that couldn't be encoded have entries.
+      Entry entry = codec == null ? getEntry(itemId) : itemIdToEntry.get(
+          itemId);
+      if (entry != null) {
+        entry.generation = activeGeneration;
       }
     }
 
-    for (Object itemId : itemsRemoved) {
-      itemIdToKey.remove(itemId);
+    Iterator<Entry> iter = itemIdToEntry.values().iterator();
+    while (iter.hasNext()) {
+      Entry entry = iter.next();
+      if (entry.generation != activeGeneration && !isPinned(entry.itemId)) {
+        iter.remove();
+        keyToEntry.remove(entry.key);
+      }
     }
+  }
 
-    for (Object itemId : itemSet) {
-      itemIdToKey.put(itemId, getKey(itemId));
+  /**
+   * Returns the next unused key. Keys wrap around rather than going negative
+   * and keys still in use are skipped.
+   *
+   * @return the next key
+   */
+  private int nextKey() {
+    int key;
+    do {
+      key = nextKey;
+      nextKey = (nextKey + 1) & Integer.MAX_VALUE;
     }
+    while (keyToEntry.containsKey(key));
+
+    return key;
   }
 
-  private String nextKey() {
-    return String.valueOf(rollingIndex++);
+  /**
+   * Returns the entry for the item id, creating a new one with the next key if
+   * the item id isn't mapped. A new entry belongs to the current generation.
+   *
+   * @param itemId the item id
+   *
+   * @return the entry
+   */
+  private Entry getEntry(Object itemId) {
+    Entry entry = itemIdToEntry.get(itemId);
+    if (entry == null) {
+      entry = new Entry(itemId, nextKey());
+      entry.generation = generation;
+      itemIdToEntry.put(itemId, entry);
+      keyToEntry.put(entry.key, entry);
+    }
+    return entry;
   }
 
   public String getKey(Object itemId) {
-    String key = itemIdToKey.get(itemId);
-    if (key == null) {
-      key = nextKey();
-      itemIdToKey.put(itemId, key);
+    return getKey(itemId, true);
+  }
+
+  /**
+   * Returns the key of the item id if it can be encoded by the codec or it is
+   * already mapped. Unlike {@link #getKey(java.lang.Object) }, a new key is
+   * never created.
+   *
+   * @param itemId the item id
+   *
+   * @return the key or null if the item id isn't mapped
+   */
+  public String findKey(Object itemId) {
+    return getKey(itemId, false);
+  }
+
+  /**
+   * Returns the key of the item id, optionally creating a new mapping if
+   * needed.
+   *
+   * @param itemId the item id
+   * @param create true to map the item id if it isn't mapped
+   *
+   * @return the key or null if the item id isn't mapped and create is false
+   */
+  private String getKey(Object itemId, boolean create) {
+    if (codec != null) {
+      String key = codec.encode(itemId);
+      if (key != null) {
+        if (key.startsWith(ItemKeyCodec.RESERVED_PREFIX)) {
+          throw new IllegalStateException("Key codec returned reserved key "
+              + key);
+        }
+        return key;
+      }
     }
-    return key;
+
+    Entry entry = create ? getEntry(itemId) : itemIdToEntry.get(itemId);
+    if (entry == null) {
+      return null;
+    }
+
+    String key = Integer.toString(entry.key, KEY_RADIX);
+    return codec == null ? key : ItemKeyCodec.RESERVED_PREFIX + key;
   }
 
   /**
@@ -94,22 +206,31 @@ class DataProviderKeyMapper implements Serializable {
    * {@code key} .
    */
   public Object getItemId(String key) throws IllegalStateException {
-    Object itemId = getByValue(itemIdToKey, key);
-    if (itemId != null) {
-      return itemId;
+    Entry entry = null;
+    try {
+      if (key != null && codec != null) {
+        if (!key.startsWith(ItemKeyCodec.RESERVED_PREFIX)) {
+          return codec.decode(key);
+        }
+        key = key.substring(ItemKeyCodec.RESERVED_PREFIX.length());
+      }
+
+      entry = key == null ? null : keyToEntry.get(Integer.parseInt(key,
+          KEY_RADIX));
+    }
+    catch (IllegalArgumentException ex) {
+      // Fall through to the exception below. This includes
+      // NumberFormatException.
+    }
+
+    if (entry != null) {
+      return entry.itemId;
     } else {
       throw new IllegalStateException("No item id for key " + key
           + " found.");
     }
   }
 
-  private <K, V> K getByValue(Map<K, V> map, V value) {
-    return map.entrySet().stream().filter(entry -> {
-      return Objects.equals(entry.getValue(), value);
-    }).map(entry -> entry.getKey()).findFirst().orElse(null);
-
-  }
-
   /**
    * Gets corresponding item ids for each of the keys in a collection.
    *
@@ -157,7 +278,8 @@ class DataProviderKeyMapper implements Serializable {
    * Unpin an item id.
    * <p>
    * This cancels the effect of pinning an item id. If the item id is currently
-   * inactive, it will be immediately removed from the cache.
+   * inactive, it will be removed from the cache when the active rows are next
+   * set.
    *
    * @param itemId the item id to unpin
    * @throws IllegalStateException if {@code itemId} was not pinned
@@ -183,4 +305,25 @@ class DataProviderKeyMapper implements Serializable {
   public boolean isPinned(Object itemId) {
     return pinnedItemIds.contains(itemId);
   }
+
+  /**
+   * A mapped item id and its key.
+   */
+  private static class Entry implements Serializable {
+
+    private final Object itemId;
+    private final int key;
+    private int generation;
+
+    /**
+     * Constructs the entry.
+     *
+     * @param itemId the item id
+     * @param key the key of the item id
+     */
+    public Entry(Object itemId, int key) {
+      this.itemId = itemId;
+      this.key = key;
+    }
+  }
 }
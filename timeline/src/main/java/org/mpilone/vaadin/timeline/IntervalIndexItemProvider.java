@@ -0,0 +1,382 @@
+
+package org.mpilone.vaadin.timeline;
+
+import java.util.*;
+
+/**
+ * <p>
+ * An item provider that keeps the {@link TimelineItem}s in memory in an
+ * augmented interval tree keyed on the start and end time of each item. Unlike
+ * the {@link BasicItemProvider} which scans every item on each request, a range
+ * query only visits the branches of the tree that can intersect the window so
+ * the cost is O(log n + k) where k is the number of items returned. This makes
+ * the provider suitable for large, in memory data sets.
+ * </p>
+ * <p>
+ * The intersection rules are the same as the {@link BasicItemProvider}. An item
+ * with an end date is returned if it overlaps the window at all (including
+ * items that span the entire window) while an item with no end date is treated
+ * as point data and is only returned if the start date is within the window.
+ * Items are returned ordered by start date.
+ * </p>
+ * <p>
+ * Like the {@link BasicItemProvider}, items that are equal but not the same
+ * instance are kept separately and removing an item removes a single equal
+ * item. The start and end dates of an item are captured when the item is
+ * added. If the dates of an item are modified after it is added, the same
+ * instance must be added again (or removed and added) to update the index.
+ * Unlike the {@link BasicItemProvider}, adding the same instance again
+ * re-indexes the item rather than adding a duplicate.
+ * </p>
+ *
+ * @author mpilone
+ */
+public class IntervalIndexItemProvider extends AbstractItemProvider implements
+    TimelineItemProvider,
+    TimelineItemProvider.ItemSetChangeNotifier,
+    TimelineItemProvider.Editable {
+
+  private final Map<TimelineItem, List<Node>> nodes;
+  private final Random random;
+  private Node root;
+  private long sequence;
+  private int size;
+
+  /**
+   * Constructs the provider.
+   */
+  public IntervalIndexItemProvider() {
+    this.nodes = new HashMap<>();
+    this.random = new Random();
+  }
+
+  @Override
+  protected List<TimelineItem> doGetItems(Date startDate, Date endDate) {
+
+    List<TimelineItem> result = new ArrayList<>();
+    collect(root, startDate.getTime(), endDate.getTime(), result);
+
+    return result;
+  }
+
+  @Override
+  public void addItem(TimelineItem item) {
+    Node old = find(item, true);
+    Node node = index(item);
+
+    if (old == null) {
+      fireEvent(new ItemSetChangeEvent(this, Collections.singleton(item), null,
+          null));
+    }
+    else {
+      // The item was re-indexed so the change covers the old and new dates.
+      fireEvent(new ItemSetChangeEvent(this, null, null, Collections.singleton(
+          item), new DateRange(new Date(Math.min(old.start, node.start)),
+              new Date(Math.max(old.end, node.end)))));
+    }
+  }
+
+  @Override
+  public void removeItem(TimelineItem item) {
+    if (unindex(item)) {
+      fireEvent(new ItemSetChangeEvent(this, null, Collections.singleton(item),
+          null));
+    }
+  }
+
+  /**
+   * Removes all the items from the provider and fires the item set change
+   * event.
+   */
+  public void removeAllItems() {
+    List<TimelineItem> removed = new ArrayList<>(size);
+    collect(root, Long.MIN_VALUE, Long.MAX_VALUE, removed);
+
+    nodes.clear();
+    root = null;
+    size = 0;
+
+    fireEvent(new ItemSetChangeEvent(this, null, removed, null));
+  }
+
+  /**
+   * Adds all the items to the provider and fires a single item set change
+   * event.
+   *
+   * @param items the items to add
+   */
+  public void addAllItems(Collection<TimelineItem> items) {
+    for (TimelineItem item : items) {
+      index(item);
+    }
+
+    fireEvent(new ItemSetChangeEvent(this, items, null, null));
+  }
+
+  /**
+   * Returns the number of items in the provider.
+   *
+   * @return the number of items
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the node of the given item. The node of the same instance is
+   * preferred over the node of an equal item.
+   *
+   * @param item the item to find
+   * @param sameInstance true to only return the node of the same instance
+   *
+   * @return the node or null if the item is not in the tree
+   */
+  private Node find(TimelineItem item, boolean sameInstance) {
+    List<Node> equalNodes = nodes.get(item);
+    if (equalNodes == null) {
+      return null;
+    }
+
+    for (Node node : equalNodes) {
+      if (node.item == item) {
+        return node;
+      }
+    }
+    return sameInstance ? null : equalNodes.get(0);
+  }
+
+  /**
+   * Adds the item to the tree. If the same instance is already in the tree,
+   * it is removed first so the index reflects the current start and end
+   * dates.
+   *
+   * @param item the item to add
+   *
+   * @return the new node in the tree
+   */
+  private Node index(TimelineItem item) {
+    Node old = find(item, true);
+    if (old != null) {
+      unindex(old);
+    }
+
+    long start = item.getStart().getTime();
+    long end = item.getEnd() == null ? start : item.getEnd().getTime();
+
+    Node node = new Node(item, start, end, sequence++, random.nextInt());
+    nodes.computeIfAbsent(item, k -> new ArrayList<>(1)).add(node);
+    root = insert(root, node);
+    size++;
+    return node;
+  }
+
+  /**
+   * Removes the item (or an equal item) from the tree if it is present.
+   *
+   * @param item the item to remove
+   *
+   * @return true if the item was removed, false if it was not found
+   */
+  private boolean unindex(TimelineItem item) {
+    Node node = find(item, false);
+    if (node == null) {
+      return false;
+    }
+
+    unindex(node);
+    return true;
+  }
+
+  /**
+   * Removes the node from the tree.
+   *
+   * @param node the node to remove
+   */
+  private void unindex(Node node) {
+    List<Node> equalNodes = nodes.get(node.item);
+    equalNodes.remove(node);
+    if (equalNodes.isEmpty()) {
+      nodes.remove(node.item);
+    }
+
+    root = delete(root, node);
+    size--;
+  }
+
+  /**
+   * Collects all the items in the subtree that intersect the given range.
+   * Items are collected in start order.
+   *
+   * @param node the root of the subtree
+   * @param start the start of the range in millis
+   * @param end the end of the range in millis
+   * @param result the list to add the matching items to
+   */
+  private static void collect(Node node, long start, long end,
+      List<TimelineItem> result) {
+
+    while (node != null && node.maxEnd >= start) {
+      collect(node.left, start, end, result);
+
+      // Everything to the right starts at or after this node so there is
+      // nothing more to find once we pass the end of the range.
+      if (node.start > end) {
+        return;
+      }
+
+      if (node.end >= start) {
+        result.add(node.item);
+      }
+
+      node = node.right;
+    }
+  }
+
+  /**
+   * Inserts the node into the subtree, rotating it up to maintain the heap
+   * order of the priorities.
+   *
+   * @param parent the root of the subtree
+   * @param node the node to insert
+   *
+   * @return the new root of the subtree
+   */
+  private static Node insert(Node parent, Node node) {
+    if (parent == null) {
+      return node;
+    }
+
+    if (node.compareTo(parent) < 0) {
+      parent.left = insert(parent.left, node);
+      if (parent.left.priority > parent.priority) {
+        parent = rotateRight(parent);
+      }
+    }
+    else {
+      parent.right = insert(parent.right, node);
+      if (parent.right.priority > parent.priority) {
+        parent = rotateLeft(parent);
+      }
+    }
+
+    parent.update();
+    return parent;
+  }
+
+  /**
+   * Deletes the node from the subtree by rotating it down until it is a leaf
+   * or has a single child.
+   *
+   * @param parent the root of the subtree
+   * @param node the node to delete
+   *
+   * @return the new root of the subtree
+   */
+  private static Node delete(Node parent, Node node) {
+    if (parent == null) {
+      return null;
+    }
+
+    if (parent != node) {
+      if (node.compareTo(parent) < 0) {
+        parent.left = delete(parent.left, node);
+      }
+      else {
+        parent.right = delete(parent.right, node);
+      }
+    }
+    else if (parent.left == null) {
+      return parent.right;
+    }
+    else if (parent.right == null) {
+      return parent.left;
+    }
+    else if (parent.left.priority > parent.right.priority) {
+      parent = rotateRight(parent);
+      parent.right = delete(parent.right, node);
+    }
+    else {
+      parent = rotateLeft(parent);
+      parent.left = delete(parent.left, node);
+    }
+
+    parent.update();
+    return parent;
+  }
+
+  private static Node rotateRight(Node node) {
+    Node pivot = node.left;
+    node.left = pivot.right;
+    pivot.right = node;
+
+    node.update();
+    pivot.update();
+    return pivot;
+  }
+
+  private static Node rotateLeft(Node node) {
+    Node pivot = node.right;
+    node.right = pivot.left;
+    pivot.left = node;
+
+    node.update();
+    pivot.update();
+    return pivot;
+  }
+
+  /**
+   * A node in the tree (implemented as a treap) ordered by start time and
+   * augmented with the maximum end time in the subtree.
+   */
+  private static class Node implements Comparable<Node> {
+
+    private final TimelineItem item;
+    private final long start;
+    private final long end;
+    private final long sequence;
+    private final int priority;
+    private long maxEnd;
+    private Node left;
+    private Node right;
+
+    /**
+     * Constructs the node.
+     *
+     * @param item the item in the node
+     * @param start the start time of the item in millis
+     * @param end the end time of the item in millis (or the start time for
+     * point items)
+     * @param sequence the unique insertion sequence used to order items with
+     * the same start time
+     * @param priority the random heap priority
+     */
+    public Node(TimelineItem item, long start, long end, long sequence,
+        int priority) {
+      this.item = item;
+      this.start = start;
+      this.end = end;
+      this.sequence = sequence;
+      this.priority = priority;
+      this.maxEnd = end;
+    }
+
+    /**
+     * Recalculates the maximum end time of the subtree from the children.
+     */
+    private void update() {
+      maxEnd = end;
+      if (left != null && left.maxEnd > maxEnd) {
+        maxEnd = left.maxEnd;
+      }
+      if (right != null && right.maxEnd > maxEnd) {
+        maxEnd = right.maxEnd;
+      }
+    }
+
+    @Override
+    public int compareTo(Node o) {
+      int result = Long.compare(start, o.start);
+      return result != 0 ? result : Long.compare(sequence, o.sequence);
+    }
+  }
+}
@@ -0,0 +1,233 @@
+
+package org.mpilone.vaadin.timeline;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.*;
+
+/**
+ * <p>
+ * A bounded, least recently used cache of item lists. The cache is bounded by
+ * both the number of entries and the total number of items in all entries.
+ * The item lists are held through {@link SoftReference}s so the garbage
+ * collector can reclaim them under memory pressure; a reclaimed entry is
+ * simply treated as a miss. All methods are thread safe so the cache can be
+ * shared by providers used in multiple sessions.
+ * </p>
+ * <p>
+ * Each {@link #clear() } starts a new generation. Callers that load the items
+ * outside of the cache should read the generation before loading and pass it
+ * to {@link #put(java.lang.Object, java.util.List, long) } so items loaded
+ * before a concurrent clear are not cached after it.
+ * </p>
+ *
+ * @param <K> the type of the cache key
+ *
+ * @author mpilone
+ */
+class ItemCache<K> {
+
+  private final LinkedHashMap<K, Entry<K>> entries;
+  private final ReferenceQueue<List<TimelineItem>> queue;
+  private final int maxEntries;
+  private final int maxItems;
+  private long itemCount;
+  private long generation;
+  private long hitCount;
+  private long missCount;
+
+  /**
+   * Constructs the cache.
+   *
+   * @param maxEntries the maximum number of entries to cache
+   * @param maxItems the maximum total number of items in all entries
+   */
+  public ItemCache(int maxEntries, int maxItems) {
+    if (maxEntries < 1 || maxItems < 0) {
+      throw new IllegalArgumentException(
+          "maxEntries must be positive and maxItems cannot be negative.");
+    }
+
+    this.maxEntries = maxEntries;
+    this.maxItems = maxItems;
+    this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    this.queue = new ReferenceQueue<>();
+  }
+
+  /**
+   * Returns the cached items for the given key and marks the entry as recently
+   * used.
+   *
+   * @param key the key of the entry
+   *
+   * @return the cached, unmodifiable items or null if not cached
+   */
+  public synchronized List<TimelineItem> get(K key) {
+    purge();
+
+    Entry<K> entry = entries.get(key);
+    List<TimelineItem> items = entry == null ? null : entry.get();
+
+    if (items == null) {
+      missCount++;
+
+      if (entry != null) {
+        // The items were reclaimed but the entry hasn't been queued yet.
+        remove(key);
+      }
+    }
+    else {
+      hitCount++;
+    }
+    return items;
+  }
+
+  /**
+   * Caches the items for the given key, evicting the least recently used
+   * entries as needed to stay within the bounds. A list larger than the item
+   * bound is not cached.
+   *
+   * @param key the key of the entry
+   * @param items the items to cache
+   *
+   * @return the cached, unmodifiable items
+   */
+  public synchronized List<TimelineItem> put(K key, List<TimelineItem> items) {
+    return put(key, items, generation);
+  }
+
+  /**
+   * Caches the items for the given key if the cache hasn't been cleared since
+   * the given generation. Otherwise the items may be stale so they are only
+   * returned.
+   *
+   * @param key the key of the entry
+   * @param items the items to cache
+   * @param generation the generation read before the items were loaded
+   *
+   * @return the unmodifiable items
+   *
+   * @see #getGeneration()
+   */
+  public synchronized List<TimelineItem> put(K key, List<TimelineItem> items,
+      long generation) {
+    purge();
+
+    items = Collections.unmodifiableList(new ArrayList<>(items));
+    if (generation != this.generation) {
+      return items;
+    }
+
+    remove(key);
+
+    if (items.size() <= maxItems) {
+      entries.put(key, new Entry<>(key, items, queue));
+      itemCount += items.size();
+
+      Iterator<Entry<K>> iter = entries.values().iterator();
+      while (iter.hasNext() && (entries.size() > maxEntries
+          || itemCount > maxItems)) {
+        itemCount -= iter.next().size;
+        iter.remove();
+      }
+    }
+
+    return items;
+  }
+
+  /**
+   * Removes the entry with the given key.
+   *
+   * @param key the key of the entry
+   */
+  public synchronized void remove(K key) {
+    Entry<K> entry = entries.remove(key);
+    if (entry != null) {
+      itemCount -= entry.size;
+    }
+  }
+
+  /**
+   * Removes all entries from the cache.
+   */
+  public synchronized void clear() {
+    entries.clear();
+    itemCount = 0;
+    generation++;
+
+    while (queue.poll() != null) {
+      // Drain the queue because the entries are gone.
+    }
+  }
+
+  /**
+   * Returns the current generation of the cache which changes every time the
+   * cache is cleared.
+   *
+   * @return the current generation
+   */
+  public synchronized long getGeneration() {
+    return generation;
+  }
+
+  /**
+   * Removes any entries whose items have been reclaimed by the garbage
+   * collector.
+   */
+  @SuppressWarnings("unchecked")
+  private void purge() {
+    Entry<K> entry;
+    while ((entry = (Entry<K>) queue.poll()) != null) {
+      // Only remove the entry if it hasn't already been replaced.
+      if (entries.get(entry.key) == entry) {
+        remove(entry.key);
+      }
+    }
+  }
+
+  /**
+   * Returns the number of entries in the cache.
+   *
+   * @return the number of entries
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * Returns the number of lookups that found cached items.
+   *
+   * @return the hit count
+   */
+  public synchronized long getHitCount() {
+    return hitCount;
+  }
+
+  /**
+   * Returns the number of lookups that did not find cached items.
+   *
+   * @return the miss count
+   */
+  public synchronized long getMissCount() {
+    return missCount;
+  }
+
+  /**
+   * A soft reference to the cached items that remembers the key and size so
+   * the entry can be removed once the items are reclaimed.
+   *
+   * @param <K> the type of the cache key
+   */
+  private static class Entry<K> extends SoftReference<List<TimelineItem>> {
+
+    private final K key;
+    private final int size;
+
+    public Entry(K key, List<TimelineItem> items,
+        ReferenceQueue<List<TimelineItem>> queue) {
+      super(items, queue);
+      this.key = key;
+      this.size = items.size();
+    }
+  }
+}
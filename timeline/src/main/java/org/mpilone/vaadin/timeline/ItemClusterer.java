@@ -0,0 +1,186 @@
+
+package org.mpilone.vaadin.timeline;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * <p>
+ * Replaces dense runs of items with {@link ClusterItem}s before they are sent
+ * to the client. Time is divided into equal buckets, sized so that a fixed
+ * number of buckets fit in the window (roughly matching a number of pixels on
+ * the client), and the items of each group are assigned to a bucket by start
+ * date. If the number of items of a group in a bucket exceeds the threshold,
+ * the items are replaced by a single cluster.
+ * </p>
+ * <p>
+ * The buckets are aligned to the epoch rather than the window so panning
+ * without zooming doesn't move the bucket boundaries and the same items end up
+ * in the same clusters. Items outside the window (e.g. from the window
+ * expansion) are assigned to their own buckets.
+ * </p>
+ * <p>
+ * This class is normally used internally by the {@link Timeline}.
+ * </p>
+ *
+ * @author mpilone
+ */
+class ItemClusterer implements Serializable {
+
+  private int threshold;
+  private int bucketCount;
+
+  /**
+   * Constructs the clusterer.
+   *
+   * @param threshold the maximum number of items of a group in a bucket
+   * before they are clustered
+   * @param bucketCount the number of buckets to divide the window into
+   */
+  public ItemClusterer(int threshold, int bucketCount) {
+    setThreshold(threshold);
+    setBucketCount(bucketCount);
+  }
+
+  /**
+   * Sets the maximum number of items of a group in a bucket before they are
+   * clustered.
+   *
+   * @param threshold the threshold, at least 1
+   */
+  public void setThreshold(int threshold) {
+    this.threshold = Math.max(threshold, 1);
+  }
+
+  /**
+   * Returns the maximum number of items of a group in a bucket before they are
+   * clustered.
+   *
+   * @return the threshold
+   */
+  public int getThreshold() {
+    return threshold;
+  }
+
+  /**
+   * Sets the number of buckets to divide the window into.
+   *
+   * @param bucketCount the number of buckets, at least 1
+   */
+  public void setBucketCount(int bucketCount) {
+    this.bucketCount = Math.max(bucketCount, 1);
+  }
+
+  /**
+   * Returns the number of buckets to divide the window into.
+   *
+   * @return the number of buckets
+   */
+  public int getBucketCount() {
+    return bucketCount;
+  }
+
+  /**
+   * Clusters the items in the given window. Items that don't need to be
+   * clustered are returned as is.
+   *
+   * @param items the items to cluster
+   * @param window the window being displayed
+   *
+   * @return the items and clusters to display
+   */
+  public List<TimelineItem> cluster(List<TimelineItem> items,
+      DateRange window) {
+
+    // Quick check to see if there can be any clusters at all.
+    if (items.size() <= threshold) {
+      return items;
+    }
+
+    long bucketSpan = Math.max(1, (window.getEnd().getTime() - window.
+        getStart().getTime()) / bucketCount);
+
+    Map<Bucket, List<TimelineItem>> buckets = new LinkedHashMap<>();
+    for (TimelineItem item : items) {
+      long index = Math.floorDiv(item.getStart().getTime(), bucketSpan);
+
+      Bucket bucket = new Bucket(item.getGroupId(), index);
+      List<TimelineItem> bucketItems = buckets.get(bucket);
+      if (bucketItems == null) {
+        bucketItems = new ArrayList<>();
+        buckets.put(bucket, bucketItems);
+      }
+      bucketItems.add(item);
+    }
+
+    List<TimelineItem> result = new ArrayList<>();
+    for (Map.Entry<Bucket, List<TimelineItem>> entry : buckets.entrySet()) {
+      List<TimelineItem> bucketItems = entry.getValue();
+      if (bucketItems.size() <= threshold) {
+        result.addAll(bucketItems);
+      }
+      else {
+        result.add(createCluster(entry.getKey().groupId, bucketItems));
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Creates a cluster spanning all the given items.
+   *
+   * @param groupId the group of the items
+   * @param items the items to put in the cluster
+   *
+   * @return the new cluster
+   */
+  private static ClusterItem createCluster(String groupId,
+      List<TimelineItem> items) {
+    long start = Long.MAX_VALUE;
+    long end = Long.MIN_VALUE;
+    List<Object> itemIds = new ArrayList<>(items.size());
+
+    for (TimelineItem item : items) {
+      long itemStart = item.getStart().getTime();
+      long itemEnd = item.getEnd() == null ? itemStart : item.getEnd().
+          getTime();
+
+      start = Math.min(start, itemStart);
+      end = Math.max(end, itemEnd);
+      itemIds.add(item.getId());
+    }
+
+    return new ClusterItem(groupId, new Date(start), new Date(end), itemIds);
+  }
+
+  /**
+   * The bucket of a group identified by the index of the bucket from the
+   * epoch.
+   */
+  private static class Bucket {
+
+    private final String groupId;
+    private final long index;
+
+    public Bucket(String groupId, long index) {
+      this.groupId = groupId;
+      this.index = index;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * Objects.hashCode(groupId) + Long.hashCode(index);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Bucket)) {
+        return false;
+      }
+
+      Bucket other = (Bucket) obj;
+      return index == other.index && Objects.equals(groupId, other.groupId);
+    }
+  }
+}
@@ -0,0 +1,191 @@
+
+package org.mpilone.vaadin.timeline;
+
+import java.util.*;
+
+import org.mpilone.vaadin.timeline.shared.TimelineClientRpc;
+
+/**
+ * <p>
+ * Encodes RPC items into the columnar format sent to the client by
+ * {@link TimelineClientRpc#setItemsColumnar(org.mpilone.vaadin.timeline.shared.TimelineClientRpc.ItemColumns) }.
+ * The content, title, group, subgroup, class name, style, and type of the
+ * items are replaced by indexes into a string dictionary that is kept by the
+ * encoder and mirrored on the client. Each encoding only includes the strings
+ * that were not sent before.
+ * </p>
+ * <p>
+ * Only strings that are repeated are worth keeping in the dictionary. A
+ * string that isn't in the dictionary and appears only once in an encoding
+ * (e.g. the unique content or title of an item) is sent inline with the
+ * encoding instead so high-cardinality values don't fill the dictionary and
+ * force it to be cleared.
+ * </p>
+ * <p>
+ * The dictionary is bounded. When it grows beyond the maximum size it is
+ * cleared and the next encoding tells the client to discard its copy. An
+ * encoder must only be used with a single client connector. This class is
+ * normally used internally by the {@link Timeline}.
+ * </p>
+ *
+ * @author mpilone
+ */
+public class ItemColumnEncoder {
+
+  /**
+   * The default maximum number of strings in the dictionary.
+   */
+  public static final int DEFAULT_MAX_DICTIONARY_SIZE = 10000;
+
+  private final Map<String, Integer> dictionary;
+  private final int maxDictionarySize;
+
+  /**
+   * Constructs the encoder with the default maximum dictionary size.
+   */
+  public ItemColumnEncoder() {
+    this(DEFAULT_MAX_DICTIONARY_SIZE);
+  }
+
+  /**
+   * Constructs the encoder.
+   *
+   * @param maxDictionarySize the maximum number of strings kept in the
+   * dictionary
+   */
+  public ItemColumnEncoder(int maxDictionarySize) {
+    this.dictionary = new HashMap<>();
+    this.maxDictionarySize = Math.max(maxDictionarySize, 1);
+  }
+
+  /**
+   * Returns the number of strings in the dictionary.
+   *
+   * @return the dictionary size
+   */
+  public int getDictionarySize() {
+    return dictionary.size();
+  }
+
+  /**
+   * Encodes the items into columns. The strings not yet in the dictionary
+   * are added and included in the result.
+   *
+   * @param items the items to encode
+   *
+   * @return the encoded columns
+   */
+  public TimelineClientRpc.ItemColumns encode(
+      Collection<TimelineClientRpc.Item> items) {
+    int size = items.size();
+
+    // Start over rather than letting the dictionary (on both sides) grow
+    // without bounds.
+    if (dictionary.size() > maxDictionarySize) {
+      dictionary.clear();
+    }
+
+    TimelineClientRpc.ItemColumns columns =
+        new TimelineClientRpc.ItemColumns();
+    columns.stringOffset = dictionary.size();
+    columns.ids = new String[size];
+    columns.starts = new long[size];
+    columns.ends = new Long[size];
+    columns.contents = new int[size];
+    columns.titles = new int[size];
+    columns.groups = new int[size];
+    columns.subgroups = new int[size];
+    columns.classNames = new int[size];
+    columns.styles = new int[size];
+    columns.types = new int[size];
+    columns.editables = new Boolean[size];
+
+    // Count the strings not in the dictionary to find the ones that repeat.
+    Map<String, Integer> counts = new HashMap<>();
+    for (TimelineClientRpc.Item item : items) {
+      count(item.content, counts);
+      count(item.title, counts);
+      count(item.group, counts);
+      count(item.subgroup, counts);
+      count(item.className, counts);
+      count(item.style, counts);
+      count(item.type, counts);
+    }
+
+    List<String> newStrings = new ArrayList<>();
+    List<String> inlineStrings = new ArrayList<>();
+    int i = 0;
+    for (TimelineClientRpc.Item item : items) {
+      columns.ids[i] = item.id;
+      columns.starts[i] = item.start;
+      columns.ends[i] = item.end;
+      columns.contents[i] = indexOf(item.content, counts, newStrings,
+          inlineStrings);
+      columns.titles[i] = indexOf(item.title, counts, newStrings,
+          inlineStrings);
+      columns.groups[i] = indexOf(item.group, counts, newStrings,
+          inlineStrings);
+      columns.subgroups[i] = indexOf(item.subgroup, counts, newStrings,
+          inlineStrings);
+      columns.classNames[i] = indexOf(item.className, counts, newStrings,
+          inlineStrings);
+      columns.styles[i] = indexOf(item.style, counts, newStrings,
+          inlineStrings);
+      columns.types[i] = indexOf(item.type, counts, newStrings,
+          inlineStrings);
+      columns.editables[i] = item.editable;
+      i++;
+    }
+
+    columns.strings = newStrings.toArray(new String[newStrings.size()]);
+    columns.inlineStrings = inlineStrings.toArray(new String[inlineStrings.
+        size()]);
+    return columns;
+  }
+
+  /**
+   * Counts the occurrence of the value if it isn't in the dictionary.
+   *
+   * @param value the value to count
+   * @param counts the number of occurrences of each string in this encoding
+   */
+  private void count(String value, Map<String, Integer> counts) {
+    if (value != null && !dictionary.containsKey(value)) {
+      counts.merge(value, 1, Integer::sum);
+    }
+  }
+
+  /**
+   * Returns the index of the value in the dictionary, adding it if it is
+   * repeated in this encoding. A value that only appears once is added to the
+   * inline strings instead and the returned index is -2 minus the index in the
+   * inline strings.
+   *
+   * @param value the value to find
+   * @param counts the number of occurrences of each string in this encoding
+   * @param newStrings the list of strings added to the dictionary in this
+   * encoding
+   * @param inlineStrings the list of strings sent inline in this encoding
+   *
+   * @return the index of the value or -1 if the value is null
+   */
+  private int indexOf(String value, Map<String, Integer> counts,
+      List<String> newStrings, List<String> inlineStrings) {
+    if (value == null) {
+      return -1;
+    }
+
+    Integer index = dictionary.get(value);
+    if (index == null) {
+      if (counts.get(value) < 2) {
+        inlineStrings.add(value);
+        return -1 - inlineStrings.size();
+      }
+
+      index = dictionary.size();
+      dictionary.put(value, index);
+      newStrings.add(value);
+    }
+    return index;
+  }
+}
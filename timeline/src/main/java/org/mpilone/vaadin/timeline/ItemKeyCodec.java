@@ -0,0 +1,170 @@
+
+package org.mpilone.vaadin.timeline;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * <p>
+ * A codec that derives the key sent to the client for an item directly from
+ * the item ID and reverses it when the client refers to the item. When a codec
+ * is set on the {@link Timeline}, the timeline doesn't need to keep a map
+ * from item ID to key for the items that can be encoded which saves memory
+ * when many sessions display the same large data set.
+ * </p>
+ * <p>
+ * A codec must be deterministic and {@link #decode(java.lang.String) } must
+ * return an ID equal to the one encoded. A codec can refuse to encode an ID
+ * (e.g. a {@link ClusterItem}) by returning null and the timeline will map a
+ * key for it instead. Keys starting with
+ * {@link #RESERVED_PREFIX} are reserved for these mapped keys and must never
+ * be returned. Common codecs are available as {@link Numeric},
+ * {@link Uuid}, {@link UuidString}, and {@link Identity}.
+ * </p>
+ *
+ * @author mpilone
+ */
+public interface ItemKeyCodec extends Serializable {
+
+  /**
+   * The prefix of keys that are mapped by the timeline rather than encoded.
+   */
+  public static final String RESERVED_PREFIX = "~";
+
+  /**
+   * Encodes the item ID into a client key.
+   *
+   * @param itemId the item ID to encode
+   *
+   * @return the key or null if the ID can't be encoded by this codec
+   */
+  String encode(Object itemId);
+
+  /**
+   * Decodes a client key into the item ID.
+   *
+   * @param key the key to decode
+   *
+   * @return the item ID
+   * @throws IllegalArgumentException if the key is not a valid key
+   */
+  Object decode(String key) throws IllegalArgumentException;
+
+  /**
+   * Encodes {@link Long} IDs as base 36 strings.
+   */
+  public static class Numeric implements ItemKeyCodec {
+
+    private static final int RADIX = 36;
+
+    @Override
+    public String encode(Object itemId) {
+      return itemId instanceof Long ? Long.toString((Long) itemId, RADIX)
+          : null;
+    }
+
+    @Override
+    public Object decode(String key) throws IllegalArgumentException {
+      return Long.valueOf(key, RADIX);
+    }
+  }
+
+  /**
+   * Encodes {@link UUID} IDs as the 22 character, URL safe base 64 string of
+   * the UUID bytes.
+   */
+  public static class Uuid implements ItemKeyCodec {
+
+    @Override
+    public String encode(Object itemId) {
+      return itemId instanceof UUID ? encodeUuid((UUID) itemId) : null;
+    }
+
+    @Override
+    public Object decode(String key) throws IllegalArgumentException {
+      return decodeUuid(key);
+    }
+
+    /**
+     * Encodes the UUID as a base 64 string.
+     *
+     * @param uuid the UUID to encode
+     *
+     * @return the encoded UUID
+     */
+    static String encodeUuid(UUID uuid) {
+      ByteBuffer buf = ByteBuffer.allocate(16);
+      buf.putLong(uuid.getMostSignificantBits());
+      buf.putLong(uuid.getLeastSignificantBits());
+      return Base64.getUrlEncoder().withoutPadding().encodeToString(buf.
+          array());
+    }
+
+    /**
+     * Decodes the UUID from a base 64 string.
+     *
+     * @param key the encoded UUID
+     *
+     * @return the UUID
+     * @throws IllegalArgumentException if the key is not an encoded UUID
+     */
+    static UUID decodeUuid(String key) throws IllegalArgumentException {
+      byte[] bytes = Base64.getUrlDecoder().decode(key);
+      if (bytes.length != 16) {
+        throw new IllegalArgumentException("Invalid UUID key " + key);
+      }
+
+      ByteBuffer buf = ByteBuffer.wrap(bytes);
+      return new UUID(buf.getLong(), buf.getLong());
+    }
+  }
+
+  /**
+   * Encodes {@link String} IDs in the canonical, lower case UUID format (such
+   * as the IDs generated by {@link BasicTimelineItem}) as the 22 character,
+   * URL safe base 64 string of the UUID bytes.
+   */
+  public static class UuidString implements ItemKeyCodec {
+
+    @Override
+    public String encode(Object itemId) {
+      if (!(itemId instanceof String) || ((String) itemId).length() != 36) {
+        return null;
+      }
+
+      try {
+        UUID uuid = UUID.fromString((String) itemId);
+
+        // Only encode the canonical format so the decoded ID is equal.
+        return uuid.toString().equals(itemId) ? Uuid.encodeUuid(uuid) : null;
+      }
+      catch (IllegalArgumentException ex) {
+        return null;
+      }
+    }
+
+    @Override
+    public Object decode(String key) throws IllegalArgumentException {
+      return Uuid.decodeUuid(key).toString();
+    }
+  }
+
+  /**
+   * Uses {@link String} IDs as the keys. This is the smallest codec but the
+   * IDs are visible to the client.
+   */
+  public static class Identity implements ItemKeyCodec {
+
+    @Override
+    public String encode(Object itemId) {
+      return itemId instanceof String && !((String) itemId).startsWith(
+          RESERVED_PREFIX) ? (String) itemId : null;
+    }
+
+    @Override
+    public Object decode(String key) throws IllegalArgumentException {
+      return key;
+    }
+  }
+}
@@ -0,0 +1,165 @@
+
+package org.mpilone.vaadin.timeline;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * <p>
+ * A strategy to reduce the items sent to the client when the number of items
+ * in the window exceeds the item budget of the {@link Timeline}. A strategy
+ * must be deterministic so the same items are displayed each time the same
+ * window is sent.
+ * </p>
+ * <p>
+ * Common strategies are available as {@link Stride}, {@link Priority}, and
+ * {@link GroupQuota}.
+ * </p>
+ *
+ * @author mpilone
+ */
+public interface ItemReductionStrategy extends Serializable {
+
+  /**
+   * Reduces the items to at most the given budget. The selected items are
+   * removed by the timeline before the strategy is applied so the items only
+   * contain the items competing for the budget.
+   *
+   * @param items the items in the window, normally more than the budget
+   * @param budget the maximum number of items to return
+   *
+   * @return the items to send to the client
+   */
+  List<TimelineItem> reduce(List<TimelineItem> items, int budget);
+
+  /**
+   * Samples the items evenly over time by sampling them evenly by position
+   * after ordering them by start date. Providers don't have to return the
+   * items in order.
+   */
+  public static class Stride implements ItemReductionStrategy {
+
+    @Override
+    public List<TimelineItem> reduce(List<TimelineItem> items, int budget) {
+      return sample(items, budget);
+    }
+
+    /**
+     * Samples the items evenly by position in the list after sorting them by
+     * start date. Items with the same start date keep their relative order.
+     *
+     * @param items the items to sample
+     * @param budget the maximum number of items to return
+     *
+     * @return the sampled items in start date order
+     */
+    static List<TimelineItem> sample(List<TimelineItem> items, int budget) {
+      if (items.size() <= budget) {
+        return items;
+      }
+
+      items = new ArrayList<>(items);
+      items.sort((i1, i2) -> i1.getStart().compareTo(i2.getStart()));
+
+      List<TimelineItem> result = new ArrayList<>(budget);
+      for (int i = 0; i < budget; ++i) {
+        result.add(items.get((int) ((long) i * items.size() / budget)));
+      }
+      return result;
+    }
+  }
+
+  /**
+   * Keeps the items with the highest priority as determined by a comparator.
+   * Items that compare as less are considered to be higher priority. The items
+   * returned keep the order of the original list.
+   */
+  public static class Priority implements ItemReductionStrategy {
+
+    private final Comparator<? super TimelineItem> comparator;
+
+    /**
+     * Constructs the strategy. The comparator must be serializable if the
+     * timeline is serialized.
+     *
+     * @param comparator the comparator that sorts the items with the highest
+     * priority first
+     */
+    public Priority(Comparator<? super TimelineItem> comparator) {
+      this.comparator = Objects.requireNonNull(comparator);
+    }
+
+    @Override
+    public List<TimelineItem> reduce(List<TimelineItem> items, int budget) {
+      if (items.size() <= budget) {
+        return items;
+      }
+
+      // Sort the positions so ties are broken by the original order.
+      Integer[] positions = new Integer[items.size()];
+      for (int i = 0; i < positions.length; ++i) {
+        positions[i] = i;
+      }
+      Arrays.sort(positions, (p1, p2) -> {
+        int result = comparator.compare(items.get(p1), items.get(p2));
+        return result != 0 ? result : Integer.compare(p1, p2);
+      });
+
+      Integer[] kept = Arrays.copyOf(positions, budget);
+      Arrays.sort(kept);
+
+      List<TimelineItem> result = new ArrayList<>(budget);
+      for (Integer position : kept) {
+        result.add(items.get(position));
+      }
+      return result;
+    }
+  }
+
+  /**
+   * Divides the budget evenly between the groups of the items so a dense
+   * group can't crowd out the others. Budget not needed by smaller groups is
+   * shared by the larger groups. The items of each group are sampled evenly
+   * over time as in {@link Stride}.
+   */
+  public static class GroupQuota implements ItemReductionStrategy {
+
+    @Override
+    public List<TimelineItem> reduce(List<TimelineItem> items, int budget) {
+      if (items.size() <= budget) {
+        return items;
+      }
+
+      Map<String, List<TimelineItem>> groups = new LinkedHashMap<>();
+      for (TimelineItem item : items) {
+        List<TimelineItem> groupItems = groups.get(item.getGroupId());
+        if (groupItems == null) {
+          groupItems = new ArrayList<>();
+          groups.put(item.getGroupId(), groupItems);
+        }
+        groupItems.add(item);
+      }
+
+      // Fill the smallest groups first so the unused quota flows to the
+      // larger groups.
+      List<List<TimelineItem>> bySize = new ArrayList<>(groups.values());
+      bySize.sort((g1, g2) -> Integer.compare(g1.size(), g2.size()));
+
+      Map<List<TimelineItem>, Integer> quotas = new IdentityHashMap<>();
+      int remaining = budget;
+      int groupsLeft = bySize.size();
+      for (List<TimelineItem> groupItems : bySize) {
+        int quota = Math.min(groupItems.size(), remaining / groupsLeft);
+        quotas.put(groupItems, quota);
+        remaining -= quota;
+        groupsLeft--;
+      }
+
+      List<TimelineItem> result = new ArrayList<>(budget);
+      for (List<TimelineItem> groupItems : groups.values()) {
+        result.addAll(Stride.sample(groupItems, quotas.get(groupItems)));
+      }
+      return result;
+    }
+  }
+}
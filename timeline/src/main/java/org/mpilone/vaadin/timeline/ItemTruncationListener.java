@@ -0,0 +1,126 @@
+package org.mpilone.vaadin.timeline;
+
+import java.lang.reflect.Method;
+import java.util.Date;
+import java.util.EventObject;
+
+import com.vaadin.util.ReflectTools;
+
+/**
+ * A listener to be notified when the items sent to the client are reduced to
+ * fit the item budget of the timeline.
+ *
+ * @author mpilone
+ */
+public interface ItemTruncationListener {
+
+  /**
+   * The event handling method on the {@link ItemTruncationListener}.
+   */
+  static final Method METHOD = ReflectTools.findMethod(
+      ItemTruncationListener.class,
+      "itemsTruncated",
+      ItemTruncationListener.ItemTruncationEvent.class);
+
+  /**
+   * Called when the items sent to the client were reduced to fit the item
+   * budget or when the items are no longer reduced after a previous
+   * reduction.
+   *
+   * @param event the event details
+   */
+  void itemsTruncated(ItemTruncationEvent event);
+
+  /**
+   * The event fired when the items sent to the client are reduced.
+   */
+  public static class ItemTruncationEvent extends EventObject {
+
+    private final Date startDate;
+    private final Date endDate;
+    private final int availableCount;
+    private final int sentCount;
+
+    /**
+     * Constructs the event.
+     *
+     * @param source the timeline component that generated the event
+     * @param startDate the start date of the window the items were sent for
+     * @param endDate the end date of the window the items were sent for
+     * @param availableCount the number of items available before reduction
+     * @param sentCount the number of items sent to the client
+     */
+    public ItemTruncationEvent(Timeline source, Date startDate, Date endDate,
+        int availableCount, int sentCount) {
+      super(source);
+
+      this.startDate = startDate;
+      this.endDate = endDate;
+      this.availableCount = availableCount;
+      this.sentCount = sentCount;
+    }
+
+    /**
+     * Returns the start date of the window the items were sent for.
+     *
+     * @return the start date
+     */
+    public Date getStartDate() {
+      return startDate;
+    }
+
+    /**
+     * Returns the end date of the window the items were sent for.
+     *
+     * @return the end date
+     */
+    public Date getEndDate() {
+      return endDate;
+    }
+
+    /**
+     * Returns the number of items that were available to send before the
+     * items were reduced.
+     *
+     * @return the number of available items
+     */
+    public int getAvailableCount() {
+      return availableCount;
+    }
+
+    /**
+     * Returns the number of items actually sent to the client.
+     *
+     * @return the number of items sent
+     */
+    public int getSentCount() {
+      return sentCount;
+    }
+
+    /**
+     * Returns true if some items were not sent to the client.
+     *
+     * @return true if the items were truncated
+     */
+    public boolean isTruncated() {
+      return sentCount < availableCount;
+    }
+
+    /**
+     * Returns the timeline source.
+     *
+     * @return the source component
+     */
+    public Timeline getTimeline() {
+      return (Timeline) getSource();
+    }
+
+    @Override
+    public String toString() {
+      return "ItemTruncationEvent{" + "startDate=" + startDate + ", endDate="
+          + endDate + ", availableCount=" + availableCount + ", sentCount="
+          + sentCount + '}';
+    }
+  }
+
+}
@@ -0,0 +1,372 @@
+
+package org.mpilone.vaadin.timeline;
+
+import java.sql.*;
+import java.util.*;
+import java.util.Date;
+
+import javax.sql.DataSource;
+
+import org.mpilone.vaadin.timeline.TimelineOptions.ItemType;
+
+/**
+ * <p>
+ * An item provider that queries a relational table through a JDBC
+ * {@link DataSource} (normally a connection pool). The expanded window from
+ * {@link #getItems(java.util.Date, java.util.Date) } is pushed down to the
+ * database as a parameterized range query so only the rows intersecting the
+ * window are loaded:
+ * </p>
+ * <pre>
+ * SELECT ... FROM table
+ * WHERE start &lt;= ? AND (end &gt;= ? OR (end IS NULL AND start &gt;= ?))
+ * </pre>
+ * <p>
+ * The query keeps the same intersection rules as the {@link BasicItemProvider}
+ * where an item with no end is treated as point data. Rows are streamed from
+ * the result set using the configured fetch size and converted to items by the
+ * {@link ColumnMapping}. For good performance the start and end columns should
+ * be indexed.
+ * </p>
+ * <p>
+ * The provider does not know when the table is modified so
+ * {@link #refresh() } should be called to notify listeners (i.e. the timeline)
+ * that the items must be reloaded.
+ * </p>
+ *
+ * @author mpilone
+ */
+public class JdbcItemProvider extends AbstractItemProvider implements
+    TimelineItemProvider,
+    TimelineItemProvider.ItemSetChangeNotifier {
+
+  /**
+   * The maximum number of group IDs bound in a single IN list. Drivers limit
+   * the number of parameters (e.g. 1000 for Oracle and 2100 for SQL Server)
+   * so larger sets of groups are queried in chunks.
+   */
+  private static final int MAX_IN_PARAMETERS = 500;
+
+  private final DataSource dataSource;
+  private final ColumnMapping mapping;
+  private final String query;
+  private int fetchSize;
+
+  /**
+   * Constructs the provider. The table and column names are inserted into the
+   * query verbatim so they must never come from user input.
+   *
+   * @param dataSource the data source to get connections from
+   * @param table the name of the table (or view) to query
+   * @param mapping the mapping of columns to item properties
+   */
+  public JdbcItemProvider(DataSource dataSource, String table,
+      ColumnMapping mapping) {
+    Objects.requireNonNull(dataSource, "dataSource cannot be null");
+    Objects.requireNonNull(table, "table cannot be null");
+    Objects.requireNonNull(mapping, "mapping cannot be null");
+
+    this.dataSource = dataSource;
+    this.mapping = mapping;
+    this.fetchSize = 500;
+
+    String start = mapping.getStartColumn();
+    String end = mapping.getEndColumn();
+    this.query = "SELECT " + String.join(", ", mapping.getColumns()) + " FROM "
+        + table + " WHERE " + start + " <= ? AND (" + end + " >= ? OR (" + end
+        + " IS NULL AND " + start + " >= ?))";
+  }
+
+  @Override
+  protected List<TimelineItem> doGetItems(Date startDate, Date endDate,
+      Set<String> groupIds) {
+
+    // Without a group column the items have no groups to filter on so
+    // return all of them rather than hiding everything.
+    String groupIdColumn = mapping.getGroupIdColumn();
+    if (groupIdColumn == null) {
+      return doGetItems(startDate, endDate);
+    }
+    if (groupIds.isEmpty()) {
+      return new ArrayList<>();
+    }
+
+    // Push the group filter down to the database, splitting the IN list to
+    // stay within the parameter limits of the driver. The groups in each
+    // chunk are distinct so the results don't overlap.
+    List<String> ids = new ArrayList<>(groupIds);
+    List<TimelineItem> result = new ArrayList<>();
+    for (int i = 0; i < ids.size(); i += MAX_IN_PARAMETERS) {
+      List<String> chunk = ids.subList(i, Math.min(i + MAX_IN_PARAMETERS, ids.
+          size()));
+
+      String groupQuery = query + " AND " + groupIdColumn + " IN (" + String.
+          join(", ", Collections.nCopies(chunk.size(), "?")) + ")";
+      result.addAll(executeQuery(groupQuery, startDate, endDate, chunk));
+    }
+    return result;
+  }
+
+  /**
+   * Sets the number of rows to fetch from the database in each round trip
+   * while streaming the result set. The default is 500.
+   *
+   * @param fetchSize the fetch size hint for the JDBC driver
+   */
+  public void setFetchSize(int fetchSize) {
+    this.fetchSize = Math.max(fetchSize, 0);
+  }
+
+  /**
+   * Returns the number of rows to fetch from the database in each round trip.
+   *
+   * @return the fetch size hint for the JDBC driver
+   */
+  public int getFetchSize() {
+    return fetchSize;
+  }
+
+  /**
+   * Returns the SQL query used to load the items in a window.
+   *
+   * @return the SQL query
+   */
+  public String getQuery() {
+    return query;
+  }
+
+  /**
+   * Fires the item set change event to notify listeners that the data in the
+   * table has been modified and any displayed items should be reloaded.
+   */
+  public void refresh() {
+    fireEvent(new ItemSetChangeEvent(this));
+  }
+
+  @Override
+  protected List<TimelineItem> doGetItems(Date startDate, Date endDate) {
+    return executeQuery(query, startDate, endDate,
+        Collections.<String>emptySet());
+  }
+
+  /**
+   * Executes the range query and maps the rows to items.
+   *
+   * @param sql the query to execute
+   * @param startDate the start of the window
+   * @param endDate the end of the window
+   * @param groupIds the group IDs to bind after the range parameters
+   *
+   * @return the items loaded
+   */
+  private List<TimelineItem> executeQuery(String sql, Date startDate,
+      Date endDate, Collection<String> groupIds) {
+
+    List<TimelineItem> result = new ArrayList<>();
+
+    try (Connection conn = dataSource.getConnection();
+        PreparedStatement stmt = conn.prepareStatement(sql,
+            ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+      stmt.setFetchSize(fetchSize);
+      stmt.setTimestamp(1, new Timestamp(endDate.getTime()));
+      stmt.setTimestamp(2, new Timestamp(startDate.getTime()));
+      stmt.setTimestamp(3, new Timestamp(startDate.getTime()));
+
+      int index = 4;
+      for (String groupId : groupIds) {
+        stmt.setString(index++, groupId);
+      }
+
+      try (ResultSet rs = stmt.executeQuery()) {
+        while (rs.next()) {
+          result.add(mapping.mapRow(rs));
+        }
+      }
+    }
+    catch (SQLException ex) {
+      throw new RuntimeException("Unable to query timeline items.", ex);
+    }
+
+    return result;
+  }
+
+  /**
+   * <p>
+   * The mapping of table columns to {@link TimelineItem} properties. The ID,
+   * start, end, and content columns are required while all other columns are
+   * optional and will only be selected if set. The start and end columns must
+   * be timestamp compatible columns. The type column must contain the name of
+   * an {@link ItemType} (case insensitive).
+   * </p>
+   * <p>
+   * By default each row is mapped to a {@link BasicTimelineItem}. Subclasses
+   * can override {@link #mapRow(java.sql.ResultSet) } to create custom items.
+   * </p>
+   */
+  public static class ColumnMapping {
+
+    private final String idColumn;
+    private final String startColumn;
+    private final String endColumn;
+    private final String contentColumn;
+    private String groupIdColumn;
+    private String subgroupIdColumn;
+    private String styleNameColumn;
+    private String styleColumn;
+    private String titleColumn;
+    private String typeColumn;
+    private String editableColumn;
+
+    /**
+     * Constructs the mapping with the required columns.
+     *
+     * @param idColumn the column containing the unique item ID
+     * @param startColumn the column containing the start timestamp
+     * @param endColumn the column containing the optional end timestamp
+     * @param contentColumn the column containing the item content
+     */
+    public ColumnMapping(String idColumn, String startColumn, String endColumn,
+        String contentColumn) {
+      this.idColumn = Objects.requireNonNull(idColumn);
+      this.startColumn = Objects.requireNonNull(startColumn);
+      this.endColumn = Objects.requireNonNull(endColumn);
+      this.contentColumn = Objects.requireNonNull(contentColumn);
+    }
+
+    public String getIdColumn() {
+      return idColumn;
+    }
+
+    public String getStartColumn() {
+      return startColumn;
+    }
+
+    public String getEndColumn() {
+      return endColumn;
+    }
+
+    public String getContentColumn() {
+      return contentColumn;
+    }
+
+    public String getGroupIdColumn() {
+      return groupIdColumn;
+    }
+
+    public void setGroupIdColumn(String groupIdColumn) {
+      this.groupIdColumn = groupIdColumn;
+    }
+
+    public String getSubgroupIdColumn() {
+      return subgroupIdColumn;
+    }
+
+    public void setSubgroupIdColumn(String subgroupIdColumn) {
+      this.subgroupIdColumn = subgroupIdColumn;
+    }
+
+    public String getStyleNameColumn() {
+      return styleNameColumn;
+    }
+
+    public void setStyleNameColumn(String styleNameColumn) {
+      this.styleNameColumn = styleNameColumn;
+    }
+
+    public String getStyleColumn() {
+      return styleColumn;
+    }
+
+    public void setStyleColumn(String styleColumn) {
+      this.styleColumn = styleColumn;
+    }
+
+    public String getTitleColumn() {
+      return titleColumn;
+    }
+
+    public void setTitleColumn(String titleColumn) {
+      this.titleColumn = titleColumn;
+    }
+
+    public String getTypeColumn() {
+      return typeColumn;
+    }
+
+    public void setTypeColumn(String typeColumn) {
+      this.typeColumn = typeColumn;
+    }
+
+    public String getEditableColumn() {
+      return editableColumn;
+    }
+
+    public void setEditableColumn(String editableColumn) {
+      this.editableColumn = editableColumn;
+    }
+
+    /**
+     * Returns the names of all the mapped columns to be selected.
+     *
+     * @return the column names
+     */
+    protected List<String> getColumns() {
+      List<String> columns = new ArrayList<>(Arrays.asList(idColumn,
+          startColumn, endColumn, contentColumn));
+
+      for (String column : Arrays.asList(groupIdColumn, subgroupIdColumn,
+          styleNameColumn, styleColumn, titleColumn, typeColumn,
+          editableColumn)) {
+        if (column != null) {
+          columns.add(column);
+        }
+      }
+      return columns;
+    }
+
+    /**
+     * Maps the current row of the result set to a timeline item.
+     *
+     * @param rs the result set positioned on the row to map
+     *
+     * @return the new item
+     *
+     * @throws SQLException if there is an error reading the row
+     */
+    protected TimelineItem mapRow(ResultSet rs) throws SQLException {
+      Timestamp end = rs.getTimestamp(endColumn);
+
+      BasicTimelineItem item = new BasicTimelineItem(rs.getObject(idColumn),
+          new Date(rs.getTimestamp(startColumn).getTime()), end == null ? null
+          : new Date(end.getTime()), rs.getString(contentColumn));
+
+      if (groupIdColumn != null) {
+        item.setGroupId(rs.getString(groupIdColumn));
+      }
+      if (subgroupIdColumn != null) {
+        item.setSubgroupId(rs.getString(subgroupIdColumn));
+      }
+      if (styleNameColumn != null) {
+        item.setStyleName(rs.getString(styleNameColumn));
+      }
+      if (styleColumn != null) {
+        item.setStyle(rs.getString(styleColumn));
+      }
+      if (titleColumn != null) {
+        item.setTitle(rs.getString(titleColumn));
+      }
+      if (typeColumn != null) {
+        String type = rs.getString(typeColumn);
+        item.setType(type == null ? null : ItemType.valueOf(type.toUpperCase(
+            Locale.ROOT)));
+      }
+      if (editableColumn != null) {
+        boolean editable = rs.getBoolean(editableColumn);
+        item.setEditable(rs.wasNull() ? null : editable);
+      }
+
+      return item;
+    }
+  }
+}
@@ -0,0 +1,282 @@
+
+package org.mpilone.vaadin.timeline;
+
+import static org.mpilone.vaadin.timeline.TimelineSnapshotWriter.*;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+import org.mpilone.vaadin.timeline.TimelineOptions.ItemType;
+
+/**
+ * <p>
+ * A read only item provider that serves items directly from a memory mapped
+ * timeline snapshot file written by {@link TimelineSnapshotWriter}. Opening a
+ * snapshot only reads the header and the small sparse start time index so it
+ * is nearly instant regardless of the size of the file. The records and
+ * strings are never loaded into the heap; a query binary searches the sparse
+ * index and then scans only the records (and therefore the pages) in the
+ * requested window.
+ * </p>
+ * <p>
+ * The intersection rules are the same as the {@link BasicItemProvider}. The
+ * items returned are {@link BasicTimelineItem}s with string IDs. Because the
+ * snapshot is read only, the provider never fires item set change events.
+ * </p>
+ * <p>
+ * The records and strings are mapped in segments of at most 1 GB so the size
+ * of the snapshot isn't limited by the maximum size of a
+ * {@link MappedByteBuffer}.
+ * </p>
+ *
+ * @author mpilone
+ */
+public class MappedFileItemProvider extends AbstractItemProvider implements
+    TimelineItemProvider, Closeable {
+
+  private static final ItemType[] ITEM_TYPES = ItemType.values();
+
+  /**
+   * The number of records in each mapped record segment.
+   */
+  private static final int RECORDS_PER_SEGMENT = STRING_SEGMENT_SIZE
+      / RECORD_SIZE;
+
+  private final FileChannel channel;
+  private final MappedByteBuffer[] records;
+  private final MappedByteBuffer[] strings;
+  private final long recordCount;
+  private final int indexStride;
+  private final long[] indexStarts;
+  private final long[] indexMaxEnds;
+  private final long[] indexRunningMaxEnds;
+
+  /**
+   * Constructs the provider by opening and mapping the given snapshot file.
+   *
+   * @param file the snapshot file to open
+   *
+   * @throws IOException if the file cannot be opened or is not a valid
+   * snapshot
+   */
+  public MappedFileItemProvider(Path file) throws IOException {
+    this.channel = FileChannel.open(file, StandardOpenOption.READ);
+
+    try {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+      while (header.hasRemaining() && channel.read(header) >= 0) {
+        // Keep reading until the header is full.
+      }
+      header.flip();
+
+      if (header.remaining() < HEADER_SIZE || header.getLong() != MAGIC) {
+        throw new IOException("File is not a timeline snapshot: " + file);
+      }
+      int version = header.getInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported timeline snapshot version "
+            + version + ": " + file);
+      }
+      this.indexStride = header.getInt();
+      long count = header.getLong();
+      long indexOffset = header.getLong();
+      long stringsOffset = header.getLong();
+
+      this.recordCount = count;
+      this.records = map(HEADER_SIZE, count * RECORD_SIZE,
+          (long) RECORDS_PER_SEGMENT * RECORD_SIZE);
+      this.strings = map(stringsOffset, channel.size() - stringsOffset,
+          STRING_SEGMENT_SIZE);
+
+      // Load the sparse index which is small enough to keep on the heap.
+      int blocks = Math.toIntExact((count + indexStride - 1) / indexStride);
+      MappedByteBuffer index = map(indexOffset, (long) blocks
+          * INDEX_ENTRY_SIZE);
+      this.indexStarts = new long[blocks];
+      this.indexMaxEnds = new long[blocks];
+      this.indexRunningMaxEnds = new long[blocks];
+      long maxEnd = Long.MIN_VALUE;
+      for (int i = 0; i < blocks; ++i) {
+        indexStarts[i] = index.getLong();
+        indexMaxEnds[i] = index.getLong();
+        maxEnd = Math.max(maxEnd, indexMaxEnds[i]);
+        indexRunningMaxEnds[i] = maxEnd;
+      }
+    }
+    catch (IOException | RuntimeException ex) {
+      channel.close();
+      throw ex;
+    }
+  }
+
+  /**
+   * Maps a read only region of the snapshot file.
+   *
+   * @param position the position of the region in the file
+   * @param size the size of the region
+   *
+   * @return the mapped region
+   *
+   * @throws IOException if the region cannot be mapped
+   */
+  private MappedByteBuffer map(long position, long size) throws IOException {
+    return channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+  }
+
+  /**
+   * Maps a read only region of the snapshot file in segments of the given
+   * size. The last segment may be smaller.
+   *
+   * @param position the position of the region in the file
+   * @param size the size of the region
+   * @param segmentSize the size of each segment
+   *
+   * @return the mapped segments
+   *
+   * @throws IOException if the region cannot be mapped
+   */
+  private MappedByteBuffer[] map(long position, long size, long segmentSize)
+      throws IOException {
+    MappedByteBuffer[] segments = new MappedByteBuffer[Math.toIntExact((size
+        + segmentSize - 1) / segmentSize)];
+    for (int i = 0; i < segments.length; ++i) {
+      long offset = i * segmentSize;
+      segments[i] = map(position + offset, Math.min(segmentSize, size
+          - offset));
+    }
+    return segments;
+  }
+
+  /**
+   * Returns the number of items in the snapshot.
+   *
+   * @return the number of items
+   */
+  public long size() {
+    return recordCount;
+  }
+
+  @Override
+  protected List<TimelineItem> doGetItems(Date startDate, Date endDate) {
+
+    long start = startDate.getTime();
+    long end = endDate.getTime();
+
+    List<TimelineItem> result = new ArrayList<>();
+
+    // Find the first block that contains an item reaching the start of the
+    // window. The running max ends are cumulative so they are sorted.
+    int first = 0;
+    int high = indexRunningMaxEnds.length;
+    while (first < high) {
+      int mid = (first + high) >>> 1;
+      if (indexRunningMaxEnds[mid] < start) {
+        first = mid + 1;
+      }
+      else {
+        high = mid;
+      }
+    }
+
+    for (int block = first; block < indexStarts.length && indexStarts[block]
+        <= end; ++block) {
+      // Skip the blocks (and their pages) that end before the window even if
+      // an earlier block has a long item.
+      if (indexMaxEnds[block] < start) {
+        continue;
+      }
+
+      // Scan the records in the block until we pass the end of the window.
+      long blockEnd = Math.min((long) (block + 1) * indexStride, recordCount);
+      for (long i = (long) block * indexStride; i < blockEnd; ++i) {
+        MappedByteBuffer segment = records[(int) (i / RECORDS_PER_SEGMENT)];
+        int pos = (int) (i % RECORDS_PER_SEGMENT) * RECORD_SIZE;
+
+        long itemStart = segment.getLong(pos);
+        if (itemStart > end) {
+          return result;
+        }
+
+        long itemEnd = segment.getLong(pos + 8);
+        if ((itemEnd == NO_END ? itemStart : itemEnd) >= start) {
+          result.add(read(segment, pos, itemStart, itemEnd));
+        }
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Reads the record at the given position into a new item.
+   *
+   * @param segment the record segment containing the record
+   * @param pos the position of the record in the segment
+   * @param start the start of the record already read
+   * @param end the end of the record already read
+   *
+   * @return the new item
+   */
+  private TimelineItem read(MappedByteBuffer segment, int pos, long start,
+      long end) {
+    BasicTimelineItem item = new BasicTimelineItem(readString(segment.getLong(
+        pos + 16)), new Date(start), end == NO_END ? null : new Date(end),
+        readString(segment.getLong(pos + 24)));
+    item.setTitle(readString(segment.getLong(pos + 32)));
+    item.setGroupId(readString(segment.getLong(pos + 40)));
+    item.setSubgroupId(readString(segment.getLong(pos + 48)));
+    item.setStyleName(readString(segment.getLong(pos + 56)));
+    item.setStyle(readString(segment.getLong(pos + 64)));
+
+    byte type = segment.get(pos + 72);
+    item.setType(type < 0 ? null : ITEM_TYPES[type]);
+
+    byte editable = segment.get(pos + 73);
+    item.setEditable(editable < 0 ? null : editable == 1);
+
+    return item;
+  }
+
+  /**
+   * Reads the string with the given reference from the strings.
+   *
+   * @param ref the string reference
+   *
+   * @return the string or null if the reference is the null reference
+   */
+  private String readString(long ref) {
+    if (ref == NULL_REF) {
+      return null;
+    }
+
+    // Strings never cross a segment boundary.
+    MappedByteBuffer segment = strings[(int) (ref / STRING_SEGMENT_SIZE)];
+    int offset = (int) (ref % STRING_SEGMENT_SIZE);
+    int length = segment.getInt(offset);
+
+    // Use a duplicate so concurrent readers don't share a position.
+    ByteBuffer buf = segment.duplicate();
+    buf.position(offset + 4);
+
+    byte[] data = new byte[length];
+    buf.get(data);
+    return new String(data, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Closes the underlying file channel. The mapped regions remain valid until
+   * they are garbage collected.
+   *
+   * @throws IOException if there is an error closing the file
+   */
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+}
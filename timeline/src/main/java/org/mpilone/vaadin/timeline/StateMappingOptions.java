@@ -82,6 +82,11 @@ class StateMappingOptions implements TimelineOptions {
     o.zoomMin = 10;
     o.zoomable = true;
     getState().options = o;
+
+    getState().rangeChangeDelay = 250;
+    getState().rangeChangeDelayMode = RangeChangeDelayMode.FIXED.name().
+        toLowerCase();
+    getState().rangeChangeMaxDelay = 1000;
   }
 
   /**
@@ -429,6 +434,38 @@ class StateMappingOptions implements TimelineOptions {
     return getState(false).options.format.minorLabels;
   }
 
+  @Override
+  public void setRangeChangeDelay(int delay) {
+    getState().rangeChangeDelay = Math.max(delay, 0);
+  }
+
+  @Override
+  public int getRangeChangeDelay() {
+    return getState(false).rangeChangeDelay;
+  }
+
+  @Override
+  public void setRangeChangeDelayMode(RangeChangeDelayMode mode) {
+    getState().rangeChangeDelayMode = (mode == null
+        ? RangeChangeDelayMode.FIXED : mode).name().toLowerCase();
+  }
+
+  @Override
+  public RangeChangeDelayMode getRangeChangeDelayMode() {
+    return RangeChangeDelayMode.valueOf(getState(false).rangeChangeDelayMode.
+        toUpperCase());
+  }
+
+  @Override
+  public void setRangeChangeMaxDelay(int maxDelay) {
+    getState().rangeChangeMaxDelay = Math.max(maxDelay, 0);
+  }
+
+  @Override
+  public int getRangeChangeMaxDelay() {
+    return getState(false).rangeChangeMaxDelay;
+  }
+
   @Override
   public String getMoment() {
     return getState(false).options.moment;
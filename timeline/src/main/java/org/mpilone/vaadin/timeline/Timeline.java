@@ -1,15 +1,21 @@
 package org.mpilone.vaadin.timeline;
 
 import java.util.*;
+import java.util.concurrent.*;
 
 import org.mpilone.vaadin.timeline.ClickListener.ClickEvent;
 import org.mpilone.vaadin.timeline.ContextMenuListener.ContextMenuEvent;
 import org.mpilone.vaadin.timeline.DoubleClickListener.DoubleClickEvent;
 import org.mpilone.vaadin.timeline.shared.*;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.vaadin.annotations.JavaScript;
 import com.vaadin.annotations.StyleSheet;
 import com.vaadin.ui.AbstractJavaScriptComponent;
+import com.vaadin.ui.UI;
+import com.vaadin.ui.UIDetachedException;
 
 /**
  * <p>
@@ -24,6 +30,11 @@ import com.vaadin.ui.AbstractJavaScriptComponent;
  * logic to calculate the window range taking into account the configuration
  * options like zoom and min/max as well as the items.
  * </p>
+ * <p>
+ * If the item provider is an {@link AsyncTimelineItemProvider}, the items are
+ * fetched without holding the session lock and are sent to the client when
+ * they become available. Server push should be enabled in this case.
+ * </p>
  *
  * @author mpilone
  */
@@ -31,12 +42,35 @@ import com.vaadin.ui.AbstractJavaScriptComponent;
 @JavaScript({"timeline_connector.js", "vis/dist/vis-timeline-graph2d.min.js"})
 public class Timeline extends AbstractJavaScriptComponent implements
     TimelineItemProvider, TimelineItemProvider.Editable,
-    TimelineItemProvider.ItemSetChangeListener {
+    TimelineItemProvider.ItemSetChangeListener,
+    TimelineGroupProvider.GroupSetChangeListener {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(Timeline.class);
+
+  /**
+   * The maximum number of items in a detailed item set change event that will
+   * be applied to the displayed items incrementally. Larger changes cause a
+   * full query of the item provider.
+   */
+  private static final int MAX_INCREMENTAL_CHANGES = 500;
+
+  /**
+   * The delay in milliseconds before retrying the first failed asynchronous
+   * fetch. The delay doubles with each consecutive failure.
+   */
+  private static final long MIN_FETCH_RETRY_DELAY = 500;
+
+  /**
+   * The maximum delay in milliseconds before retrying a failed asynchronous
+   * fetch.
+   */
+  private static final long MAX_FETCH_RETRY_DELAY = 30000;
 
   private List<TimelineItem> items;
   private Set<Object> selection;
   private DataProviderKeyMapper keyMapper;
   private List<TimelineGroup> groups;
+  private TimelineGroupProvider groupProvider;
   private TimelineOptions options;
   private TimelineItemProvider provider;
   private final TimelineServerRpc serverRpc = new ServerRpcImpl();
@@ -46,10 +80,47 @@ public class Timeline extends AbstractJavaScriptComponent implements
   private DateRange window;
 
   private boolean itemsDirty;
+  private boolean itemsModified;
+  private transient Map<String, TimelineClientRpc.Item> clientItems;
   private boolean windowDirty;
   private boolean groupsDirty;
+  private transient Map<String, TimelineClientRpc.Group> clientGroups;
   private DateRange pendingWindow;
+  private DateRange requestedWindow;
+  private long windowRequestCount;
+  private long suppressedWindowRequestCount;
+  private long coalescedWindowRequestCount;
+  private TokenBucket fetchBucket;
+  private TokenBucket itemBucket;
+  private boolean fetchRetryPending;
+  private long delayedFetchCount;
+  private long coalescedRangeChangeCount;
   private TimelineMethodOptions.SetWindow pendingSetWindowOptions;
+  private transient CompletableFuture<List<TimelineItem>> pendingFetch;
+  private long fetchGeneration;
+  private int fetchFailureCount;
+  private long fetchRetryTime;
+  private transient WindowPrefetcher prefetcher;
+  private int prefetchMaxDepth = 3;
+  private ItemClusterer clusterer;
+  private int clusterBucketCount = 100;
+  private final Map<Object, ClusterItem> clusters = new HashMap<>();
+  private int itemBudget;
+  private ItemReductionStrategy reductionStrategy =
+      new ItemReductionStrategy.Stride();
+  private boolean itemsTruncated;
+  private int progressiveChunkSize;
+  private transient Deque<List<TimelineClientRpc.Item>> pendingChunks;
+  private int chunkSequence;
+  private boolean columnarItemsEnabled;
+  private transient ItemColumnEncoder columnEncoder;
+  private int groupMargin = 20;
+  private int groupRangeStart;
+  private int groupRangeEnd;
+  private Set<String> sentGroupIds;
+  private Set<String> expandedGroupIds = new HashSet<>();
+  private final Set<String> expandableGroupIds = new HashSet<>();
+  private final Map<String, Integer> groupLevels = new HashMap<>();
 
   /**
    * Constructs the timeline with no caption and an empty item provider.
@@ -95,7 +166,7 @@ public class Timeline extends AbstractJavaScriptComponent implements
     keyMapper = new DataProviderKeyMapper();
     selection = new HashSet<>();
     options = new StateMappingOptions(this);
-    groups = new ArrayList<>();
+    setGroupProvider(new BasicGroupProvider());
     window = new DateRange(new Date(0), new Date(0));
   }
 
@@ -188,6 +259,10 @@ public class Timeline extends AbstractJavaScriptComponent implements
 
       this.provider = provider;
 
+      if (prefetcher != null) {
+        prefetcher.invalidate();
+      }
+
       // add new listener
       if (provider instanceof TimelineItemProvider.ItemSetChangeNotifier) {
         ((TimelineItemProvider.ItemSetChangeNotifier) provider)
@@ -198,6 +273,363 @@ public class Timeline extends AbstractJavaScriptComponent implements
     }
   }
 
+  /**
+   * <p>
+   * Sets the executor used to prefetch items for the windows the user is
+   * likely to view next. When set, the direction and velocity of recent window
+   * changes are tracked and the items for the next window(s) in the direction
+   * of motion are fetched in the background into a buffer owned by this
+   * timeline. If the next window is covered by the buffer, the items are sent
+   * from the buffer without querying the item provider. The prefetch depth
+   * scales with the measured velocity up to
+   * {@link #setPrefetchMaxDepth(int) }. A prefetch is only started after the
+   * items for the current window have been fetched and only if the maximum
+   * fetch and item rates still allow it. Items are not prefetched for an
+   * {@link AsyncTimelineItemProvider}.
+   * </p>
+   * <p>
+   * The item provider will be called from the executor threads so it must be
+   * thread safe. Prefetching is disabled by default and is not restored if
+   * the timeline is serialized.
+   * </p>
+   *
+   * @param executor the executor to run prefetch queries on or null to
+   * disable prefetching
+   */
+  public void setPrefetchExecutor(Executor executor) {
+    if (prefetcher != null) {
+      prefetcher.invalidate();
+    }
+
+    if (executor == null) {
+      prefetcher = null;
+    }
+    else {
+      prefetcher = new WindowPrefetcher(executor);
+      prefetcher.setMaxDepth(prefetchMaxDepth);
+    }
+  }
+
+  /**
+   * Sets the maximum number of window lengths to prefetch ahead of the current
+   * window in the direction of motion. The default is 3.
+   *
+   * @param maxDepth the maximum prefetch depth, at least 1
+   */
+  public void setPrefetchMaxDepth(int maxDepth) {
+    this.prefetchMaxDepth = Math.max(maxDepth, 1);
+
+    if (prefetcher != null) {
+      prefetcher.setMaxDepth(prefetchMaxDepth);
+    }
+  }
+
+  /**
+   * Returns the maximum number of window lengths to prefetch ahead of the
+   * current window.
+   *
+   * @return the maximum prefetch depth
+   */
+  public int getPrefetchMaxDepth() {
+    return prefetchMaxDepth;
+  }
+
+  /**
+   * <p>
+   * Sets the maximum number of items of a group that may start in the same
+   * bucket of the window before they are replaced by a {@link ClusterItem}.
+   * Clustering keeps the number of items sent to the client manageable at
+   * coarse zoom levels. Clicking a cluster zooms into it and the
+   * {@link ClickEvent} resolves the cluster to the IDs of the items it
+   * contains.
+   * </p>
+   * <p>
+   * Clustering is disabled by default.
+   * </p>
+   *
+   * @param threshold the number of items in a bucket above which the items are
+   * clustered or 0 to disable clustering
+   */
+  public void setClusterThreshold(int threshold) {
+    if (threshold <= 0) {
+      clusterer = null;
+    }
+    else if (clusterer == null) {
+      clusterer = new ItemClusterer(threshold, clusterBucketCount);
+    }
+    else {
+      clusterer.setThreshold(threshold);
+    }
+
+    markItemsAsDirty();
+  }
+
+  /**
+   * Returns the maximum number of items of a group that may start in the same
+   * bucket before they are clustered.
+   *
+   * @return the threshold or 0 if clustering is disabled
+   */
+  public int getClusterThreshold() {
+    return clusterer == null ? 0 : clusterer.getThreshold();
+  }
+
+  /**
+   * Sets the number of equal buckets the window is divided into when
+   * clustering items. The window width in pixels divided by the desired
+   * cluster width in pixels is a good value. The default is 100. This setting
+   * only applies if clustering is enabled.
+   *
+   * @param bucketCount the number of buckets
+   */
+  public void setClusterBucketCount(int bucketCount) {
+    clusterBucketCount = Math.max(bucketCount, 1);
+
+    if (clusterer != null) {
+      clusterer.setBucketCount(clusterBucketCount);
+      markItemsAsDirty();
+    }
+  }
+
+  /**
+   * Returns the number of equal buckets the window is divided into when
+   * clustering items.
+   *
+   * @return the number of buckets
+   */
+  public int getClusterBucketCount() {
+    return clusterBucketCount;
+  }
+
+  /**
+   * <p>
+   * Sets the maximum number of items sent to the client for a window. If the
+   * window contains more items (after clustering), the items are reduced
+   * using the {@link ItemReductionStrategy} and an
+   * {@link ItemTruncationListener.ItemTruncationEvent} is fired so the UI can
+   * indicate that not all items are displayed. Selected items are always sent
+   * and only the rest of the budget is given to the strategy so the selection
+   * is never lost by the reduction.
+   * </p>
+   * <p>
+   * By default there is no budget.
+   * </p>
+   *
+   * @param budget the maximum number of items to send or 0 for no limit
+   */
+  public void setItemBudget(int budget) {
+    this.itemBudget = Math.max(budget, 0);
+
+    markItemsAsDirty();
+  }
+
+  /**
+   * Returns the maximum number of items sent to the client for a window.
+   *
+   * @return the item budget or 0 if there is no limit
+   */
+  public int getItemBudget() {
+    return itemBudget;
+  }
+
+  /**
+   * Sets the strategy used to reduce the items when the number of items
+   * exceeds the item budget. The default is
+   * {@link ItemReductionStrategy.Stride}.
+   *
+   * @param strategy the strategy to set. Cannot be null
+   */
+  public void setItemReductionStrategy(ItemReductionStrategy strategy) {
+    this.reductionStrategy = Objects.requireNonNull(strategy,
+        "strategy cannot be null");
+
+    if (itemBudget > 0) {
+      markItemsAsDirty();
+    }
+  }
+
+  /**
+   * Returns the strategy used to reduce the items when the number of items
+   * exceeds the item budget.
+   *
+   * @return the reduction strategy
+   */
+  public ItemReductionStrategy getItemReductionStrategy() {
+    return reductionStrategy;
+  }
+
+  /**
+   * <p>
+   * Sets the maximum number of item provider fetches per second for this
+   * timeline. When the rate is exceeded, the fetch is delayed until the rate
+   * allows it and range changes from the client in the mean time are
+   * coalesced into the latest window. This protects a shared backend from a
+   * misbehaving or scripted client. Up to one second of fetches can be made
+   * in a burst.
+   * </p>
+   * <p>
+   * By default there is no limit.
+   * </p>
+   *
+   * @param fetchesPerSecond the maximum fetch rate or 0 for no limit
+   */
+  public void setMaxFetchRate(double fetchesPerSecond) {
+    fetchBucket = fetchesPerSecond > 0 ? new TokenBucket(fetchesPerSecond)
+        : null;
+  }
+
+  /**
+   * Returns the maximum number of item provider fetches per second for this
+   * timeline.
+   *
+   * @return the maximum fetch rate or 0 for no limit
+   */
+  public double getMaxFetchRate() {
+    return fetchBucket == null ? 0 : fetchBucket.getRate();
+  }
+
+  /**
+   * <p>
+   * Sets the maximum number of items per second fetched from the item
+   * provider for this timeline. The items returned by a fetch are counted
+   * after the fetch so a large fetch delays the following fetches until the
+   * rate allows them. See {@link #setMaxFetchRate(double) } for how delayed
+   * fetches are handled.
+   * </p>
+   * <p>
+   * By default there is no limit.
+   * </p>
+   *
+   * @param itemsPerSecond the maximum item rate or 0 for no limit
+   */
+  public void setMaxItemFetchRate(double itemsPerSecond) {
+    itemBucket = itemsPerSecond > 0 ? new TokenBucket(itemsPerSecond) : null;
+  }
+
+  /**
+   * Returns the maximum number of items per second fetched from the item
+   * provider for this timeline.
+   *
+   * @return the maximum item rate or 0 for no limit
+   */
+  public double getMaxItemFetchRate() {
+    return itemBucket == null ? 0 : itemBucket.getRate();
+  }
+
+  /**
+   * Returns the number of times a fetch was delayed because the maximum fetch
+   * or item rate was exceeded.
+   *
+   * @return the delayed fetch count
+   */
+  public long getDelayedFetchCount() {
+    return delayedFetchCount;
+  }
+
+  /**
+   * Returns the number of range changes from the client that were coalesced
+   * into a later window while a fetch was delayed. These range changes never
+   * caused a fetch.
+   *
+   * @return the coalesced range change count
+   */
+  public long getCoalescedRangeChangeCount() {
+    return coalescedRangeChangeCount;
+  }
+
+  /**
+   * <p>
+   * Sets the number of items sent to the client at a time when delivering
+   * items progressively. When enabled, the items that need to be sent are
+   * ordered from the center of the window outward and split into chunks.
+   * Each chunk is sent after the client acknowledges that the previous chunk
+   * was displayed so the user sees the items near the center of the window
+   * without waiting for the entire window. Chunks not yet sent are cancelled
+   * if the window changes.
+   * </p>
+   * <p>
+   * Progressive delivery is disabled by default.
+   * </p>
+   *
+   * @param chunkSize the number of items in each chunk or 0 to send all the
+   * items at once
+   */
+  public void setProgressiveChunkSize(int chunkSize) {
+    this.progressiveChunkSize = Math.max(chunkSize, 0);
+  }
+
+  /**
+   * Returns the number of items sent to the client at a time when delivering
+   * items progressively.
+   *
+   * @return the chunk size or 0 if progressive delivery is disabled
+   */
+  public int getProgressiveChunkSize() {
+    return progressiveChunkSize;
+  }
+
+  /**
+   * Sets whether items are sent to the client as columns (parallel arrays)
+   * rather than as an array of objects. The columnar format doesn't repeat
+   * the property names and null values of each item and repeated string
+   * properties are sent as indexes into a dictionary kept by the client so
+   * they are only sent once. This significantly reduces the size of large
+   * payloads. The default is false.
+   *
+   * @param enabled true to send items as columns
+   */
+  public void setColumnarItemsEnabled(boolean enabled) {
+    this.columnarItemsEnabled = enabled;
+  }
+
+  /**
+   * Returns true if items (the complete set as well as added and updated
+   * items) are sent to the client as columns.
+   *
+   * @return true if columnar items are enabled
+   */
+  public boolean isColumnarItemsEnabled() {
+    return columnarItemsEnabled;
+  }
+
+  /**
+   * <p>
+   * Sets the codec used to derive the keys sent to the client from the item
+   * IDs. By default each item ID is mapped to a generated key which requires
+   * the timeline to keep a map of the items displayed. With a codec, the keys
+   * of the items the codec can encode are derived from the IDs and decoded
+   * when the client refers to an item so no map is kept for them. The keys are
+   * visible to the client so the codec should be chosen accordingly.
+   * </p>
+   * <p>
+   * Because any ID the codec can encode can also be decoded, a client could
+   * forge the key of an item it was never sent. The keys received from the
+   * client are therefore only accepted for the items currently displayed on
+   * the client, or for deselection, the items currently selected. Any other
+   * key is ignored.
+   * </p>
+   * <p>
+   * Changing the codec changes all the keys so the items are sent to the
+   * client again.
+   * </p>
+   *
+   * @param codec the codec or null to map item IDs to generated keys
+   */
+  public void setItemKeyCodec(ItemKeyCodec codec) {
+    keyMapper.setCodec(codec);
+    markItemsAsDirty();
+  }
+
+  /**
+   * Returns the codec used to derive the keys sent to the client from the item
+   * IDs.
+   *
+   * @return the codec or null if item IDs are mapped to generated keys
+   */
+  public ItemKeyCodec getItemKeyCodec() {
+    return keyMapper.getCodec();
+  }
+
   /**
    * Marks the items as dirty which causes them to be sent to the client.
    */
@@ -208,21 +640,134 @@ public class Timeline extends AbstractJavaScriptComponent implements
 
   /**
    * Sets the groups used to group together items with the same group ID
-   * reference into rows.
+   * reference into rows. This replaces the group provider with a
+   * {@link BasicGroupProvider} containing the groups.
    *
    * @param groups the groups to set or null to clear the groups
    */
   public void setGroups(List<TimelineGroup> groups) {
-    this.groups = groups == null ? new ArrayList<TimelineGroup>() : groups;
+    setGroupProvider(new BasicGroupProvider(groups));
+  }
+
+  /**
+   * <p>
+   * Set the {@link TimelineGroupProvider} to be used with this timeline. The
+   * provider is used to get the groups used to group together items with the
+   * same group ID reference into rows. If the provider is a
+   * {@link TimelineGroupProvider.GroupSetChangeNotifier}, the groups are
+   * refreshed when the provider fires a change event and only the groups
+   * that were added, removed, or modified are sent to the client. By default
+   * an empty {@link BasicGroupProvider} is used.
+   * </p>
+   * <p>
+   * If the provider is a {@link TimelineGroupProvider.Hierarchical}, only the
+   * top level groups are displayed initially. A group with children is
+   * expanded or collapsed by clicking on its label or by calling
+   * {@link #expandGroup(java.lang.String) } and
+   * {@link #collapseGroup(java.lang.String) }. The children are requested
+   * from the provider when a group is expanded and only the items of the
+   * displayed groups are sent to the client.
+   * </p>
+   *
+   * @param provider the provider to set or null to use an empty provider
+   */
+  public void setGroupProvider(TimelineGroupProvider provider) {
+    if (provider == null) {
+      provider = new BasicGroupProvider();
+    }
+
+    if (provider != this.groupProvider) {
+      // remove old listener
+      if (groupProvider instanceof TimelineGroupProvider.GroupSetChangeNotifier) {
+        ((TimelineGroupProvider.GroupSetChangeNotifier) groupProvider)
+            .removeGroupSetChangeListener(this);
+      }
+
+      this.groupProvider = provider;
+      expandedGroupIds.clear();
+
+      // add new listener
+      if (provider instanceof TimelineGroupProvider.GroupSetChangeNotifier) {
+        ((TimelineGroupProvider.GroupSetChangeNotifier) provider)
+            .addGroupSetChangeListener(this);
+      }
+
+      refreshGroups();
+    }
+  }
+
+  /**
+   * Returns the group provider current in use.
+   *
+   * @return the group provider
+   */
+  public TimelineGroupProvider getGroupProvider() {
+    return groupProvider;
+  }
+
+  /**
+   * <p>
+   * Enables or disables group virtualization. When enabled, the client
+   * reports the range of groups that are vertically visible and only those
+   * groups plus a margin (see {@link #setGroupMargin(int) }) are sent to the
+   * client. The items are also limited to the groups sent and, if the item
+   * provider is {@link TimelineItemProvider.GroupFilterable}, only the items
+   * in those groups are fetched. This allows a timeline to have thousands of
+   * groups.
+   * </p>
+   * <p>
+   * The groups are virtualized in the order of the group list so the group
+   * order option, if any, must match the order of the list. Because only a
+   * portion of the groups are on the client, the vertical scroll bar only
+   * covers the groups sent and more groups are loaded as the user scrolls
+   * toward either end. Virtualization is disabled by default.
+   * </p>
+   *
+   * @param enabled true to enable group virtualization
+   */
+  public void setGroupVirtualizationEnabled(boolean enabled) {
+    getState().groupVirtualization = enabled;
 
+    groupRangeStart = 0;
+    groupRangeEnd = 2 * groupMargin;
     groupsDirty = true;
-    markAsDirty();
+    markItemsAsDirty();
+  }
+
+  /**
+   * Returns true if group virtualization is enabled.
+   *
+   * @return true if enabled
+   */
+  public boolean isGroupVirtualizationEnabled() {
+    return getState(false).groupVirtualization;
+  }
+
+  /**
+   * Sets the number of groups sent to the client before and after the
+   * visible groups when group virtualization is enabled. The default is 20.
+   *
+   * @param margin the number of groups to send beyond the visible groups
+   */
+  public void setGroupMargin(int margin) {
+    this.groupMargin = Math.max(margin, 1);
+  }
+
+  /**
+   * Returns the number of groups sent to the client before and after the
+   * visible groups when group virtualization is enabled.
+   *
+   * @return the group margin
+   */
+  public int getGroupMargin() {
+    return groupMargin;
   }
 
   /**
    * Returns the groups used to group together items with the same group ID.
+   * These are the groups last retrieved from the group provider.
    *
-   * @return the groups or null if none have been specified
+   * @return the groups or an empty list if none have been specified
    */
   public List<TimelineGroup> getGroups() {
     return groups;
@@ -251,8 +796,10 @@ public class Timeline extends AbstractJavaScriptComponent implements
 
   /**
    * Selects the items with given IDs. A {@link SelectListener.SelectEvent} will
-   * be fired if items are selected. That is, if the items exist and are not
-   * selected.
+   * be fired if the selection changes. The selection is kept for items that
+   * are not in the window and they are selected on the client when they are
+   * displayed. Only the items selected or deselected are sent to the client
+   * unless the options request focus.
    *
    * @param itemIds the IDs of the items to setSelection
    * @param options the method options
@@ -263,223 +810,1328 @@ public class Timeline extends AbstractJavaScriptComponent implements
       itemIds = Collections.emptySet();
     }
 
-    // Convert the item IDs into the timeline item keys.
-    List<String> keyList = keyMapper.getKeys(itemIds);
-    String[] keys = new String[keyList.size()];
-    keyList.toArray(keys);
+    Set<Object> oldSelection = selection;
+    updateSelection(new HashSet<>(itemIds));
+
+    if (options != null && options.isFocus()) {
+      // Focusing needs the full selection on the client but only the items
+      // displayed can be selected there.
+      List<String> keyList = new ArrayList<>();
+      for (Object itemId : selection) {
+        String key = getClientKey(itemId);
+        if (key != null) {
+          keyList.add(key);
+        }
+      }
+      String[] keys = new String[keyList.size()];
+      keyList.toArray(keys);
 
-    TimelineClientRpc.MethodOptions.SetSelection rpcOptions =
-        new TimelineClientRpc.MethodOptions.SetSelection();
-    if (options != null) {
+      TimelineClientRpc.MethodOptions.SetSelection rpcOptions =
+          new TimelineClientRpc.MethodOptions.SetSelection();
       rpcOptions.animation = TimelineMethodOptions.map(options.getAnimation());
       rpcOptions.focus = options.isFocus();
-    }
 
-    clientRpc.setSelection(keys, rpcOptions);
+      clientRpc.setSelection(keys, rpcOptions);
+    }
+    else {
+      sendSelectionChangesToClient(oldSelection, selection);
+    }
   }
 
   /**
-   * Deselects the items with given IDs. This is a simple convenience method for
-   * calling {@link #setSelection(java.util.Collection, org.mpilone.vaadin.timeline.TimelineMethodOptions.SetSelection)
-   * } with the items removed from the current selection. A
-   * {@link SelectListener.SelectEvent} will be fired if items are deselected.
-   * That is, if the items exist and were selected).
+   * Sets the selected items, pinning the keys of the selected items displayed
+   * on the client and unpinning the keys of the items no longer selected. A
+   * {@link SelectListener.SelectEvent} is fired if the selection changed.
    *
-   * @param itemIds the ID of the items to deselect
-   * @param options the method options
+   * @param newSelection the IDs of the selected items
    */
-  public void deselect(Collection<Object> itemIds,
-      TimelineMethodOptions.SetSelection options) {
-    Set<Object> newSelection = new HashSet<>(getSelection());
-    newSelection.removeAll(itemIds);
+  private void updateSelection(Set<Object> newSelection) {
+    // Unpin items no longer selected and pin items newly selected so the
+    // mapper only keeps the selected items beyond the active rows. Selected
+    // items that aren't displayed are pinned when their keys are sent to the
+    // client so no key is created for them until then.
+    for (Object itemId : selection) {
+      if (!newSelection.contains(itemId) && keyMapper.isPinned(itemId)) {
+        keyMapper.unpin(itemId);
+      }
+    }
+    for (Object itemId : newSelection) {
+      if (!keyMapper.isPinned(itemId) && getClientKey(itemId) != null) {
+        keyMapper.pin(itemId);
+      }
+    }
+
+    // Apply the new selection internally.
+    Set<Object> oldSelection = selection;
+    selection = newSelection;
+
+    // Only fire the event if the selection actually changed. This is more
+    // consistent with Vaadin components.
+    if (!selection.equals(oldSelection)) {
+      SelectListener.SelectEvent evt = new SelectListener.SelectEvent(this,
+          selection);
+
+      fireEvent(evt);
+    }
+  }
+
+  /**
+   * Sends the items selected and deselected to the client. Only the items
+   * displayed on the client are sent. The selected items that are not
+   * displayed are selected on the client when they are sent.
+   *
+   * @param oldSelection the IDs of the items previously selected
+   * @param newSelection the IDs of the items now selected
+   */
+  private void sendSelectionChangesToClient(Set<Object> oldSelection,
+      Set<Object> newSelection) {
+    if (clientItems == null) {
+      return;
+    }
+
+    List<String> added = new ArrayList<>();
+    for (Object itemId : newSelection) {
+      String key = oldSelection.contains(itemId) ? null : getClientKey(itemId);
+      if (key != null) {
+        added.add(key);
+      }
+    }
+    List<String> removed = new ArrayList<>();
+    for (Object itemId : oldSelection) {
+      String key = newSelection.contains(itemId) ? null : getClientKey(itemId);
+      if (key != null) {
+        removed.add(key);
+      }
+    }
+
+    if (!removed.isEmpty()) {
+      clientRpc.removeFromSelection(removed.toArray(new String[removed.
+          size()]));
+    }
+    if (!added.isEmpty()) {
+      clientRpc.addToSelection(added.toArray(new String[added.size()]));
+    }
+  }
+
+  /**
+   * Returns the key of the item if the item is displayed on the client. A new
+   * key is never created.
+   *
+   * @param itemId the item ID
+   *
+   * @return the key or null if the item isn't displayed on the client
+   */
+  private String getClientKey(Object itemId) {
+    String key = clientItems == null ? null : keyMapper.findKey(itemId);
+    return key != null && clientItems.containsKey(key) ? key : null;
+  }
+
+  /**
+   * Selects the given items on the client if they are selected. This is
+   * called when items are sent to the client because the selection of an item
+   * is lost when it leaves the window or is replaced. The keys of the selected
+   * items sent are pinned.
+   *
+   * @param rpcItems the items sent to the client
+   */
+  private void sendSelectionToClient(
+      Collection<TimelineClientRpc.Item> rpcItems) {
+    if (selection.isEmpty()) {
+      return;
+    }
+
+    // Only look at the items sent so no keys are created for the selected
+    // items that aren't displayed.
+    List<String> keys = new ArrayList<>();
+    for (TimelineClientRpc.Item rpcItem : rpcItems) {
+      Object itemId = keyMapper.getItemId(rpcItem.id);
+      if (selection.contains(itemId)) {
+        keys.add(rpcItem.id);
+
+        if (!keyMapper.isPinned(itemId)) {
+          keyMapper.pin(itemId);
+        }
+      }
+    }
+
+    if (!keys.isEmpty()) {
+      clientRpc.addToSelection(keys.toArray(new String[keys.size()]));
+    }
+  }
+
+
+  /**
+   * Deselects the items with given IDs. This is a simple convenience method for
+   * calling {@link #setSelection(java.util.Collection, org.mpilone.vaadin.timeline.TimelineMethodOptions.SetSelection)
+   * } with the items removed from the current selection. A
+   * {@link SelectListener.SelectEvent} will be fired if items are deselected.
+   * That is, if the items exist and were selected).
+   *
+   * @param itemIds the ID of the items to deselect
+   * @param options the method options
+   */
+  public void deselect(Collection<Object> itemIds,
+      TimelineMethodOptions.SetSelection options) {
+    Set<Object> newSelection = new HashSet<>(getSelection());
+    newSelection.removeAll(itemIds);
+
+    setSelection(newSelection, options);
+  }
+
+  /**
+   * Returns true if the given item ID is selected.
+   *
+   * @param itemId the ID of the item to check
+   *
+   * @return true if selected, false if not selected or not found
+   */
+  public boolean isSelected(Object itemId) {
+    return getSelection().contains(itemId);
+  }
+
+  /**
+   * Returns an unmodifiable collection of item IDs that are selected or an
+   * empty collection if nothing is selected.
+   *
+   * @return the collection of selected item IDs
+   */
+  public Collection<Object> getSelection() {
+    return Collections.unmodifiableCollection(selection);
+  }
+
+  /**
+   * Returns the current configuration options for the timeline. The options
+   * returned can be modified and are effective immediately.
+   *
+   * @return the configuration options for the timeline
+   */
+  public TimelineOptions getOptions() {
+    return options;
+  }
+
+  @Override
+  protected TimelineState getState() {
+    return (TimelineState) super.getState();
+  }
+
+  @Override
+  protected TimelineState getState(boolean markAsDirty) {
+    return (TimelineState) super.getState(markAsDirty);
+  }
+
+  @Override
+  public void beforeClientResponse(boolean initial) {
+    super.beforeClientResponse(initial);
+
+    if (initial) {
+      // The client side is new so it doesn't have any of the items, groups,
+      // or strings.
+      clientItems = null;
+      clientGroups = null;
+      requestedWindow = null;
+      fetchRetryPending = false;
+      columnEncoder = null;
+      cancelItemChunks();
+    }
+
+    boolean windowValid = !window.getStart().equals(window.getEnd()) || window.
+        getStart().after(window.getEnd());
+    boolean restoring = false;
+
+    if (initial && windowValid) {
+      // Normally this happens when the timeline was previously displayed 
+      // and hidden. We basically want to restore the state on this initial
+      // display.
+      restoring = true;
+
+      if (!windowDirty) {
+        // Reapply the existing window so it can be pushed back to the client.
+        // This bypasses setWindow because the request would be suppressed as
+        // it matches the current window.
+        pendingWindow = window;
+        pendingSetWindowOptions = null;
+        windowDirty = true;
+      }
+    }
+    else if (initial && !windowDirty) {
+      // The window is not dirty and the current window is not valid.
+      // This means we have to initialize the window for the first time
+      // to some intelligent default.
+      Date start = currentCalendar.getTime();
+      currentCalendar.add(java.util.Calendar.HOUR, 8);
+      Date end = currentCalendar.getTime();
+      setWindow(start, end, null);
+    }
+
+    if (restoring) {
+      // Send everything to the client. We know we have a valid window so
+      // we can send items and if the window hasn't changed we won't get a
+      // range change event so it is now or never. If the window did change,
+      // we will get a range change but that will be handled properly
+      // and we will resend the items in the next request. So there is a chance
+      // of sending the items twice but we have to assume the window
+      // didn't change.
+      sendGroupsToClient();
+      sendItemsToClient();
+      sendWindowToClient();
+    }
+    else {
+      if (groupsDirty) {
+        sendGroupsToClient();
+      }
+
+      if (windowDirty) {
+        // Send the dirty window which will trigger a range change event
+        // for the items later.
+        sendWindowToClient();
+      }
+      else if (itemsDirty && windowValid) {
+        // The window isn't dirty so we're not expecting a range change
+        // event. If we have a valid window, go ahead and send the items.
+        // Because of the delay from sending the window to the client and
+        // getting the range change event, we can get into the state of the
+        // window not being dirty (because we sent it) but the window not
+        // being valid yet (because we didn't get the range change event).
+        // We don't want to send the items yet in this state because we'd
+        // query the item provider with an invalid range.
+        sendItemsToClient();
+      }
+      else if (itemsModified && windowValid) {
+        // A small change was already applied to the displayed items so
+        // there is no need to query the provider again.
+        sendItemsToClient(items);
+      }
+    }
+  }
+
+  @Override
+  public void itemSetChange(
+      TimelineItemProvider.ItemSetChangeEvent changeEvent) {
+    // sanity check
+    if (provider == changeEvent.getSource()) {
+      if (prefetcher != null) {
+        prefetcher.invalidate();
+      }
+
+      // The event may be fired by a background thread (e.g. a concurrent
+      // provider being written by an ingest thread) so make sure we only
+      // modify the component while holding the session lock.
+      UI ui = getUI();
+      if (ui != null && ui.getSession() != null && !ui.getSession().hasLock()) {
+        ui.access(() -> applyItemSetChange(changeEvent));
+      }
+      else {
+        applyItemSetChange(changeEvent);
+      }
+    }
+  }
+
+  @Override
+  public void groupSetChange(
+      TimelineGroupProvider.GroupSetChangeEvent changeEvent) {
+    // sanity check
+    if (groupProvider == changeEvent.getSource()) {
+      UI ui = getUI();
+      if (ui != null && ui.getSession() != null && !ui.getSession().hasLock()) {
+        ui.access(this::refreshGroups);
+      }
+      else {
+        refreshGroups();
+      }
+    }
+  }
+
+  /**
+   * Refreshes the groups from the group provider and marks them to be sent to
+   * the client.
+   */
+  private void refreshGroups() {
+    Set<String> expanded = expandedGroupIds;
+    expandedGroupIds = new HashSet<>();
+    expandableGroupIds.clear();
+    groupLevels.clear();
+
+    groups = new ArrayList<>();
+    flattenGroups(groupProvider.getGroups(), 0, expanded, groups);
+
+    markGroupsAsDirty();
+  }
+
+  /**
+   * Adds the groups and, depth first, the children of the expanded groups to
+   * the list of groups to display. The level of each group and the groups that
+   * can be expanded are recorded as the groups are added.
+   *
+   * @param levelGroups the groups to add
+   * @param level the nesting level of the groups starting at 0
+   * @param expanded the IDs of the groups to expand
+   * @param result the list to add the groups to
+   */
+  private void flattenGroups(List<TimelineGroup> levelGroups, int level,
+      Set<String> expanded, List<TimelineGroup> result) {
+    TimelineGroupProvider.Hierarchical hierarchy = groupProvider instanceof
+        TimelineGroupProvider.Hierarchical
+            ? (TimelineGroupProvider.Hierarchical) groupProvider : null;
+
+    for (TimelineGroup g : levelGroups) {
+      result.add(g);
+      if (level > 0) {
+        groupLevels.put(g.getId(), level);
+      }
+
+      if (hierarchy != null && hierarchy.hasChildren(g.getId())) {
+        expandableGroupIds.add(g.getId());
+
+        if (expanded.contains(g.getId())) {
+          expandedGroupIds.add(g.getId());
+          flattenGroups(hierarchy.getChildren(g.getId()), level + 1, expanded,
+              result);
+        }
+      }
+    }
+  }
+
+  /**
+   * Marks the groups as dirty so they are sent to the client. The items are
+   * also marked as dirty if they are limited to the groups sent.
+   */
+  private void markGroupsAsDirty() {
+    groupsDirty = true;
+    if (isGroupVirtualizationEnabled()
+        || groupProvider instanceof TimelineGroupProvider.Hierarchical) {
+      // The groups sent may change which changes the items displayed.
+      markItemsAsDirty();
+    }
+    else {
+      markAsDirty();
+    }
+  }
+
+  /**
+   * Expands the group so its children are displayed below it. The children
+   * are requested from the group provider. Nothing happens if the group
+   * provider isn't a {@link TimelineGroupProvider.Hierarchical}, the group
+   * isn't displayed, has no children, or is already expanded.
+   *
+   * @param groupId the ID of the group to expand
+   */
+  public void expandGroup(String groupId) {
+    if (!expandableGroupIds.contains(groupId) || expandedGroupIds.contains(
+        groupId)) {
+      return;
+    }
+
+    int index = indexOfGroup(groupId);
+    List<TimelineGroup> children = new ArrayList<>();
+    flattenGroups(((TimelineGroupProvider.Hierarchical) groupProvider).
+        getChildren(groupId), getGroupLevel(groupId) + 1, Collections.
+        <String>emptySet(), children);
+
+    expandedGroupIds.add(groupId);
+    groups.addAll(index + 1, children);
+
+    markGroupsAsDirty();
+  }
+
+  /**
+   * Collapses the group so its descendants are no longer displayed. The
+   * descendants and their items are released and will be requested again if
+   * the group is expanded.
+   *
+   * @param groupId the ID of the group to collapse
+   */
+  public void collapseGroup(String groupId) {
+    if (!expandedGroupIds.remove(groupId)) {
+      return;
+    }
+
+    // The descendants follow the group and have a greater level.
+    int index = indexOfGroup(groupId);
+    int level = getGroupLevel(groupId);
+    int end = index + 1;
+    while (end < groups.size() && getGroupLevel(groups.get(end).getId())
+        > level) {
+      String id = groups.get(end).getId();
+      expandedGroupIds.remove(id);
+      expandableGroupIds.remove(id);
+      groupLevels.remove(id);
+      end++;
+    }
+    groups.subList(index + 1, end).clear();
+
+    markGroupsAsDirty();
+  }
+
+  /**
+   * Returns true if the group is expanded to display its children.
+   *
+   * @param groupId the ID of the group
+   *
+   * @return true if expanded
+   */
+  public boolean isGroupExpanded(String groupId) {
+    return expandedGroupIds.contains(groupId);
+  }
+
+  /**
+   * Returns the index of the group in the displayed groups.
+   *
+   * @param groupId the ID of the group
+   *
+   * @return the index of the group or -1 if it isn't displayed
+   */
+  private int indexOfGroup(String groupId) {
+    for (int i = 0; i < groups.size(); ++i) {
+      if (groups.get(i).getId().equals(groupId)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the nesting level of a displayed group.
+   *
+   * @param groupId the ID of the group
+   *
+   * @return the level of the group starting at 0
+   */
+  private int getGroupLevel(String groupId) {
+    Integer level = groupLevels.get(groupId);
+    return level == null ? 0 : level;
+  }
+
+  /**
+   * Applies an item set change to the timeline. If the event describes the
+   * change in detail, a change that doesn't affect the displayed items or the
+   * current window is ignored and a small change is applied directly to the
+   * displayed items without querying the provider. Otherwise the items are
+   * marked as dirty so they will be fetched again.
+   *
+   * @param changeEvent the change event to apply
+   */
+  private void applyItemSetChange(
+      TimelineItemProvider.ItemSetChangeEvent changeEvent) {
+    if (!changeEvent.isDetailed() || itemsDirty || items == null
+        || pendingFetch != null || changeEvent.getAddedItems().size()
+        + changeEvent.getRemovedItems().size() + changeEvent.getUpdatedItems().
+        size() > MAX_INCREMENTAL_CHANGES) {
+      markItemsAsDirty();
+      return;
+    }
+
+    Set<Object> changedIds = new HashSet<>();
+    for (TimelineItem item : changeEvent.getRemovedItems()) {
+      changedIds.add(item.getId());
+    }
+    for (TimelineItem item : changeEvent.getUpdatedItems()) {
+      changedIds.add(item.getId());
+    }
+
+    boolean displayed = false;
+    for (TimelineItem item : items) {
+      if (changedIds.contains(item.getId())) {
+        displayed = true;
+        break;
+      }
+    }
+
+    // Nothing to do if the change is entirely outside of what was fetched.
+    DateRange fetchWindow = getFetchWindow();
+    DateRange range = changeEvent.getAffectedRange();
+    if (!displayed && (range == null || range.getStart().after(fetchWindow.
+        getEnd()) || range.getEnd().before(fetchWindow.getStart()))) {
+      return;
+    }
+
+    List<TimelineItem> newItems = new ArrayList<>(items.size());
+    for (TimelineItem item : items) {
+      if (!changedIds.contains(item.getId())) {
+        newItems.add(item);
+      }
+    }
+    for (TimelineItem item : changeEvent.getUpdatedItems()) {
+      if (intersects(item, fetchWindow)) {
+        newItems.add(item);
+      }
+    }
+    for (TimelineItem item : changeEvent.getAddedItems()) {
+      if (intersects(item, fetchWindow)) {
+        newItems.add(item);
+      }
+    }
+
+    items = newItems;
+    itemsModified = true;
+    markAsDirty();
+  }
+
+  /**
+   * Returns the range of items fetched from the item provider for the current
+   * window. Providers based on {@link AbstractItemProvider} expand the window
+   * so the items fetched may be outside of the visible window.
+   *
+   * @return the range of the fetched items
+   */
+  private DateRange getFetchWindow() {
+    TimelineItemProvider p = provider;
+    if (p instanceof CachingItemProvider) {
+      p = ((CachingItemProvider) p).getProvider();
+    }
+
+    return p instanceof AbstractItemProvider ? ((AbstractItemProvider) p).
+        getExpandedWindow(window.getStart(), window.getEnd()) : window;
+  }
+
+  /**
+   * Returns true if the item intersects the given range. Items with no end
+   * date are treated as point data.
+   *
+   * @param item the item to check
+   * @param range the range to check
+   *
+   * @return true if the item intersects the range
+   */
+  private static boolean intersects(TimelineItem item, DateRange range) {
+    Date end = item.getEnd() == null ? item.getStart() : item.getEnd();
+    return !item.getStart().after(range.getEnd()) && !end.before(range.
+        getStart());
+  }
+
+  /**
+   * Sets up the groups to be sent to the client and makes the RPC call to send
+   * them.
+   */
+  private void sendGroupsToClient() {
+    List<TimelineGroup> sendGroups = groups;
+
+    if (isGroupVirtualizationEnabled()) {
+      // Only send the groups around the visible groups.
+      groupRangeStart = Math.max(Math.min(groupRangeStart, groups.size() - 1),
+          0);
+      groupRangeEnd = Math.max(Math.min(groupRangeEnd, groups.size() - 1),
+          groupRangeStart);
+      sendGroups = groups.isEmpty() ? groups : groups.subList(groupRangeStart,
+          groupRangeEnd + 1);
+    }
+
+    if (isGroupVirtualizationEnabled()
+        || groupProvider instanceof TimelineGroupProvider.Hierarchical) {
+      // Only the items in the groups sent will be displayed.
+      Set<String> groupIds = new HashSet<>();
+      for (TimelineGroup g : sendGroups) {
+        groupIds.add(g.getId());
+      }
+      setSentGroupIds(groupIds);
+    }
+    else {
+      setSentGroupIds(null);
+    }
+
+    Map<String, TimelineClientRpc.Group> rpcGroups = new LinkedHashMap<>();
+    for (TimelineGroup g : sendGroups) {
+      TimelineClientRpc.Group group = new TimelineClientRpc.Group();
+      group.className = g.getStyleName() == null ? "" : g.getStyleName();
+      group.content = g.getContent();
+      group.id = g.getId();
+      group.order = g.getOrder();
+      group.style = g.getStyle();
+      group.subgroupOrder = g.getSubgroupOrder();
+      group.title = g.getTitle();
+      group.nestingLevel = getGroupLevel(g.getId());
+      group.expanded = expandableGroupIds.contains(g.getId())
+          ? expandedGroupIds.contains(g.getId()) : null;
+      rpcGroups.put(group.id, group);
+    }
+
+    if (clientGroups == null || !sendGroupChangesToClient(rpcGroups)) {
+      clientRpc.setGroups(rpcGroups.values().toArray(
+          new TimelineClientRpc.Group[rpcGroups.size()]));
+    }
+    clientGroups = rpcGroups;
+
+    groupsDirty = false;
+  }
+
+  /**
+   * Sends the groups added, updated, and removed since the last groups sent
+   * to the client. If the number of changes is as large as the number of
+   * groups, nothing is sent and the caller should send the full set of
+   * groups.
+   *
+   * @param rpcGroups the new groups to display on the client mapped by ID
+   *
+   * @return true if the changes were sent, false if the full set of groups
+   * should be sent
+   */
+  private boolean sendGroupChangesToClient(
+      Map<String, TimelineClientRpc.Group> rpcGroups) {
+    List<TimelineClientRpc.Group> added = new ArrayList<>();
+    List<TimelineClientRpc.Group> updated = new ArrayList<>();
+    List<String> removed = new ArrayList<>();
+
+    for (TimelineClientRpc.Group rpcGroup : rpcGroups.values()) {
+      TimelineClientRpc.Group clientGroup = clientGroups.get(rpcGroup.id);
+      if (clientGroup == null) {
+        added.add(rpcGroup);
+      }
+      else if (!clientGroup.equals(rpcGroup)) {
+        updated.add(rpcGroup);
+      }
+    }
+    for (String id : clientGroups.keySet()) {
+      if (!rpcGroups.containsKey(id)) {
+        removed.add(id);
+      }
+    }
+
+    if (!rpcGroups.isEmpty() && added.size() + updated.size() + removed.size()
+        >= rpcGroups.size()) {
+      return false;
+    }
+
+    if (!removed.isEmpty()) {
+      clientRpc.removeGroups(removed.toArray(new String[removed.size()]));
+    }
+    if (!updated.isEmpty()) {
+      clientRpc.updateGroups(updated.toArray(
+          new TimelineClientRpc.Group[updated.size()]));
+    }
+    if (!added.isEmpty()) {
+      clientRpc.addGroups(added.toArray(
+          new TimelineClientRpc.Group[added.size()]));
+    }
+    return true;
+  }
+
+  /**
+   * Sets the IDs of the groups sent to the client which limit the items
+   * fetched. The prefetched items are discarded if the groups change because
+   * they were fetched for the old groups.
+   *
+   * @param groupIds the IDs of the groups sent or null if items are fetched
+   * for all groups
+   */
+  private void setSentGroupIds(Set<String> groupIds) {
+    if (prefetcher != null && !Objects.equals(groupIds, sentGroupIds)) {
+      prefetcher.invalidate();
+    }
+    sentGroupIds = groupIds;
+  }
+
+  /**
+   * Fetches the items for the current window from the item provider and sends
+   * them to the client. If the provider is asynchronous, the items are sent
+   * when the fetch completes.
+   */
+  private void sendItemsToClient() {
+    if (getItemProvider() instanceof AsyncTimelineItemProvider) {
+      // The items are pushed when the fetch completes so there is no
+      // prefetching for asynchronous providers.
+      if (admitFetch()) {
+        fetchItemsAsync((AsyncTimelineItemProvider) getItemProvider());
+      }
+    }
+    else {
+      List<TimelineItem> prefetched = prefetcher == null ? null : prefetcher.
+          getItems(window);
+
+      // The prefetch that buffered the items was already counted against the
+      // rates when it was started and when it completed so serving them from
+      // the buffer doesn't need to be admitted.
+      if (prefetched != null) {
+        sendItemsToClient(prefetched);
+      }
+      else if (!admitFetch()) {
+        // The items stay dirty and are fetched when the client retries.
+        return;
+      }
+      else if (sentGroupIds != null && getItemProvider()
+          instanceof TimelineItemProvider.GroupFilterable) {
+        TimelineItemProvider.GroupFilterable p =
+            (TimelineItemProvider.GroupFilterable) getItemProvider();
+        sendItemsToClient(chargeFetchedItems(p.getItems(window.getStart(),
+            window.getEnd(), sentGroupIds)));
+      }
+      else {
+        sendItemsToClient(chargeFetchedItems(getItemProvider().getItems(window.
+            getStart(), window.getEnd())));
+      }
+
+      prefetchItems();
+    }
+  }
+
+  /**
+   * Starts a prefetch ahead of the current window if needed. The fetch for
+   * the current window has priority so a prefetch is only started with what
+   * remains of the fetch and item rates after it and is counted against them.
+   */
+  private void prefetchItems() {
+    if (prefetcher != null && getFetchDelay() == 0 && prefetcher.prefetch(
+        window, items, sentGroupIds, getItemProvider()) && fetchBucket
+        != null) {
+      fetchBucket.consume(1);
+    }
+  }
+
+  /**
+   * Checks if a fetch from the item provider is allowed by the maximum fetch
+   * and item rates. If the fetch is allowed, it is counted against the fetch
+   * rate. Otherwise the client is asked to retry once the rates allow it.
+   *
+   * @return true if the fetch is allowed now
+   */
+  private boolean admitFetch() {
+    long delay = getFetchDelay();
+
+    if (delay == 0) {
+      if (fetchBucket != null) {
+        fetchBucket.consume(1);
+      }
+      return true;
+    }
+
+    delayedFetchCount++;
+    requestFetchRetry(delay);
+    return false;
+  }
+
+  /**
+   * Asks the client to retry the fetch after the given delay unless a retry
+   * is already pending. The items are kept dirty so they are fetched on the
+   * retry.
+   *
+   * @param delay the delay in milliseconds
+   */
+  private void requestFetchRetry(long delay) {
+    itemsDirty = true;
+    if (!fetchRetryPending) {
+      fetchRetryPending = true;
+      clientRpc.requestFetchRetry((int) Math.min(delay, Integer.MAX_VALUE));
+    }
+  }
+
+  /**
+   * Returns the time until a fetch from the item provider is allowed by the
+   * maximum fetch and item rates and by the back off after a failed fetch.
+   * The items fetched by completed prefetches are counted against the item
+   * rate first.
+   *
+   * @return the delay in milliseconds or 0 if a fetch is allowed now
+   */
+  private long getFetchDelay() {
+    if (prefetcher != null) {
+      long prefetchedCount = prefetcher.drainFetchedItemCount();
+      if (itemBucket != null) {
+        itemBucket.consume(prefetchedCount);
+      }
+    }
+
+    long delay = Math.max(fetchBucket == null ? 0 : fetchBucket.getDelayMillis(
+        1), itemBucket == null ? 0 : itemBucket.getDelayMillis(0));
+    return Math.max(delay, fetchRetryTime - System.currentTimeMillis());
+  }
+
+  /**
+   * Counts the fetched items against the maximum item rate.
+   *
+   * @param fetchedItems the items fetched from the provider
+   *
+   * @return the fetched items
+   */
+  private List<TimelineItem> chargeFetchedItems(
+      List<TimelineItem> fetchedItems) {
+    if (itemBucket != null && fetchedItems != null) {
+      itemBucket.consume(fetchedItems.size());
+    }
+    return fetchedItems;
+  }
+
+  /**
+   * Starts an asynchronous fetch of the items for the current window. Any
+   * previous fetch still in progress is cancelled and its result will be
+   * discarded. The result is applied to the timeline while holding the session
+   * lock via {@link UI#access(java.lang.Runnable) }.
+   *
+   * @param asyncProvider the provider to fetch the items from
+   */
+  private void fetchItemsAsync(AsyncTimelineItemProvider asyncProvider) {
+    if (pendingFetch != null) {
+      pendingFetch.cancel(false);
+    }
+
+    final long generation = ++fetchGeneration;
+    final DateRange fetchWindow = window;
+    final UI ui = getUI();
+
+    // The items are no longer dirty because the fetch is in flight. If the
+    // window changes, a new fetch will be started. If the fetch fails, the
+    // items are marked dirty again and the client is asked to retry later.
+    itemsDirty = false;
+
+    CompletableFuture<List<TimelineItem>> future = asyncProvider.getItemsAsync(
+        fetchWindow.getStart(), fetchWindow.getEnd());
+
+    if (future.isDone() || ui == null) {
+      // Completed without blocking (or we're not attached) so apply it now
+      // rather than waiting for the next access.
+      pendingFetch = null;
+      try {
+        applyFetchedItems(generation, fetchWindow, future.join());
+      }
+      catch (CompletionException | CancellationException ex) {
+        fetchItemsFailed(ex);
+      }
+    }
+    else {
+      pendingFetch = future;
+      future.whenComplete((result, ex) -> {
+        try {
+          ui.access(() -> {
+            if (ex != null) {
+              if (generation == fetchGeneration) {
+                pendingFetch = null;
+                fetchItemsFailed(ex);
+              }
+            }
+            else {
+              applyFetchedItems(generation, fetchWindow, result);
+            }
+          });
+        }
+        catch (UIDetachedException detachedEx) {
+          // The UI was closed while fetching so the result isn't needed.
+        }
+      });
+    }
+  }
+
+  /**
+   * Handles a failed asynchronous fetch by keeping the items dirty and asking
+   * the client to retry after a delay. The delay doubles with each consecutive
+   * failure, up to a maximum, so a failing provider isn't queried in a tight
+   * loop. Fetches for new windows are delayed until the retry as well.
+   *
+   * @param ex the cause of the failure
+   */
+  private void fetchItemsFailed(Throwable ex) {
+    LOGGER.warn("Unable to fetch timeline items.", ex);
+
+    long delay = Math.min(MIN_FETCH_RETRY_DELAY << Math.min(fetchFailureCount,
+        16), MAX_FETCH_RETRY_DELAY);
+    fetchFailureCount++;
+    fetchRetryTime = System.currentTimeMillis() + delay;
+
+    markItemsAsDirty();
+    requestFetchRetry(delay);
+  }
+
+  /**
+   * Applies the result of an asynchronous fetch if it is still current,
+   * otherwise the result is discarded.
+   *
+   * @param generation the generation of the fetch
+   * @param fetchWindow the window the items were fetched for
+   * @param fetchedItems the items fetched
+   */
+  private void applyFetchedItems(long generation, DateRange fetchWindow,
+      List<TimelineItem> fetchedItems) {
+    // The provider did the work even if the items are no longer needed.
+    chargeFetchedItems(fetchedItems);
+
+    // The provider is working again so don't back off any longer.
+    fetchFailureCount = 0;
+    fetchRetryTime = 0;
+
+    if (generation != fetchGeneration || !fetchWindow.equals(window)) {
+      return;
+    }
+
+    pendingFetch = null;
+    sendItemsToClient(fetchedItems);
+  }
+
+  /**
+   * Sets up the given items to be sent to the client and makes the RPC call
+   * to send them. If the items last sent to the client are known, only the
+   * items that were added, updated, or removed are sent. Otherwise, or if most
+   * of the items changed, the full set of items is sent.
+   *
+   * @param fetchedItems the items fetched from the provider for the current
+   * window
+   */
+  private void sendItemsToClient(List<TimelineItem> fetchedItems) {
+    items = fetchedItems == null ? new ArrayList<TimelineItem>() : fetchedItems;
+
+    // Replace dense items with clusters if enabled.
+    List<TimelineItem> displayItems = items;
+
+    // Only the items in the groups on the client can be displayed.
+    if (sentGroupIds != null) {
+      displayItems = new ArrayList<>();
+      for (TimelineItem item : items) {
+        if (sentGroupIds.contains(item.getGroupId())) {
+          displayItems.add(item);
+        }
+      }
+    }
+
+    if (clusterer != null) {
+      displayItems = clusterer.cluster(displayItems, window);
+    }
+
+    // Enforce the budget if needed.
+    int availableCount = displayItems.size();
+    if (itemBudget > 0 && availableCount > itemBudget) {
+      displayItems = reduceItems(displayItems);
+    }
+
+    clusters.clear();
+    if (clusterer != null) {
+      for (TimelineItem item : displayItems) {
+        if (item instanceof ClusterItem) {
+          clusters.put(item.getId(), (ClusterItem) item);
+        }
+      }
+    }
+
+    List<Object> itemIds = new ArrayList<>(displayItems.size());
+    Map<String, TimelineClientRpc.Item> rpcItems = new LinkedHashMap<>();
+    for (TimelineItem item : displayItems) {
+
+      itemIds.add(item.getId());
+
+      TimelineClientRpc.Item rpcItem = new TimelineClientRpc.Item();
+      rpcItem.className = item.getStyleName();
+      rpcItem.content = item.getContent() == null ? "" : item.getContent();
+      rpcItem.end = item.getEnd() == null ? null : item.getEnd().getTime();
+      rpcItem.group = item.getGroupId();
+      rpcItem.id = keyMapper.getKey(item.getId());
+      rpcItem.start = item.getStart().getTime();
+      rpcItem.style = item.getStyle();
+      rpcItem.subgroup = item.getSubgroupId();
+      rpcItem.title = item.getTitle();
+      rpcItem.type = item.getType() == null ? null : item.getType().name().
+          toLowerCase();
+      rpcItem.editable = item.getEditable();
+
+      rpcItems.put(rpcItem.id, rpcItem);
+    }
+
+    // Cleanup any id mappings that are no longer active or pinned.
+    keyMapper.setActiveRows(itemIds);
+
+    // Any chunks still waiting to be sent are for old items.
+    cancelItemChunks();
+
+    if (progressiveChunkSize > 0 && rpcItems.size() > progressiveChunkSize) {
+      sendItemChunksToClient(rpcItems);
+    }
+    else {
+      // Send the differences from the items last sent to the client if we
+      // can.
+      if (clientItems == null || !sendItemChangesToClient(rpcItems)) {
+        setClientItems(rpcItems.values());
+      }
+      clientItems = rpcItems;
+    }
+
+    // Clear the dirty flags now that we sent the items.
+    itemsDirty = false;
+    itemsModified = false;
+
+    // Let listeners know if the items were truncated or if they no longer
+    // are.
+    boolean truncated = displayItems.size() < availableCount;
+    if (truncated || itemsTruncated) {
+      itemsTruncated = truncated;
+      fireEvent(new ItemTruncationListener.ItemTruncationEvent(this, window.
+          getStart(), window.getEnd(), availableCount, displayItems.size()));
+    }
+  }
+
+  /**
+   * Reduces the items to the item budget using the reduction strategy. The
+   * selected (or pinned) items are always kept, even if they exceed the
+   * budget, and the strategy reduces the other items to the remaining budget.
+   * The kept items are returned in their original order.
+   *
+   * @param displayItems the items to reduce
+   *
+   * @return the reduced items
+   */
+  private List<TimelineItem> reduceItems(List<TimelineItem> displayItems) {
+    List<TimelineItem> others = new ArrayList<>(displayItems.size());
+    int keptCount = 0;
+    for (TimelineItem item : displayItems) {
+      if (selection.contains(item.getId()) || keyMapper.isPinned(item.
+          getId())) {
+        keptCount++;
+      }
+      else {
+        others.add(item);
+      }
+    }
+
+    Set<TimelineItem> reduced = Collections.newSetFromMap(
+        new IdentityHashMap<TimelineItem, Boolean>());
+    if (keptCount < itemBudget) {
+      reduced.addAll(reductionStrategy.reduce(others, itemBudget - keptCount));
+    }
+
+    List<TimelineItem> result = new ArrayList<>(Math.max(itemBudget,
+        keptCount));
+    for (TimelineItem item : displayItems) {
+      if (reduced.contains(item) || selection.contains(item.getId())
+          || keyMapper.isPinned(item.getId())) {
+        result.add(item);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Replaces all the items on the client with the given items using either
+   * the object or the columnar encoding. The selected items are then selected on the
+   * client.
+   *
+   * @param rpcItems the items to send
+   */
+  private void setClientItems(Collection<TimelineClientRpc.Item> rpcItems) {
+    if (columnarItemsEnabled) {
+      clientRpc.setItemsColumnar(getColumnEncoder().encode(rpcItems));
+    }
+    else {
+      clientRpc.setItems(rpcItems.toArray(
+          new TimelineClientRpc.Item[rpcItems.size()]));
+    }
 
-    setSelection(newSelection, options);
+    sendSelectionToClient(rpcItems);
   }
 
   /**
-   * Returns true if the given item ID is selected.
-   *
-   * @param itemId the ID of the item to check
+   * Adds the given items to the items on the client using either the object
+   * or the columnar encoding. The selected items are then selected on the
+   * client.
    *
-   * @return true if selected, false if not selected or not found
+   * @param rpcItems the items to send
    */
-  public boolean isSelected(Object itemId) {
-    return getSelection().contains(itemId);
+  private void addClientItems(Collection<TimelineClientRpc.Item> rpcItems) {
+    if (columnarItemsEnabled) {
+      clientRpc.addItemsColumnar(getColumnEncoder().encode(rpcItems));
+    }
+    else {
+      clientRpc.addItems(rpcItems.toArray(
+          new TimelineClientRpc.Item[rpcItems.size()]));
+    }
+
+    sendSelectionToClient(rpcItems);
   }
 
   /**
-   * Returns an unmodifiable collection of item IDs that are selected or an
-   * empty collection if nothing is selected.
+   * Updates the given items on the client using either the object or the
+   * columnar encoding. The selected items are then selected on the
+   * client.
    *
-   * @return the collection of selected item IDs
+   * @param rpcItems the items to send
    */
-  public Collection<Object> getSelection() {
-    return Collections.unmodifiableCollection(selection);
+  private void updateClientItems(Collection<TimelineClientRpc.Item> rpcItems) {
+    if (columnarItemsEnabled) {
+      clientRpc.updateItemsColumnar(getColumnEncoder().encode(rpcItems));
+    }
+    else {
+      clientRpc.updateItems(rpcItems.toArray(
+          new TimelineClientRpc.Item[rpcItems.size()]));
+    }
+
+    sendSelectionToClient(rpcItems);
   }
 
   /**
-   * Returns the current configuration options for the timeline. The options
-   * returned can be modified and are effective immediately.
+   * Returns the encoder for columnar items, creating it if needed. The
+   * encoder holds the string dictionary mirrored by the current client
+   * connector.
    *
-   * @return the configuration options for the timeline
+   * @return the column encoder
    */
-  public TimelineOptions getOptions() {
-    return options;
-  }
-
-  @Override
-  protected TimelineState getState() {
-    return (TimelineState) super.getState();
+  private ItemColumnEncoder getColumnEncoder() {
+    if (columnEncoder == null) {
+      columnEncoder = new ItemColumnEncoder();
+    }
+    return columnEncoder;
   }
 
-  @Override
-  protected TimelineState getState(boolean markAsDirty) {
-    return (TimelineState) super.getState(markAsDirty);
-  }
+  /**
+   * Sends the items added, updated, and removed since the last items sent to
+   * the client. If the number of changes is as large as the number of items,
+   * nothing is sent and the caller should send the full set of items.
+   *
+   * @param rpcItems the new items to display on the client mapped by key
+   *
+   * @return true if the changes were sent, false if the full set of items
+   * should be sent
+   */
+  private boolean sendItemChangesToClient(
+      Map<String, TimelineClientRpc.Item> rpcItems) {
+    List<TimelineClientRpc.Item> added = new ArrayList<>();
+    List<TimelineClientRpc.Item> updated = new ArrayList<>();
+    List<String> removed = new ArrayList<>();
+
+    for (TimelineClientRpc.Item rpcItem : rpcItems.values()) {
+      TimelineClientRpc.Item clientItem = clientItems.get(rpcItem.id);
+      if (clientItem == null) {
+        added.add(rpcItem);
+      }
+      else if (!clientItem.equals(rpcItem)) {
+        updated.add(rpcItem);
+      }
+    }
+    for (String key : clientItems.keySet()) {
+      if (!rpcItems.containsKey(key)) {
+        removed.add(key);
+      }
+    }
 
-  @Override
-  public void beforeClientResponse(boolean initial) {
-    super.beforeClientResponse(initial);
+    if (!rpcItems.isEmpty() && added.size() + updated.size() + removed.size()
+        >= rpcItems.size()) {
+      return false;
+    }
 
-    boolean windowValid = !window.getStart().equals(window.getEnd()) || window.
-        getStart().after(window.getEnd());
-    boolean restoring = false;
+    if (!removed.isEmpty()) {
+      clientRpc.removeItems(removed.toArray(new String[removed.size()]));
+    }
+    if (!updated.isEmpty()) {
+      updateClientItems(updated);
+    }
+    if (!added.isEmpty()) {
+      addClientItems(added);
+    }
+    return true;
+  }
 
-    if (initial && windowValid) {
-      // Normally this happens when the timeline was previously displayed 
-      // and hidden. We basically want to restore the state on this initial
-      // display.
-      restoring = true;
+  /**
+   * Sends the items to the client progressively. Items no longer displayed
+   * are removed immediately and the added or changed items are ordered from
+   * the center of the window outward and sent in chunks. The first chunk is
+   * sent now and each following chunk is sent when the client acknowledges
+   * the previous one.
+   *
+   * @param rpcItems the new items to display on the client mapped by key
+   */
+  private void sendItemChunksToClient(
+      Map<String, TimelineClientRpc.Item> rpcItems) {
 
-      if (!windowDirty) {
-        // Reapply the existing window so it can be pushed back to the client.
-        setWindow(window.getStart(), window.getEnd(), null);
+    List<TimelineClientRpc.Item> changed = new ArrayList<>();
+    for (TimelineClientRpc.Item rpcItem : rpcItems.values()) {
+      if (clientItems == null || !rpcItem.equals(clientItems.get(rpcItem.id))) {
+        changed.add(rpcItem);
       }
     }
-    else if (initial && !windowDirty) {
-      // The window is not dirty and the current window is not valid.
-      // This means we have to initialize the window for the first time
-      // to some intelligent default.
-      Date start = currentCalendar.getTime();
-      currentCalendar.add(java.util.Calendar.HOUR, 8);
-      Date end = currentCalendar.getTime();
-      setWindow(start, end, null);
+
+    final long center = window.getStart().getTime() / 2 + window.getEnd().
+        getTime() / 2;
+    changed.sort((i1, i2) -> Long.compare(distance(i1, center), distance(i2,
+        center)));
+
+    List<List<TimelineClientRpc.Item>> chunks = new ArrayList<>();
+    for (int i = 0; i < changed.size(); i += progressiveChunkSize) {
+      chunks.add(changed.subList(i, Math.min(i + progressiveChunkSize,
+          changed.size())));
     }
 
-    if (restoring) {
-      // Send everything to the client. We know we have a valid window so
-      // we can send items and if the window hasn't changed we won't get a
-      // range change event so it is now or never. If the window did change,
-      // we will get a range change but that will be handled properly
-      // and we will resend the items in the next request. So there is a chance
-      // of sending the items twice but we have to assume the window
-      // didn't change.
-      sendGroupsToClient();
-      sendItemsToClient();
-      sendWindowToClient();
+    if (clientItems == null) {
+      // The client state is unknown so the first chunk replaces everything.
+      List<TimelineClientRpc.Item> chunk = chunks.isEmpty()
+          ? Collections.<TimelineClientRpc.Item>emptyList() : chunks.remove(0);
+      setClientItems(chunk);
+
+      clientItems = new HashMap<>();
+      for (TimelineClientRpc.Item rpcItem : chunk) {
+        clientItems.put(rpcItem.id, rpcItem);
+      }
     }
     else {
-      if (groupsDirty) {
-        sendGroupsToClient();
+      List<String> removed = new ArrayList<>();
+      for (String key : clientItems.keySet()) {
+        if (!rpcItems.containsKey(key)) {
+          removed.add(key);
+        }
       }
-
-      if (windowDirty) {
-        // Send the dirty window which will trigger a range change event
-        // for the items later.
-        sendWindowToClient();
+      if (!removed.isEmpty()) {
+        clientRpc.removeItems(removed.toArray(new String[removed.size()]));
+        clientItems.keySet().removeAll(removed);
       }
-      else if (itemsDirty && windowValid) {
-        // The window isn't dirty so we're not expecting a range change
-        // event. If we have a valid window, go ahead and send the items.
-        // Because of the delay from sending the window to the client and
-        // getting the range change event, we can get into the state of the
-        // window not being dirty (because we sent it) but the window not
-        // being valid yet (because we didn't get the range change event).
-        // We don't want to send the items yet in this state because we'd
-        // query the item provider with an invalid range.
-        sendItemsToClient();
+
+      if (!chunks.isEmpty()) {
+        sendItemChunkToClient(chunks.remove(0));
       }
     }
-  }
 
-  @Override
-  public void itemSetChange(
-      TimelineItemProvider.ItemSetChangeEvent changeEvent) {
-    // sanity check
-    if (provider == changeEvent.getSource()) {
-      markItemsAsDirty();
+    if (!chunks.isEmpty()) {
+      pendingChunks = new ArrayDeque<>(chunks);
+      clientRpc.requestItemChunkAck(++chunkSequence);
     }
   }
 
   /**
-   * Sets up the groups to be sent to the client and makes the RPC call to send
-   * them.
+   * Sends a single chunk of items to the client, adding the new items and
+   * updating the existing ones.
+   *
+   * @param chunk the items to send
    */
-  private void sendGroupsToClient() {
-    TimelineClientRpc.Group[] rpcGroups = new TimelineClientRpc.Group[groups
-        .size()];
-    int i = 0;
-    for (TimelineGroup g : groups) {
-      TimelineClientRpc.Group group = new TimelineClientRpc.Group();
-      group.className = g.getStyleName() == null ? "" : g.getStyleName();
-      group.content = g.getContent();
-      group.id = g.getId();
-      group.order = g.getOrder();
-      group.style = g.getStyle();
-      group.subgroupOrder = g.getSubgroupOrder();
-      group.title = g.getTitle();
-      rpcGroups[i++] = group;
+  private void sendItemChunkToClient(List<TimelineClientRpc.Item> chunk) {
+    List<TimelineClientRpc.Item> added = new ArrayList<>();
+    List<TimelineClientRpc.Item> updated = new ArrayList<>();
+    for (TimelineClientRpc.Item rpcItem : chunk) {
+      if (clientItems.put(rpcItem.id, rpcItem) == null) {
+        added.add(rpcItem);
+      }
+      else {
+        updated.add(rpcItem);
+      }
     }
-    clientRpc.setGroups(rpcGroups);
 
-    groupsDirty = false;
+    if (!updated.isEmpty()) {
+      updateClientItems(updated);
+    }
+    if (!added.isEmpty()) {
+      addClientItems(added);
+    }
   }
 
   /**
-   * Sets up the items to be sent to the client and makes the RPC call to send
-   * them.
+   * Cancels any chunks of items waiting to be sent to the client. An
+   * acknowledgement for a cancelled chunk will be ignored.
    */
-  private void sendItemsToClient() {
-    items = getItemProvider().getItems(window.getStart(), window.getEnd());
-    items = items == null ? new ArrayList<TimelineItem>() : items;
-
-    List<Object> itemIds = new ArrayList<>(items.size());
-    TimelineClientRpc.Item[] rpcItems = new TimelineClientRpc.Item[items.size()];
-    int j = 0;
-    for (TimelineItem item : items) {
-
-      itemIds.add(item.getId());
-
-      TimelineClientRpc.Item rpcItem = new TimelineClientRpc.Item();
-      rpcItem.className = item.getStyleName();
-      rpcItem.content = item.getContent() == null ? "" : item.getContent();
-      rpcItem.end = item.getEnd().getTime();
-      rpcItem.group = item.getGroupId();
-      rpcItem.id = keyMapper.getKey(item.getId());
-      rpcItem.start = item.getStart().getTime();
-      rpcItem.style = item.getStyle();
-      rpcItem.subgroup = item.getSubgroupId();
-      rpcItem.title = item.getTitle();
-      rpcItem.type = item.getType() == null ? null : item.getType().name().
-          toLowerCase();
-      rpcItem.editable = item.getEditable();
-
-      rpcItems[j++] = rpcItem;
+  private void cancelItemChunks() {
+    if (pendingChunks != null) {
+      pendingChunks = null;
+      chunkSequence++;
     }
+  }
 
-    // Cleanup any id mappings that are no longer active or pinned.
-    keyMapper.setActiveRows(itemIds);
-
-    // Set the items.
-    clientRpc.setItems(rpcItems);
-
-    // Clear the dirty flag now that we sent the items.
-    itemsDirty = false;
+  /**
+   * Returns the distance in millis of the item from the given time or 0 if
+   * the item spans the time.
+   *
+   * @param rpcItem the item
+   * @param time the time
+   *
+   * @return the distance from the time
+   */
+  private static long distance(TimelineClientRpc.Item rpcItem, long time) {
+    long end = rpcItem.end == null ? rpcItem.start : rpcItem.end;
 
-    // Reapply the selection in the event that a selected item move out of
-    // the window and back in again.
-    setSelection(selection, new TimelineMethodOptions.SetSelection(false,
-        null));
+    if (rpcItem.start > time) {
+      return rpcItem.start - time;
+    }
+    else if (end < time) {
+      return time - end;
+    }
+    else {
+      return 0;
+    }
   }
 
   /**
@@ -494,6 +2146,11 @@ public class Timeline extends AbstractJavaScriptComponent implements
    * change event. This is required because the client may modify the window
    * based on zoom, min/max, scaling, etc.
    * </p>
+   * <p>
+   * A request for the window the client is already showing or has already
+   * been asked to show is suppressed. Multiple requests before the next
+   * response are coalesced so only the last one is sent to the client.
+   * </p>
    *
    * @param start the start date
    * @param end the end date
@@ -508,13 +2165,72 @@ public class Timeline extends AbstractJavaScriptComponent implements
       throw new IllegalArgumentException("start date must be before end date.");
     }
 
-    pendingWindow = new DateRange(start, end);
-    pendingSetWindowOptions = options;
+    windowRequestCount++;
 
-    //if (windowDirty || !Objects.equals(window, pendingWindow)) {
+    // The window the client will show once the requests already sent are
+    // applied.
+    DateRange newWindow = new DateRange(start, end);
+    DateRange clientWindow = requestedWindow != null ? requestedWindow
+        : window;
+
+    if (windowDirty && newWindow.equals(pendingWindow)) {
+      suppressedWindowRequestCount++;
+    }
+    else if (windowDirty) {
+      // The pending request hasn't been sent yet so it is replaced (or
+      // dropped if the client window is requested again).
+      coalescedWindowRequestCount++;
+
+      if (newWindow.equals(clientWindow)) {
+        windowDirty = false;
+        pendingWindow = null;
+        pendingSetWindowOptions = null;
+      }
+      else {
+        pendingWindow = newWindow;
+        pendingSetWindowOptions = options;
+      }
+    }
+    else if (newWindow.equals(clientWindow)) {
+      suppressedWindowRequestCount++;
+    }
+    else {
+      pendingWindow = newWindow;
+      pendingSetWindowOptions = options;
       windowDirty = true;
       markAsDirty();
-    //}
+    }
+  }
+
+  /**
+   * Returns the number of calls to
+   * {@link #setWindow(java.util.Date, java.util.Date, org.mpilone.vaadin.timeline.TimelineMethodOptions.SetWindow) }.
+   *
+   * @return the window request count
+   */
+  public long getWindowRequestCount() {
+    return windowRequestCount;
+  }
+
+  /**
+   * Returns the number of window requests that were dropped because the
+   * client was already showing, had already been asked to show, or was about
+   * to be asked to show the requested window.
+   *
+   * @return the suppressed window request count
+   */
+  public long getSuppressedWindowRequestCount() {
+    return suppressedWindowRequestCount;
+  }
+
+  /**
+   * Returns the number of window requests that replaced or cancelled an
+   * earlier request that had not been sent to the client yet.
+   *
+   * @return the coalesced window request count
+   */
+  public long getCoalescedWindowRequestCount() {
+    return coalescedWindowRequestCount;
   }
 
   /**
@@ -536,6 +2252,7 @@ public class Timeline extends AbstractJavaScriptComponent implements
     clientRpc.setWindow(pendingWindow.getStart().getTime(), pendingWindow.
         getEnd().getTime(), rpcOptions);
 
+    requestedWindow = pendingWindow;
     windowDirty = false;
     pendingSetWindowOptions = null;
     pendingWindow = null;
@@ -730,6 +2447,28 @@ public class Timeline extends AbstractJavaScriptComponent implements
         listener, RangeChangedListener.METHOD);
   }
 
+  /**
+   * Adds the given listener for
+   * {@link ItemTruncationListener.ItemTruncationEvent}s.
+   *
+   * @param listener the listener to add
+   */
+  public void addItemTruncationListener(ItemTruncationListener listener) {
+    addListener(ItemTruncationListener.ItemTruncationEvent.class, listener,
+        ItemTruncationListener.METHOD);
+  }
+
+  /**
+   * Removes the given listener for
+   * {@link ItemTruncationListener.ItemTruncationEvent}s.
+   *
+   * @param listener the listener to remove
+   */
+  public void removeItemTruncationListener(ItemTruncationListener listener) {
+    removeListener(ItemTruncationListener.ItemTruncationEvent.class, listener,
+        ItemTruncationListener.METHOD);
+  }
+
   /**
    * Implementation of the server RPC for the timeline component.
    */
@@ -740,15 +2479,60 @@ public class Timeline extends AbstractJavaScriptComponent implements
       // TODO: Implement lag calculation and adjustment
     }
 
+    @Override
+    public void retryFetch() {
+      fetchRetryPending = false;
+
+      // The items are still dirty so the next response will try again.
+      if (itemsDirty) {
+        markAsDirty();
+      }
+    }
+
+    @Override
+    public void ackItemChunk(int sequence) {
+      // Ignore acknowledgements for cancelled chunks.
+      if (sequence != chunkSequence || pendingChunks == null) {
+        return;
+      }
+
+      sendItemChunkToClient(pendingChunks.removeFirst());
+
+      if (pendingChunks.isEmpty()) {
+        pendingChunks = null;
+      }
+      else {
+        clientRpc.requestItemChunkAck(sequence);
+      }
+    }
+
     @Override
     public void rangeChanged(long start, long end, boolean byUser) {
       DateRange newWindow = new DateRange(new Date(start), new Date(end));
 
+      // The client applied the last request (or the user moved on from it).
+      requestedWindow = null;
+
       // Only mark the items dirty and fire the event if the range
       // actually changed.
       if (!Objects.equals(newWindow, window)) {
+        if (fetchRetryPending) {
+          // The fetch for the previous window was delayed so this window
+          // replaces it.
+          coalescedRangeChangeCount++;
+        }
+
         Timeline.this.window = newWindow;
 
+        // The chunks still to be sent are for the old window.
+        cancelItemChunks();
+
+        // Track the motion of the window. Any prefetch is started after the
+        // items for the window are fetched.
+        if (prefetcher != null) {
+          prefetcher.rangeChanged(newWindow);
+        }
+
         // Mark the timeline as dirty so we fetch new items from the provider
         // and send them back to the client.
         Timeline.this.markItemsAsDirty();
@@ -761,56 +2545,157 @@ public class Timeline extends AbstractJavaScriptComponent implements
     }
 
     @Override
-    public void select(List<String> clientKeys) {
-
-      // Convert the keys back into item IDs.
-      Set<Object> newSelection = new HashSet<>(keyMapper.getItemIds(
-          clientKeys));
+    public void visibleGroupsChanged(String firstGroupId, String lastGroupId) {
+      if (!isGroupVirtualizationEnabled() || firstGroupId == null
+          || lastGroupId == null) {
+        return;
+      }
 
-      // Unpin items no longer selected and pin items newly selected.
-      for (Object itemId : newSelection) {
-        if (keyMapper.isPinned(itemId) && !selection.contains(itemId)) {
-          keyMapper.unpin(itemId);
+      int first = -1;
+      int last = -1;
+      for (int i = 0; i < groups.size(); ++i) {
+        String groupId = groups.get(i).getId();
+        if (groupId.equals(firstGroupId)) {
+          first = i;
         }
-        else if (!keyMapper.isPinned(itemId)) {
-          keyMapper.pin(itemId);
+        if (groupId.equals(lastGroupId)) {
+          last = i;
         }
       }
+      if (first < 0 || last < 0) {
+        return;
+      }
 
-      // Apply the new selection internally.
-      Set<Object> oldSelection = selection;
-      selection = newSelection;
+      // Only shift the groups if the visible groups are getting close to the
+      // edge of the groups already sent to avoid resending on every scroll.
+      int threshold = groupMargin / 2;
+      boolean nearStart = groupRangeStart > 0 && first - groupRangeStart
+          < threshold;
+      boolean nearEnd = groupRangeEnd < groups.size() - 1 && groupRangeEnd
+          - last < threshold;
 
-      // Only fire the event if the selection actually changed. This is more
-      // consistent with Vaadin components.
-      if (!selection.equals(oldSelection)) {
-        SelectListener.SelectEvent evt = new SelectListener.SelectEvent(
-            Timeline.this, selection);
+      if (nearStart || nearEnd) {
+        groupRangeStart = Math.max(first - groupMargin, 0);
+        groupRangeEnd = Math.min(last + groupMargin, groups.size() - 1);
 
-        fireEvent(evt);
+        groupsDirty = true;
+        markItemsAsDirty();
+      }
+    }
+
+    @Override
+    public void select(List<String> clientKeys) {
+
+      // Convert the keys back into item IDs.
+      updateSelection(getItemIds(clientKeys, true));
+    }
+
+    @Override
+    public void selectionChanged(List<String> addedKeys,
+        List<String> removedKeys) {
+
+      // Convert the keys back into item IDs and apply them to the current
+      // selection.
+      Set<Object> newSelection = new HashSet<>(selection);
+      newSelection.removeAll(getItemIds(removedKeys, true));
+      newSelection.addAll(getItemIds(addedKeys, false));
+
+      updateSelection(newSelection);
+    }
+
+    /**
+     * Returns the ID of the item with the given key if the item is displayed
+     * on the client. Keys decoded by a codec can be forged by the client so a
+     * key that was never sent to the client is ignored.
+     *
+     * @param key the key from the client
+     *
+     * @return the item ID or null if the key is null or not displayed
+     */
+    private Object getItemId(String key) {
+      if (key == null || clientItems == null || !clientItems.containsKey(
+          key)) {
+        return null;
+      }
+      return keyMapper.getItemId(key);
+    }
+
+    /**
+     * Returns the IDs of the items with the given keys that are displayed on
+     * the client and optionally the items that are currently selected.
+     *
+     * @param keys the keys from the client
+     * @param selected true to also accept the keys of selected items
+     *
+     * @return the accepted item IDs
+     */
+    private Set<Object> getItemIds(List<String> keys, boolean selected) {
+      Set<Object> itemIds = new HashSet<>();
+      for (String key : keys) {
+        Object itemId = getItemId(key);
+        if (itemId == null && selected && key != null) {
+          try {
+            itemId = keyMapper.getItemId(key);
+          }
+          catch (IllegalStateException ex) {
+            // Not a key the timeline knows about.
+          }
+          if (!selection.contains(itemId)) {
+            itemId = null;
+          }
+        }
+        if (itemId != null) {
+          itemIds.add(itemId);
+        }
       }
+      return itemIds;
     }
 
     @Override
     public void click(EventProperties eventProps) {
-      Object itemId = eventProps.item == null ? null : keyMapper.getItemId(
-          eventProps.item);
+      Object itemId = getItemId(eventProps.item);
+
+      ClusterItem cluster = itemId == null ? null : clusters.get(itemId);
+      if (cluster != null) {
+        zoomToCluster(cluster);
+      }
+      else if ("group-label".equals(eventProps.what) && eventProps.group
+          != null && expandableGroupIds.contains(eventProps.group)) {
+        if (isGroupExpanded(eventProps.group)) {
+          collapseGroup(eventProps.group);
+        }
+        else {
+          expandGroup(eventProps.group);
+        }
+      }
+
+      fireEvent(new ClickEvent(Timeline.this, itemId, cluster, eventProps));
+    }
 
-      fireEvent(new ClickEvent(Timeline.this, itemId, eventProps));
+    /**
+     * Zooms the window to show the items in the cluster with a small margin.
+     *
+     * @param cluster the cluster to zoom into
+     */
+    private void zoomToCluster(ClusterItem cluster) {
+      long start = cluster.getStart().getTime();
+      long end = cluster.getEnd() == null ? start : cluster.getEnd().getTime();
+
+      // Items at the same time need some span to zoom to.
+      long margin = Math.max((end - start) / 10, 1000);
+      setWindow(new Date(start - margin), new Date(end + margin), null);
     }
 
     @Override
     public void doubleClick(EventProperties eventProps) {
-      Object itemId = eventProps.item == null ? null : keyMapper.getItemId(
-          eventProps.item);
+      Object itemId = getItemId(eventProps.item);
 
       fireEvent(new DoubleClickEvent(Timeline.this, itemId, eventProps));
     }
 
     @Override
     public void contextmenu(EventProperties eventProps) {
-      Object itemId = eventProps.item == null ? null : keyMapper.getItemId(
-          eventProps.item);
+      Object itemId = getItemId(eventProps.item);
 
       fireEvent(new ContextMenuEvent(Timeline.this, itemId, eventProps));
     }
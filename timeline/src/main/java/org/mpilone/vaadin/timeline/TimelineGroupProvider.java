@@ -0,0 +1,118 @@
+package org.mpilone.vaadin.timeline;
+
+import java.lang.reflect.Method;
+import java.util.*;
+
+import com.vaadin.util.ReflectTools;
+
+/**
+ * A provider of {@link TimelineGroup} instances. A provider is normally set on
+ * a {@link Timeline} to supply the groups used to arrange items into rows. A
+ * provider that is a {@link GroupSetChangeNotifier} allows the timeline to
+ * send only the groups that changed to the client.
+ *
+ * @author mpilone
+ */
+public interface TimelineGroupProvider {
+
+  /**
+   * Retrieves all the groups in display order.
+   *
+   * @return the list of groups
+   */
+  public List<TimelineGroup> getGroups();
+
+  /**
+   * A provider of nested groups. The groups returned by
+   * {@link #getGroups() } are the top level groups and the children of a group
+   * are only requested when the group is expanded in the timeline. This allows
+   * large hierarchies (e.g. site, rack, host) to be loaded lazily.
+   */
+  public interface Hierarchical extends TimelineGroupProvider {
+
+    /**
+     * Returns true if the group has children and can be expanded. This is
+     * called for every group displayed so it should be inexpensive.
+     *
+     * @param groupId the ID of the group
+     *
+     * @return true if the group has children
+     */
+    public boolean hasChildren(String groupId);
+
+    /**
+     * Retrieves the children of the group in display order.
+     *
+     * @param parentId the ID of the parent group
+     *
+     * @return the list of child groups or an empty list if there are none
+     */
+    public List<TimelineGroup> getChildren(String parentId);
+  }
+
+  /**
+   * The group set change event which indicates that groups in the provider
+   * have been added, removed, or modified.
+   */
+  public static class GroupSetChangeEvent extends EventObject {
+
+    /**
+     * Constructs the event.
+     *
+     * @param provider the provider that fired the event
+     */
+    public GroupSetChangeEvent(TimelineGroupProvider provider) {
+      super(provider);
+    }
+
+    /**
+     * Returns the provider that fired the event.
+     *
+     * @return the group provider
+     */
+    public TimelineGroupProvider getProvider() {
+      return (TimelineGroupProvider) getSource();
+    }
+  }
+
+  /**
+   * The listener to be notified when groups are added, removed, or modified
+   * in a timeline group provider.
+   */
+  public interface GroupSetChangeListener {
+
+    /**
+     * The event handling method on the {@link GroupSetChangeListener}.
+     */
+    public static final Method GROUP_SET_CHANGE_METHOD = ReflectTools.
+        findMethod(GroupSetChangeListener.class, "groupSetChange",
+            GroupSetChangeEvent.class);
+
+    /**
+     * The method called when the group set in a provider changes.
+     *
+     * @param evt the details of the change
+     */
+    public void groupSetChange(GroupSetChangeEvent evt);
+  }
+
+  /**
+   * A notifier that can fire group set change events.
+   */
+  public interface GroupSetChangeNotifier {
+
+    /**
+     * Adds a listener to be notified of group set changes.
+     *
+     * @param listener the listener to add
+     */
+    public void addGroupSetChangeListener(GroupSetChangeListener listener);
+
+    /**
+     * Removes a listener that was being notified of group set changes.
+     *
+     * @param listener the listener to remove
+     */
+    public void removeGroupSetChangeListener(GroupSetChangeListener listener);
+  }
+}
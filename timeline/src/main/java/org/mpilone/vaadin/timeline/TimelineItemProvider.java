@@ -1,9 +1,7 @@
 package org.mpilone.vaadin.timeline;
 
 import java.lang.reflect.Method;
-import java.util.Date;
-import java.util.EventObject;
-import java.util.List;
+import java.util.*;
 
 import com.vaadin.util.ReflectTools;
 
@@ -28,24 +26,171 @@ public interface TimelineItemProvider {
   public List<TimelineItem> getItems(Date startDate, Date endDate);
 
   /**
+   * <p>
    * The item set change event which indicates that items in the provider have
    * been added or removed.
+   * </p>
+   * <p>
+   * The event may optionally describe the change in detail by providing the
+   * items added, removed, and updated as well as the time range affected by
+   * the change. A detailed event allows the timeline to skip the refresh if the
+   * change is outside of the visible window and to apply small changes without
+   * querying the provider again. An event that is not detailed (see
+   * {@link #isDetailed() }) means that any of the items may have changed.
+   * </p>
    */
   public static class ItemSetChangeEvent extends EventObject {
 
+    private final boolean detailed;
+    private final Collection<TimelineItem> addedItems;
+    private final Collection<TimelineItem> removedItems;
+    private final Collection<TimelineItem> updatedItems;
+    private final DateRange affectedRange;
+
     /**
-     * Constructs the event.
+     * Constructs the event indicating that any of the items may have changed.
      *
      * @param provider the provider that fired the event
      */
     public ItemSetChangeEvent(TimelineItemProvider provider) {
       super(provider);
+
+      this.detailed = false;
+      this.addedItems = Collections.emptyList();
+      this.removedItems = Collections.emptyList();
+      this.updatedItems = Collections.emptyList();
+      this.affectedRange = null;
+    }
+
+    /**
+     * Constructs the detailed event. The affected range is calculated from the
+     * start and end dates of the items.
+     *
+     * @param provider the provider that fired the event
+     * @param addedItems the items added or null
+     * @param removedItems the items removed or null
+     * @param updatedItems the items updated or null
+     */
+    public ItemSetChangeEvent(TimelineItemProvider provider,
+        Collection<? extends TimelineItem> addedItems,
+        Collection<? extends TimelineItem> removedItems,
+        Collection<? extends TimelineItem> updatedItems) {
+      this(provider, addedItems, removedItems, updatedItems, null);
+    }
+
+    /**
+     * Constructs the detailed event. If an updated item was moved in time, the
+     * affected range should include both the old and the new dates of the
+     * item.
+     *
+     * @param provider the provider that fired the event
+     * @param addedItems the items added or null
+     * @param removedItems the items removed or null
+     * @param updatedItems the items updated or null
+     * @param affectedRange the time range affected by the change or null to
+     * calculate the range from the items
+     */
+    public ItemSetChangeEvent(TimelineItemProvider provider,
+        Collection<? extends TimelineItem> addedItems,
+        Collection<? extends TimelineItem> removedItems,
+        Collection<? extends TimelineItem> updatedItems,
+        DateRange affectedRange) {
+      super(provider);
+
+      this.detailed = true;
+      this.addedItems = copy(addedItems);
+      this.removedItems = copy(removedItems);
+      this.updatedItems = copy(updatedItems);
+      this.affectedRange = affectedRange != null ? affectedRange : span(
+          this.addedItems, this.removedItems, this.updatedItems);
+    }
+
+    private static Collection<TimelineItem> copy(
+        Collection<? extends TimelineItem> items) {
+      return items == null || items.isEmpty()
+          ? Collections.<TimelineItem>emptyList() : Collections.
+          unmodifiableList(new ArrayList<>(items));
+    }
+
+    /**
+     * Returns the range spanning all the given items or null if there are no
+     * items.
+     *
+     * @param itemSets the sets of items
+     *
+     * @return the range spanning the items
+     */
+    @SafeVarargs
+    private static DateRange span(Collection<TimelineItem>... itemSets) {
+      long start = Long.MAX_VALUE;
+      long end = Long.MIN_VALUE;
+
+      for (Collection<TimelineItem> itemSet : itemSets) {
+        for (TimelineItem item : itemSet) {
+          long itemStart = item.getStart().getTime();
+          long itemEnd = item.getEnd() == null ? itemStart : item.getEnd().
+              getTime();
+
+          start = Math.min(start, itemStart);
+          end = Math.max(end, itemEnd);
+        }
+      }
+
+      return start > end ? null : new DateRange(new Date(start), new Date(end));
     }
 
     @Override
     public TimelineItemProvider getSource() {
       return (TimelineItemProvider) super.getSource();
     }
+
+    /**
+     * Returns true if the event describes the added, removed, and updated
+     * items. If false, any of the items may have changed and the item
+     * collections will be empty.
+     *
+     * @return true if the event is detailed
+     */
+    public boolean isDetailed() {
+      return detailed;
+    }
+
+    /**
+     * Returns the items added to the provider.
+     *
+     * @return the added items or an empty collection
+     */
+    public Collection<TimelineItem> getAddedItems() {
+      return addedItems;
+    }
+
+    /**
+     * Returns the items removed from the provider.
+     *
+     * @return the removed items or an empty collection
+     */
+    public Collection<TimelineItem> getRemovedItems() {
+      return removedItems;
+    }
+
+    /**
+     * Returns the items updated in the provider.
+     *
+     * @return the updated items or an empty collection
+     */
+    public Collection<TimelineItem> getUpdatedItems() {
+      return updatedItems;
+    }
+
+    /**
+     * Returns the time range affected by the change.
+     *
+     * @return the affected range or null if the event is not detailed or no
+     * items were changed
+     */
+    public DateRange getAffectedRange() {
+      return affectedRange;
+    }
   }
 
   /**
@@ -110,5 +255,27 @@ public interface TimelineItemProvider {
     public void removeItem(TimelineItem item);
   }
 
+  /**
+   * An item provider that can limit the items returned to a set of groups.
+   * This allows the timeline to only fetch the items of the groups being
+   * displayed when group virtualization is enabled or when nested groups are
+   * used.
+   */
+  public interface GroupFilterable {
+
+    /**
+     * Returns all the items that intersect the given window and belong to one
+     * of the given groups. Items with no group are not returned.
+     *
+     * @param startDate the start date of the window
+     * @param endDate the end date of the window
+     * @param groupIds the IDs of the groups to return items for
+     *
+     * @return the list of items
+     */
+    public List<TimelineItem> getItems(Date startDate, Date endDate,
+        Set<String> groupIds);
+  }
+
  
 }
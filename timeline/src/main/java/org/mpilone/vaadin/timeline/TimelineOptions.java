@@ -163,6 +163,56 @@ public interface TimelineOptions {
 
   public boolean isMultiselect();
 
+  /**
+   * Sets the delay in milliseconds before a range change on the client is
+   * reported to the server. Range changes during the delay, such as the steps
+   * of a mouse wheel zoom, are coalesced into a single report which results
+   * in a single item fetch. Range changes are also held while an animated
+   * window change is in progress. The default is 250.
+   *
+   * @param delay the delay in milliseconds or 0 to report immediately
+   */
+  public void setRangeChangeDelay(int delay);
+
+  /**
+   * Returns the delay in milliseconds before a range change on the client is
+   * reported to the server.
+   *
+   * @return the delay in milliseconds
+   */
+  public int getRangeChangeDelay();
+
+  /**
+   * Sets the mode of the range change delay. The default is
+   * {@link RangeChangeDelayMode#FIXED}.
+   *
+   * @param mode the delay mode
+   */
+  public void setRangeChangeDelayMode(RangeChangeDelayMode mode);
+
+  /**
+   * Returns the mode of the range change delay.
+   *
+   * @return the delay mode
+   */
+  public RangeChangeDelayMode getRangeChangeDelayMode();
+
+  /**
+   * Sets the maximum delay in milliseconds an adaptive range change delay
+   * can grow to. The default is 1000.
+   *
+   * @param maxDelay the maximum delay in milliseconds
+   */
+  public void setRangeChangeMaxDelay(int maxDelay);
+
+  /**
+   * Returns the maximum delay in milliseconds an adaptive range change delay
+   * can grow to.
+   *
+   * @return the maximum delay in milliseconds
+   */
+  public int getRangeChangeMaxDelay();
+
   /**
    * The orientation (i.e. location) of the time axis on the timeline.
    */
@@ -206,6 +256,22 @@ public interface TimelineOptions {
     RIGHT
   }
 
+  /**
+   * The mode of the delay before a range change is reported to the server.
+   */
+  public enum RangeChangeDelayMode {
+
+    /**
+     * The delay is restarted by each range change.
+     */
+    FIXED,
+    /**
+     * The delay is doubled, up to the maximum delay, by each range change
+     * during the delay and is restarted while the user keeps dragging.
+     */
+    ADAPTIVE
+  }
+
   public enum TimeAxisScale {
 
     MILLISECOND, SECOND, MINUTE, HOUR, WEEKEND, DAY, MONTH, YEAR
@@ -0,0 +1,379 @@
+
+package org.mpilone.vaadin.timeline;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * <p>
+ * Writes a read only timeline snapshot file that can be served by a
+ * {@link MappedFileItemProvider}. Items must be appended in start date order.
+ * The snapshot file has the following layout (all values big-endian):
+ * </p>
+ * <ul>
+ * <li>Header (64 bytes): magic (long), version (int), index stride (int),
+ * record count (long), index offset (long), strings offset (long),
+ * reserved.</li>
+ * <li>Records (80 bytes each, sorted by start): start (long), end (long or
+ * {@link Long#MIN_VALUE} for no end), string references (long) for the ID,
+ * content, title, group ID, subgroup ID, style name, and style, the item type
+ * ordinal (byte), editable (byte), and six bytes of padding. A string
+ * reference or byte value of -1 indicates null.</li>
+ * <li>Sparse index (16 bytes per block of records): the start of the first
+ * record in the block (long) and the maximum end of the records in the block
+ * (long).</li>
+ * <li>Strings: each string is the length of the UTF-8 data (int) followed by
+ * the data. A string reference is the offset of the string relative to the
+ * start of the strings. Strings never cross a
+ * {@link #STRING_SEGMENT_SIZE} boundary so the strings can be mapped in
+ * segments.</li>
+ * </ul>
+ * <p>
+ * The strings are written to a temporary file next to the snapshot while the
+ * records are appended and are copied into the snapshot when the writer is
+ * closed. Only a bounded cache of recently written strings is kept on the heap
+ * so repeated values (e.g. group IDs) are usually stored once while the memory
+ * used by the writer doesn't grow with the number of items. Item IDs are
+ * stored as strings (using {@link Object#toString()}) so items read from the
+ * snapshot will have string IDs.
+ * </p>
+ *
+ * @author mpilone
+ */
+public class TimelineSnapshotWriter implements Closeable {
+
+  /**
+   * The magic number at the start of every snapshot file ("TLSNAP01").
+   */
+  static final long MAGIC = 0x544C534E41503031L;
+
+  /**
+   * The version of the file format.
+   */
+  static final int VERSION = 3;
+
+  /**
+   * The size of the file header in bytes.
+   */
+  static final int HEADER_SIZE = 64;
+
+  /**
+   * The size of a single record in bytes.
+   */
+  static final int RECORD_SIZE = 80;
+
+  /**
+   * The size of a single sparse index entry in bytes.
+   */
+  static final int INDEX_ENTRY_SIZE = 16;
+
+  /**
+   * The sentinel end value for items with no end date.
+   */
+  static final long NO_END = Long.MIN_VALUE;
+
+  /**
+   * The string reference used for null strings.
+   */
+  static final long NULL_REF = -1;
+
+  /**
+   * The size of the segments the strings are mapped in. A string never
+   * crosses a segment boundary.
+   */
+  static final int STRING_SEGMENT_SIZE = 1 << 30;
+
+  /**
+   * The number of recently written strings that are remembered so repeated
+   * values are only stored once.
+   */
+  private static final int STRING_CACHE_SIZE = 4096;
+
+  /**
+   * The default number of records per sparse index entry.
+   */
+  public static final int DEFAULT_INDEX_STRIDE = 256;
+
+  private final FileChannel channel;
+  private final DataOutputStream out;
+  private final Path stringsFile;
+  private final DataOutputStream stringsOut;
+  private final int indexStride;
+  private final Map<String, Long> stringRefs;
+  private long stringsSize;
+  private long[] indexStarts;
+  private long[] indexMaxEnds;
+  private long recordCount;
+  private long lastStart;
+  private boolean closed;
+
+  /**
+   * Constructs the writer with the default index stride. Any existing file
+   * will be replaced.
+   *
+   * @param file the snapshot file to write
+   *
+   * @throws IOException if the file cannot be opened
+   */
+  public TimelineSnapshotWriter(Path file) throws IOException {
+    this(file, DEFAULT_INDEX_STRIDE);
+  }
+
+  /**
+   * Constructs the writer. Any existing file will be replaced.
+   *
+   * @param file the snapshot file to write
+   * @param indexStride the number of records per sparse index entry. A smaller
+   * stride results in a larger index but fewer records scanned per query.
+   *
+   * @throws IOException if the file cannot be opened
+   */
+  public TimelineSnapshotWriter(Path file, int indexStride) throws IOException {
+    if (indexStride < 1) {
+      throw new IllegalArgumentException("indexStride must be positive.");
+    }
+
+    this.indexStride = indexStride;
+    this.stringRefs = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+        return size() > STRING_CACHE_SIZE;
+      }
+    };
+    this.indexStarts = new long[64];
+    this.indexMaxEnds = new long[64];
+    this.lastStart = Long.MIN_VALUE;
+
+    this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    this.out = new DataOutputStream(new BufferedOutputStream(Channels.
+        newOutputStream(channel), 64 * 1024));
+
+    Path tmpFile = null;
+    try {
+      Path dir = file.toAbsolutePath().getParent();
+      tmpFile = Files.createTempFile(dir, file.getFileName().toString(),
+          ".strings");
+      this.stringsFile = tmpFile;
+      this.stringsOut = new DataOutputStream(new BufferedOutputStream(Files.
+          newOutputStream(stringsFile), 64 * 1024));
+
+      // Reserve the header which will be written when the writer is closed.
+      out.write(new byte[HEADER_SIZE]);
+    }
+    catch (IOException | RuntimeException ex) {
+      try {
+        out.close();
+        if (tmpFile != null) {
+          Files.deleteIfExists(tmpFile);
+        }
+      }
+      catch (IOException ex2) {
+        ex.addSuppressed(ex2);
+      }
+      throw ex;
+    }
+  }
+
+  /**
+   * Writes all the given items to a new snapshot file. The items will be
+   * sorted by start date before being written.
+   *
+   * @param file the snapshot file to write
+   * @param items the items to write
+   *
+   * @throws IOException if there is an error writing the file
+   */
+  public static void write(Path file, Collection<? extends TimelineItem> items)
+      throws IOException {
+    List<TimelineItem> sorted = new ArrayList<>(items);
+    sorted.sort((i1, i2) -> i1.getStart().compareTo(i2.getStart()));
+
+    try (TimelineSnapshotWriter writer = new TimelineSnapshotWriter(file)) {
+      for (TimelineItem item : sorted) {
+        writer.append(item);
+      }
+    }
+  }
+
+  /**
+   * Appends the item to the snapshot. Items must be appended in start date
+   * order.
+   *
+   * @param item the item to append
+   *
+   * @throws IOException if there is an error writing the item
+   * @throws IllegalArgumentException if the item starts before the previously
+   * appended item
+   */
+  public void append(TimelineItem item) throws IOException {
+    if (closed) {
+      throw new IllegalStateException("The writer is closed.");
+    }
+
+    long start = item.getStart().getTime();
+    long end = item.getEnd() == null ? NO_END : item.getEnd().getTime();
+
+    if (start < lastStart) {
+      throw new IllegalArgumentException(
+          "Items must be appended in start date order.");
+    }
+    lastStart = start;
+
+    // Start a new index block if needed.
+    int block = Math.toIntExact(recordCount / indexStride);
+    long itemEnd = end == NO_END ? start : end;
+    if (recordCount % indexStride == 0) {
+      if (block == indexStarts.length) {
+        indexStarts = Arrays.copyOf(indexStarts, block * 2);
+        indexMaxEnds = Arrays.copyOf(indexMaxEnds, block * 2);
+      }
+      indexStarts[block] = start;
+      indexMaxEnds[block] = itemEnd;
+    }
+    else {
+      indexMaxEnds[block] = Math.max(indexMaxEnds[block], itemEnd);
+    }
+
+    out.writeLong(start);
+    out.writeLong(end);
+    // IDs are unique so they would only push useful strings out of the
+    // cache.
+    out.writeLong(writeString(item.getId() == null ? null : item.getId().
+        toString()));
+    out.writeLong(ref(item.getContent()));
+    out.writeLong(ref(item.getTitle()));
+    out.writeLong(ref(item.getGroupId()));
+    out.writeLong(ref(item.getSubgroupId()));
+    out.writeLong(ref(item.getStyleName()));
+    out.writeLong(ref(item.getStyle()));
+    out.writeByte(item.getType() == null ? -1 : item.getType().ordinal());
+    out.writeByte(item.getEditable() == null ? -1 : item.getEditable() ? 1 : 0);
+    out.writeShort(0);
+    out.writeInt(0);
+
+    recordCount++;
+  }
+
+  /**
+   * Returns the reference to the given string, writing it to the strings if
+   * it wasn't written recently.
+   *
+   * @param value the string value
+   *
+   * @return the string reference
+   *
+   * @throws IOException if there is an error writing the string
+   */
+  private long ref(String value) throws IOException {
+    if (value == null) {
+      return NULL_REF;
+    }
+
+    Long ref = stringRefs.get(value);
+    if (ref == null) {
+      ref = writeString(value);
+      stringRefs.put(value, ref);
+    }
+    return ref;
+  }
+
+  /**
+   * Writes the string to the strings without checking for a previous copy.
+   *
+   * @param value the string value
+   *
+   * @return the string reference
+   *
+   * @throws IOException if there is an error writing the string
+   */
+  private long writeString(String value) throws IOException {
+    if (value == null) {
+      return NULL_REF;
+    }
+
+    byte[] data = value.getBytes(StandardCharsets.UTF_8);
+    int size = 4 + data.length;
+    if (size > STRING_SEGMENT_SIZE) {
+      throw new IOException("String exceeds the maximum snapshot string size.");
+    }
+
+    // Pad to the next segment rather than crossing the boundary.
+    long remaining = STRING_SEGMENT_SIZE - stringsSize % STRING_SEGMENT_SIZE;
+    if (size > remaining) {
+      for (long i = 0; i < remaining; ++i) {
+        stringsOut.write(0);
+      }
+      stringsSize += remaining;
+    }
+
+    long ref = stringsSize;
+    stringsOut.writeInt(data.length);
+    stringsOut.write(data);
+    stringsSize += size;
+    return ref;
+  }
+
+  /**
+   * Writes the index, strings, and header and closes the file.
+   *
+   * @throws IOException if there is an error writing the file
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+
+    try {
+      long indexOffset = HEADER_SIZE + recordCount * RECORD_SIZE;
+      long blocks = (recordCount + indexStride - 1) / indexStride;
+      for (int i = 0; i < blocks; ++i) {
+        out.writeLong(indexStarts[i]);
+        out.writeLong(indexMaxEnds[i]);
+      }
+      out.flush();
+
+      // Copy the strings from the temporary file to the end of the snapshot.
+      long stringsOffset = indexOffset + blocks * INDEX_ENTRY_SIZE;
+      stringsOut.close();
+      try (FileChannel stringsChannel = FileChannel.open(stringsFile,
+          StandardOpenOption.READ)) {
+        long copied = 0;
+        while (copied < stringsSize) {
+          long count = channel.transferFrom(stringsChannel, stringsOffset
+              + copied, stringsSize - copied);
+          if (count <= 0) {
+            throw new EOFException("Unexpected end of the snapshot strings.");
+          }
+          copied += count;
+        }
+      }
+
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+      header.putLong(MAGIC);
+      header.putInt(VERSION);
+      header.putInt(indexStride);
+      header.putLong(recordCount);
+      header.putLong(indexOffset);
+      header.putLong(stringsOffset);
+      header.clear();
+
+      channel.write(header, 0);
+    }
+    finally {
+      try {
+        stringsOut.close();
+        out.close();
+      }
+      finally {
+        Files.deleteIfExists(stringsFile);
+      }
+    }
+  }
+}
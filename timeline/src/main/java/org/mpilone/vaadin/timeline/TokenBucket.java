@@ -0,0 +1,97 @@
+package org.mpilone.vaadin.timeline;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+
+/**
+ * <p>
+ * A token bucket that limits the rate of an operation. The bucket holds up to
+ * one second of tokens and refills continuously at the configured rate. Tokens
+ * can be consumed after the fact (e.g. the number of items returned by a
+ * fetch) which may put the bucket into debt until it refills.
+ * </p>
+ * <p>
+ * This class is not thread safe. It is normally used internally by the
+ * {@link Timeline} while holding the session lock.
+ * </p>
+ *
+ * @author mpilone
+ */
+class TokenBucket implements Serializable {
+
+  private final double rate;
+  private final double capacity;
+  private double tokens;
+  private transient long lastRefill;
+
+  /**
+   * Constructs the bucket full of tokens.
+   *
+   * @param rate the number of tokens added per second
+   */
+  public TokenBucket(double rate) {
+    this.rate = rate;
+    this.capacity = Math.max(rate, 1);
+    this.tokens = capacity;
+    this.lastRefill = System.nanoTime();
+  }
+
+  /**
+   * Returns the number of tokens added per second.
+   *
+   * @return the rate
+   */
+  public double getRate() {
+    return rate;
+  }
+
+  /**
+   * Consumes the given number of tokens even if the bucket doesn't have that
+   * many.
+   *
+   * @param count the number of tokens to consume
+   */
+  public void consume(double count) {
+    refill();
+    tokens -= count;
+  }
+
+  /**
+   * Returns the time until the bucket will have the given number of tokens.
+   *
+   * @param count the number of tokens needed
+   *
+   * @return the delay in milliseconds or 0 if the tokens are available now
+   */
+  public long getDelayMillis(double count) {
+    refill();
+    return tokens >= count ? 0 : (long) Math.ceil((count - tokens) / rate
+        * 1000);
+  }
+
+  /**
+   * Restores the bucket after deserialization. The refill time is based on
+   * {@link System#nanoTime() } which is only meaningful in the JVM that
+   * recorded it so it is reset to now.
+   *
+   * @param in the stream to read from
+   *
+   * @throws IOException if there is an error reading the stream
+   * @throws ClassNotFoundException if a class cannot be found
+   */
+  private void readObject(ObjectInputStream in) throws IOException,
+      ClassNotFoundException {
+    in.defaultReadObject();
+    lastRefill = System.nanoTime();
+  }
+
+  /**
+   * Adds the tokens earned since the last refill.
+   */
+  private void refill() {
+    long now = System.nanoTime();
+    tokens = Math.min(capacity, tokens + (now - lastRefill) / 1e9 * rate);
+    lastRefill = now;
+  }
+}
@@ -0,0 +1,345 @@
+
+package org.mpilone.vaadin.timeline;
+
+import java.util.*;
+import java.util.concurrent.Executor;
+
+/**
+ * <p>
+ * Predicts the next windows of a timeline based on the direction and velocity
+ * of recent window changes and prefetches the items for them on a background
+ * executor. Only the span beyond the edge of the current window is queried.
+ * The prefetched items are combined with the items already fetched for the
+ * current window in a buffer covering both so that a following window request
+ * that falls inside the buffer can be answered without querying the item
+ * provider.
+ * </p>
+ * <p>
+ * Only pans (i.e. window changes with the same window length) are used to
+ * predict motion. A zoom clears the history and the buffer. This class is
+ * normally used internally by the {@link Timeline}.
+ * </p>
+ *
+ * @author mpilone
+ */
+class WindowPrefetcher {
+
+  /**
+   * The number of recent window changes used to measure the velocity.
+   */
+  private static final int HISTORY_SIZE = 4;
+
+  /**
+   * The maximum age of a window change to be used to measure the velocity.
+   */
+  private static final long HISTORY_MAX_AGE = 2000;
+
+  /**
+   * How far ahead in real time to predict the motion of the window.
+   */
+  private static final long PREDICTION_HORIZON = 1000;
+
+  /**
+   * The portion of the window length added to each side of the window when
+   * serving items from the buffer, matching the default window expansion of
+   * {@link AbstractItemProvider}.
+   */
+  private static final double WINDOW_PADDING = 0.1;
+
+  private final Executor executor;
+  private final LinkedList<Sample> history;
+  private int maxDepth;
+  private volatile Buffer buffer;
+  private DateRange inFlightSpan;
+  private long generation;
+  private long fetchedItemCount;
+
+  /**
+   * Constructs the prefetcher.
+   *
+   * @param executor the executor to run the prefetch queries on
+   */
+  public WindowPrefetcher(Executor executor) {
+    this.executor = Objects.requireNonNull(executor);
+    this.history = new LinkedList<>();
+    this.maxDepth = 3;
+  }
+
+  /**
+   * Sets the maximum number of window lengths to prefetch ahead of the current
+   * window. The actual depth scales with the measured velocity.
+   *
+   * @param maxDepth the maximum depth, at least 1
+   */
+  public void setMaxDepth(int maxDepth) {
+    this.maxDepth = Math.max(maxDepth, 1);
+  }
+
+  /**
+   * Returns the maximum number of window lengths to prefetch.
+   *
+   * @return the maximum depth
+   */
+  public int getMaxDepth() {
+    return maxDepth;
+  }
+
+  /**
+   * Records a change of the window used to measure the direction and velocity
+   * of motion.
+   *
+   * @param window the new window
+   */
+  public synchronized void rangeChanged(DateRange window) {
+    long now = System.currentTimeMillis();
+    long length = length(window);
+
+    // A zoom (or a long pause) invalidates the motion history and, for a
+    // zoom, the prefetched items which are for a different level of detail.
+    Sample last = history.peekLast();
+    if (last != null && last.length != length) {
+      history.clear();
+      invalidate();
+    }
+    while (!history.isEmpty() && now - history.peekFirst().time
+        > HISTORY_MAX_AGE) {
+      history.removeFirst();
+    }
+
+    history.addLast(new Sample(now, window.getStart().getTime(), length));
+    if (history.size() > HISTORY_SIZE) {
+      history.removeFirst();
+    }
+  }
+
+  /**
+   * Starts a prefetch in the direction of motion from the edge of the given
+   * window if needed. This should only be called once the items for the window
+   * have been fetched and the fetch rates allow another fetch.
+   *
+   * @param window the current window
+   * @param windowItems the items fetched for the current window
+   * @param groupIds the IDs of the groups the window items were fetched for or
+   * null for all groups
+   * @param provider the provider to fetch items from
+   *
+   * @return true if a prefetch was started
+   */
+  public synchronized boolean prefetch(DateRange window,
+      List<TimelineItem> windowItems, Set<String> groupIds,
+      TimelineItemProvider provider) {
+    if (history.size() < 2) {
+      return false;
+    }
+
+    long length = length(window);
+
+    // Velocity in timeline millis per real millis.
+    Sample first = history.peekFirst();
+    long elapsed = Math.max(history.peekLast().time - first.time, 1);
+    double velocity = (double) (window.getStart().getTime() - first.start)
+        / elapsed;
+
+    if (velocity == 0) {
+      return false;
+    }
+
+    int depth = (int) Math.min(maxDepth, Math.max(1, Math.ceil(Math.abs(
+        velocity) * PREDICTION_HORIZON / length)));
+
+    // The current window was already fetched so only the span beyond its
+    // edge is queried but the buffer will cover both.
+    long start = window.getStart().getTime();
+    long end = window.getEnd().getTime();
+    DateRange span = velocity > 0 ? new DateRange(window.getEnd(), new Date(
+        end + depth * length)) : new DateRange(new Date(start - depth * length),
+            window.getStart());
+    DateRange bufferSpan = velocity > 0 ? new DateRange(window.getStart(),
+        span.getEnd()) : new DateRange(span.getStart(), window.getEnd());
+
+    // Don't fetch again if the span is already buffered or being fetched.
+    Buffer b = buffer;
+    if ((b != null && contains(b.span, bufferSpan)) || (inFlightSpan != null
+        && contains(inFlightSpan, bufferSpan))) {
+      return false;
+    }
+
+    // Only keep the window items actually in the window. Any others came from
+    // the window expansion of the provider and may also be in the span.
+    List<TimelineItem> bufferItems = new ArrayList<>();
+    for (TimelineItem item : windowItems) {
+      if (intersects(item, start, end)) {
+        bufferItems.add(item);
+      }
+    }
+
+    startPrefetch(window, span, bufferSpan, bufferItems, groupIds, provider);
+    return true;
+  }
+
+  /**
+   * Starts the prefetch of the given span on the executor.
+   *
+   * @param window the current window
+   * @param span the span to fetch
+   * @param bufferSpan the span covered by the buffer once the fetch completes
+   * @param bufferItems the items in the current window to add to the buffer
+   * @param groupIds the IDs of the groups to fetch items for or null for all
+   * groups
+   * @param provider the provider to fetch items from
+   */
+  private void startPrefetch(final DateRange window, final DateRange span,
+      final DateRange bufferSpan, final List<TimelineItem> bufferItems,
+      final Set<String> groupIds, final TimelineItemProvider provider) {
+    final long fetchGeneration = generation;
+    inFlightSpan = bufferSpan;
+
+    executor.execute(() -> {
+      List<TimelineItem> items = null;
+      try {
+        if (groupIds != null
+            && provider instanceof TimelineItemProvider.GroupFilterable) {
+          items = ((TimelineItemProvider.GroupFilterable) provider).getItems(
+              span.getStart(), span.getEnd(), groupIds);
+        }
+        else {
+          items = provider.getItems(span.getStart(), span.getEnd());
+        }
+      }
+      finally {
+        synchronized (WindowPrefetcher.this) {
+          // The provider did the work even if the items are discarded.
+          if (items != null) {
+            fetchedItemCount += items.size();
+          }
+
+          if (fetchGeneration == generation) {
+            if (items != null) {
+              // Items intersecting the window are already in the buffer
+              // items.
+              long start = window.getStart().getTime();
+              long end = window.getEnd().getTime();
+              for (TimelineItem item : items) {
+                if (!intersects(item, start, end)) {
+                  bufferItems.add(item);
+                }
+              }
+              buffer = new Buffer(bufferSpan, bufferItems);
+            }
+            if (bufferSpan.equals(inFlightSpan)) {
+              inFlightSpan = null;
+            }
+          }
+        }
+      }
+    });
+  }
+
+  /**
+   * Returns the items for the given window from the prefetch buffer if the
+   * window is completely covered by the buffered span.
+   *
+   * @param window the window to get the items for
+   *
+   * @return the items or null if the window is not buffered
+   */
+  public List<TimelineItem> getItems(DateRange window) {
+    Buffer b = buffer;
+    if (b == null || !contains(b.span, window)) {
+      return null;
+    }
+
+    long padding = (long) (length(window) * WINDOW_PADDING);
+    long start = Math.max(window.getStart().getTime() - padding, b.span.
+        getStart().getTime());
+    long end = Math.min(window.getEnd().getTime() + padding, b.span.getEnd().
+        getTime());
+
+    List<TimelineItem> result = new ArrayList<>();
+    for (TimelineItem item : b.items) {
+      if (intersects(item, start, end)) {
+        result.add(item);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the number of items fetched by the prefetches completed since the
+   * last call and resets the count.
+   *
+   * @return the number of items fetched
+   */
+  public synchronized long drainFetchedItemCount() {
+    long count = fetchedItemCount;
+    fetchedItemCount = 0;
+    return count;
+  }
+
+  /**
+   * Discards the prefetch buffer and the results of any prefetch in progress.
+   * This must be called when the items in the provider or the groups the items
+   * are fetched for change.
+   */
+  public synchronized void invalidate() {
+    generation++;
+    buffer = null;
+    inFlightSpan = null;
+  }
+
+  /**
+   * Returns true if the item intersects the given window. An item with no end
+   * is treated as point data and must start within the window.
+   *
+   * @param item the item to check
+   * @param start the start of the window in millis
+   * @param end the end of the window in millis
+   *
+   * @return true if the item intersects the window
+   */
+  private static boolean intersects(TimelineItem item, long start, long end) {
+    long itemStart = item.getStart().getTime();
+    long itemEnd = item.getEnd() == null ? itemStart : item.getEnd().getTime();
+
+    return itemStart <= end && itemEnd >= start;
+  }
+
+  private static long length(DateRange range) {
+    return range.getEnd().getTime() - range.getStart().getTime();
+  }
+
+  private static boolean contains(DateRange outer, DateRange inner) {
+    return !inner.getStart().before(outer.getStart()) && !inner.getEnd().after(
+        outer.getEnd());
+  }
+
+  /**
+   * A single observation of the window.
+   */
+  private static class Sample {
+
+    private final long time;
+    private final long start;
+    private final long length;
+
+    public Sample(long time, long start, long length) {
+      this.time = time;
+      this.start = start;
+      this.length = length;
+    }
+  }
+
+  /**
+   * The prefetched items for a span of time.
+   */
+  private static class Buffer {
+
+    private final DateRange span;
+    private final List<TimelineItem> items;
+
+    public Buffer(DateRange span, List<TimelineItem> items) {
+      this.span = span;
+      this.items = items;
+    }
+  }
+}
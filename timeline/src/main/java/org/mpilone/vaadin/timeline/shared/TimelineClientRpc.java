@@ -1,6 +1,8 @@
 
 package org.mpilone.vaadin.timeline.shared;
 
+import java.util.Objects;
+
 import com.vaadin.shared.communication.ClientRpc;
 
 /**
@@ -63,6 +65,21 @@ public interface TimelineClientRpc extends ClientRpc {
    */
   void setSelection(Object[] ids, MethodOptions.SetSelection options);
 
+  /**
+   * Adds the items to the current selection. Items that are not displayed
+   * are ignored.
+   *
+   * @param ids the ids of the items to select
+   */
+  void addToSelection(String[] ids);
+
+  /**
+   * Removes the items from the current selection.
+   *
+   * @param ids the ids of the items to deselect
+   */
+  void removeFromSelection(String[] ids);
+
   /**
    * Adjust the visible window such that it fits all items.
    *
@@ -94,6 +111,73 @@ public interface TimelineClientRpc extends ClientRpc {
    */
   void setItems(Item[] items);
 
+  /**
+   * Sets the items to be displayed in the timeline. This is the same as
+   * {@link #setItems(org.mpilone.vaadin.timeline.shared.TimelineClientRpc.Item[]) }
+   * but the items are encoded as columns to reduce the size of the payload.
+   *
+   * @param columns the items to display
+   */
+  void setItemsColumnar(ItemColumns columns);
+
+  /**
+   * Adds the items to the items already displayed in the timeline. This is
+   * the same as
+   * {@link #addItems(org.mpilone.vaadin.timeline.shared.TimelineClientRpc.Item[]) }
+   * but the items are encoded as columns.
+   *
+   * @param columns the items to add
+   */
+  void addItemsColumnar(ItemColumns columns);
+
+  /**
+   * Replaces the items already displayed in the timeline that have the same
+   * IDs as the given items. This is the same as
+   * {@link #updateItems(org.mpilone.vaadin.timeline.shared.TimelineClientRpc.Item[]) }
+   * but the items are encoded as columns.
+   *
+   * @param columns the items to update
+   */
+  void updateItemsColumnar(ItemColumns columns);
+
+  /**
+   * Adds the items to the items already displayed in the timeline.
+   *
+   * @param items the items to add
+   */
+  void addItems(Item[] items);
+
+  /**
+   * Replaces the items already displayed in the timeline that have the same
+   * IDs as the given items.
+   *
+   * @param items the items to update
+   */
+  void updateItems(Item[] items);
+
+  /**
+   * Removes the items with the given IDs from the timeline.
+   *
+   * @param ids the IDs of the items to remove
+   */
+  void removeItems(String[] ids);
+
+  /**
+   * Requests an acknowledgement once the items sent so far have been applied
+   * so the server can send the next chunk of items.
+   *
+   * @param sequence the sequence number of the chunked send
+   */
+  void requestItemChunkAck(int sequence);
+
+  /**
+   * Requests that the client call the server back after the given delay
+   * because a fetch of items was delayed by the maximum fetch rate.
+   *
+   * @param delay the delay in milliseconds
+   */
+  void requestFetchRetry(int delay);
+
   /**
    * Sets the groups to be displayed in the timeline.
    *
@@ -101,6 +185,28 @@ public interface TimelineClientRpc extends ClientRpc {
    */
   void setGroups(Group[] groups);
 
+  /**
+   * Adds the groups to the groups already displayed in the timeline.
+   *
+   * @param groups the groups to add
+   */
+  void addGroups(Group[] groups);
+
+  /**
+   * Replaces the groups already displayed in the timeline that have the same
+   * IDs as the given groups.
+   *
+   * @param groups the groups to update
+   */
+  void updateGroups(Group[] groups);
+
+  /**
+   * Removes the groups with the given IDs from the timeline.
+   *
+   * @param ids the IDs of the groups to remove
+   */
+  void removeGroups(String[] ids);
+
   /**
    * Options that can be passed to specific methods on the timeline.
    */
@@ -148,13 +254,66 @@ public interface TimelineClientRpc extends ClientRpc {
     public String order;
     public String subgroupOrder;
     public String title;
+    public int nestingLevel;
+    public Boolean expanded;
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(id);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (obj == null || getClass() != obj.getClass()) {
+        return false;
+      }
+
+      final Group other = (Group) obj;
+      return Objects.equals(id, other.id) && Objects.equals(className,
+          other.className) && Objects.equals(content, other.content)
+          && Objects.equals(style, other.style) && Objects.equals(order,
+              other.order) && Objects.equals(subgroupOrder,
+              other.subgroupOrder) && Objects.equals(title, other.title)
+          && nestingLevel == other.nestingLevel && Objects.equals(expanded,
+              other.expanded);
+    }
+  }
+
+  /**
+   * A set of items encoded as parallel arrays, one per item property. The
+   * string properties other than the ID are indexes into a string dictionary
+   * kept by the client with -1 meaning null. The client truncates its
+   * dictionary to {@link #stringOffset} entries and then appends
+   * {@link #strings} before decoding the items. An index less than -1 refers
+   * to {@link #inlineStrings} at -2 minus the index, which holds the strings
+   * that aren't worth adding to the dictionary.
+   */
+  public static class ItemColumns {
+
+    public int stringOffset;
+    public String[] strings;
+    public String[] inlineStrings;
+    public String[] ids;
+    public long[] starts;
+    public Long[] ends;
+    public int[] contents;
+    public int[] titles;
+    public int[] groups;
+    public int[] subgroups;
+    public int[] classNames;
+    public int[] styles;
+    public int[] types;
+    public Boolean[] editables;
   }
 
   public static class Item {
 
     public String className;
     public String content;
-    public long end;
+    public Long end;
     public String group;
     public String id;
     public long start;
@@ -163,5 +322,29 @@ public interface TimelineClientRpc extends ClientRpc {
     public String title;
     public String type;
     public Boolean editable;
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(id);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (obj == null || getClass() != obj.getClass()) {
+        return false;
+      }
+
+      final Item other = (Item) obj;
+      return start == other.start && Objects.equals(end, other.end) && Objects.
+          equals(id, other.id) && Objects.equals(className, other.className)
+          && Objects.equals(content, other.content) && Objects.equals(group,
+              other.group) && Objects.equals(style, other.style) && Objects.
+          equals(subgroup, other.subgroup) && Objects.equals(title,
+              other.title) && Objects.equals(type, other.type) && Objects.
+          equals(editable, other.editable);
+    }
   }
 }
@@ -19,6 +19,20 @@ public interface TimelineServerRpc extends ServerRpc {
    */
   void ackSetCurrentTime();
 
+  /**
+   * Acknowledges that a chunk of items sent progressively was applied on the
+   * client side so the next chunk can be sent.
+   *
+   * @param sequence the sequence number of the chunked send
+   */
+  void ackItemChunk(int sequence);
+
+  /**
+   * Called after the delay requested by the server when a fetch of items was
+   * delayed because the maximum fetch rate was exceeded.
+   */
+  void retryFetch();
+
   /**
    * Called when the visible window range has changed on the client side.
    *
@@ -29,13 +43,35 @@ public interface TimelineServerRpc extends ServerRpc {
   void rangeChanged(long start, long end, boolean byUser);
 
   /**
-   * Called when the selected items changes on the client side.
+   * Called when the range of vertically visible groups has changed on the
+   * client side. This is only called if group virtualization is enabled.
+   *
+   * @param firstGroupId the ID of the first visible group or null if no
+   * groups are visible
+   * @param lastGroupId the ID of the last visible group or null if no groups
+   * are visible
+   */
+  void visibleGroupsChanged(String firstGroupId, String lastGroupId);
+
+  /**
+   * Called when the selected items are replaced on the client side (e.g. a
+   * single click on an item). Any selected items not displayed are
+   * deselected.
    *
    * @param clientKeys the list of selected items or an empty list if no items
    * are selected
    */
   void select(List<String> clientKeys);
 
+  /**
+   * Called when items are added to or removed from the selection on the
+   * client side (e.g. a multiselect click on an item).
+   *
+   * @param addedKeys the list of items selected
+   * @param removedKeys the list of items deselected
+   */
+  void selectionChanged(List<String> addedKeys, List<String> removedKeys);
+
   /**
    * Called when the user clicks on the timeline.
    *
@@ -11,6 +11,29 @@ public class TimelineState extends JavaScriptComponentState {
 
   public Options options;
 
+  /**
+   * True if the client should report the range of visible groups so only
+   * those groups are sent.
+   */
+  public boolean groupVirtualization;
+
+  /**
+   * The delay in milliseconds before a range change is reported to the
+   * server. Range changes during the delay are coalesced into the last one.
+   */
+  public int rangeChangeDelay;
+
+  /**
+   * The mode of the range change delay: "fixed" or "adaptive". An adaptive
+   * delay grows while the user keeps changing the range.
+   */
+  public String rangeChangeDelayMode;
+
+  /**
+   * The maximum delay in milliseconds an adaptive delay can grow to.
+   */
+  public int rangeChangeMaxDelay;
+
   public static class TimeAxis {
 
     public String scale;
@@ -34,6 +34,61 @@ org_mpilone_vaadin_timeline_Timeline = function () {
    */
   var rangeChangeTimerId = -1;
 
+  /**
+   * The current delay of the range change timer. An adaptive delay grows 
+   * while range changes keep arriving.
+   * 
+   * @type Number
+   */
+  var rangeChangeDelay = 0;
+
+  /**
+   * The last range change not yet reported to the server or null.
+   * 
+   * @type Object
+   */
+  var pendingRangeChange = null;
+
+  /**
+   * The ID of the timer running until an animated window change finishes. 
+   * Range changes are held while the timer is running.
+   * 
+   * @type Number
+   */
+  var animationTimerId = -1;
+
+  /**
+   * The ID of the timer running until the server should be asked to retry 
+   * a delayed fetch.
+   * 
+   * @type Number
+   */
+  var fetchRetryTimerId = -1;
+
+  /**
+   * The ID of the timer currently running to inform the server side of 
+   * a change to the visible groups.
+   * 
+   * @type Number
+   */
+  var visibleGroupsTimerId = -1;
+
+  /**
+   * The IDs of the first and last visible groups last reported to the 
+   * server.
+   * 
+   * @type Array
+   */
+  var visibleGroups = [null, null];
+
+  /**
+   * The IDs of the selected items last known to both the client and the 
+   * server. Used to report selection changes as deltas.
+   * 
+   * @type Array
+   */
+  var selection = [];
+
   /**
    * The data set containing the groups in the timeline.
    * 
@@ -48,6 +103,14 @@ org_mpilone_vaadin_timeline_Timeline = function () {
    */
   var itemsDataSet = new vis.DataSet([], {"queue": true});
 
+  /**
+   * The strings referenced by index from columnar items. The dictionary is 
+   * kept in sync with the server across sends.
+   * 
+   * @type Array
+   */
+  var stringDictionary = [];
+
   /*
    * Simple method for logging to the JS console if one is available.
    */
@@ -102,6 +165,7 @@ org_mpilone_vaadin_timeline_Timeline = function () {
    * @returns {undefined}
    */
   this.setWindow = function (start, end, options) {
+    this.holdRangeChanges(options);
     timeline.setWindow(new Date(start), new Date(end), options);
   };
 
@@ -113,6 +177,7 @@ org_mpilone_vaadin_timeline_Timeline = function () {
    * @returns {undefined}
    */
   this.moveTo = function (time, options) {
+    this.holdRangeChanges(options);
     timeline.moveTo(new Date(time), options);
   };
 
@@ -125,6 +190,7 @@ org_mpilone_vaadin_timeline_Timeline = function () {
    * @returns {undefined}
    */
   this.focus = function (ids, options) {
+    this.holdRangeChanges(options);
     timeline.focus(ids, options);
   };
 
@@ -135,6 +201,7 @@ org_mpilone_vaadin_timeline_Timeline = function () {
    * @returns {undefined}
    */
   this.fit = function (options) {
+    this.holdRangeChanges(options);
     timeline.fit(options);
   };
 
@@ -147,11 +214,45 @@ org_mpilone_vaadin_timeline_Timeline = function () {
    * @returns {undefined}
    */
   this.setSelection = function (ids, options) {
+    // The server already knows the selection so there is no need to report 
+    // it back.
     timeline.setSelection(ids, options);
+    selection = timeline.getSelection();
+  };
 
-    // The timeline doesn't generate a selection event when explictly 
-    // setting the selection so we fake one.
-    rpcProxy.select(timeline.getSelection());
+  /**
+   * Adds the items to the current selection.
+   * 
+   * @param {Array} ids the ids of the items to select
+   * @returns {undefined}
+   */
+  this.addToSelection = function (ids) {
+    var newSelection = timeline.getSelection();
+    for (var i = 0; i < ids.length; i++) {
+      if (newSelection.indexOf(ids[i]) < 0) {
+        newSelection.push(ids[i]);
+      }
+    }
+    timeline.setSelection(newSelection);
+    selection = timeline.getSelection();
+  };
+
+  /**
+   * Removes the items from the current selection.
+   * 
+   * @param {Array} ids the ids of the items to deselect
+   * @returns {undefined}
+   */
+  this.removeFromSelection = function (ids) {
+    var newSelection = [];
+    var oldSelection = timeline.getSelection();
+    for (var i = 0; i < oldSelection.length; i++) {
+      if (ids.indexOf(oldSelection[i]) < 0) {
+        newSelection.push(oldSelection[i]);
+      }
+    }
+    timeline.setSelection(newSelection);
+    selection = timeline.getSelection();
   };
 
   this.setItems = function (items) {
@@ -174,12 +275,158 @@ org_mpilone_vaadin_timeline_Timeline = function () {
     // See https://developer.mozilla.org/en-US/docs/Web/JavaScript/Reference/Operators/instanceof
     // See https://github.com/almende/vis/issues/1528
     for (var i = 0; i < items.length; i++) {
-      itemsDataSet.update(this.shallowClone(items[i]));
+      itemsDataSet.update(this.cloneItem(items[i]));
     }
     
     itemsDataSet.flush();
   };
 
+  /**
+   * Decodes the items from the columnar encoding. The new strings are added 
+   * to the string dictionary before the items are rebuilt. Strings sent 
+   * inline are referenced by indexes less than -1.
+   * 
+   * @param {Object} columns the items encoded as parallel arrays
+   * @returns {Array} the decoded items
+   */
+  this.decodeItemColumns = function (columns) {
+    stringDictionary.length = columns.stringOffset;
+    for (var i = 0; i < columns.strings.length; i++) {
+      stringDictionary.push(columns.strings[i]);
+    }
+
+    var lookup = function (index) {
+      if (index >= 0) {
+        return stringDictionary[index];
+      }
+      return index === -1 ? null : columns.inlineStrings[-2 - index];
+    };
+
+    var items = [];
+    for (var i = 0; i < columns.ids.length; i++) {
+      items.push({
+        "id": columns.ids[i],
+        "start": columns.starts[i],
+        "end": columns.ends[i],
+        "content": lookup(columns.contents[i]),
+        "title": lookup(columns.titles[i]),
+        "group": lookup(columns.groups[i]),
+        "subgroup": lookup(columns.subgroups[i]),
+        "className": lookup(columns.classNames[i]),
+        "style": lookup(columns.styles[i]),
+        "type": lookup(columns.types[i]),
+        "editable": columns.editables[i]
+      });
+    }
+    return items;
+  };
+
+  /**
+   * Sets the items from the columnar encoding.
+   * 
+   * @param {Object} columns the items encoded as parallel arrays
+   * @returns {undefined}
+   */
+  this.setItemsColumnar = function (columns) {
+    this.setItems(this.decodeItemColumns(columns));
+  };
+
+  /**
+   * Adds the items from the columnar encoding.
+   * 
+   * @param {Object} columns the items encoded as parallel arrays
+   * @returns {undefined}
+   */
+  this.addItemsColumnar = function (columns) {
+    this.addItems(this.decodeItemColumns(columns));
+  };
+
+  /**
+   * Updates the items from the columnar encoding.
+   * 
+   * @param {Object} columns the items encoded as parallel arrays
+   * @returns {undefined}
+   */
+  this.updateItemsColumnar = function (columns) {
+    this.updateItems(this.decodeItemColumns(columns));
+  };
+
+  /**
+   * Adds the items to the items already displayed.
+   * 
+   * @param {Array} items the items to add
+   * @returns {undefined}
+   */
+  this.addItems = function (items) {
+    // Update rather than add so a duplicate ID doesn't raise an error.
+    for (var i = 0; i < items.length; i++) {
+      itemsDataSet.update(this.cloneItem(items[i]));
+    }
+    itemsDataSet.flush();
+  };
+
+  /**
+   * Replaces the items already displayed with the same IDs.
+   * 
+   * @param {Array} items the items to update
+   * @returns {undefined}
+   */
+  this.updateItems = function (items) {
+    // Remove first so properties that are no longer set are cleared.
+    for (var i = 0; i < items.length; i++) {
+      itemsDataSet.remove(items[i].id);
+      itemsDataSet.add(this.cloneItem(items[i]));
+    }
+    itemsDataSet.flush();
+  };
+
+  /**
+   * Removes the items with the given IDs.
+   * 
+   * @param {Array} ids the IDs of the items to remove
+   * @returns {undefined}
+   */
+  this.removeItems = function (ids) {
+    for (var i = 0; i < ids.length; i++) {
+      itemsDataSet.remove(ids[i]);
+    }
+    itemsDataSet.flush();
+  };
+
+  /**
+   * Asks the server to retry a delayed fetch of items after the delay.
+   * 
+   * @param {Number} delay the delay in milliseconds
+   * @returns {undefined}
+   */
+  this.requestFetchRetry = function (delay) {
+    if (fetchRetryTimerId !== -1) {
+      window.clearTimeout(fetchRetryTimerId);
+    }
+    fetchRetryTimerId = window.setTimeout(function () {
+      fetchRetryTimerId = -1;
+      if (timeline) {
+        rpcProxy.retryFetch();
+      }
+    }, delay);
+  };
+
+  /**
+   * Acknowledges that the items sent so far were applied so the server can 
+   * send the next chunk. The acknowledgement is delayed to give the browser 
+   * a chance to render the items already received.
+   * 
+   * @param {Number} sequence the sequence number of the chunked send
+   * @returns {undefined}
+   */
+  this.requestItemChunkAck = function (sequence) {
+    window.setTimeout(function () {
+      if (timeline) {
+        rpcProxy.ackItemChunk(sequence);
+      }
+    }, 0);
+  };
+
   this.setGroups = function (groups) {
     // Remove the groups no longer in the set and update the remaining ones.
     var newIds = [];
@@ -197,11 +444,154 @@ org_mpilone_vaadin_timeline_Timeline = function () {
     // 'instanceof' which fails for GWT created objects. See the same loop in
     // setItems for more details.
     for (var i = 0; i < groups.length; i++) {
-      groupsDataSet.update(this.shallowClone(groups[i]));
+      groupsDataSet.update(this.cloneGroup(groups[i]));
     }
     groupsDataSet.flush();
   };
 
+  /**
+   * Adds the groups to the groups already displayed.
+   * 
+   * @param {Array} groups the groups to add
+   * @returns {undefined}
+   */
+  this.addGroups = function (groups) {
+    // Update rather than add so a duplicate ID doesn't raise an error.
+    for (var i = 0; i < groups.length; i++) {
+      groupsDataSet.update(this.cloneGroup(groups[i]));
+    }
+    groupsDataSet.flush();
+  };
+
+  /**
+   * Replaces the groups already displayed with the same IDs.
+   * 
+   * @param {Array} groups the groups to update
+   * @returns {undefined}
+   */
+  this.updateGroups = function (groups) {
+    // All the group properties are always sent so an update replaces them.
+    for (var i = 0; i < groups.length; i++) {
+      groupsDataSet.update(this.cloneGroup(groups[i]));
+    }
+    groupsDataSet.flush();
+  };
+
+  /**
+   * Removes the groups with the given IDs.
+   * 
+   * @param {Array} ids the IDs of the groups to remove
+   * @returns {undefined}
+   */
+  this.removeGroups = function (ids) {
+    for (var i = 0; i < ids.length; i++) {
+      groupsDataSet.remove(ids[i]);
+    }
+    groupsDataSet.flush();
+  };
+
+  /**
+   * Holds range changes until an animated window change finishes so the 
+   * server isn't told about every step of the animation.
+   * 
+   * @param {Object} options the method options which may have an animation
+   * @returns {undefined}
+   */
+  this.holdRangeChanges = function (options) {
+    if (!options || !options.animation) {
+      return;
+    }
+
+    // vis animates for 500 ms unless a duration is given.
+    var duration = options.animation.duration ? options.animation.duration 
+        : 500;
+
+    if (animationTimerId !== -1) {
+      window.clearTimeout(animationTimerId);
+    }
+    var that = this;
+    animationTimerId = window.setTimeout(function () {
+      animationTimerId = -1;
+      if (timeline && pendingRangeChange && rangeChangeTimerId === -1) {
+        that.reportRangeChange();
+      }
+    }, duration + 50);
+  };
+
+  /**
+   * Schedules a range change to be reported to the server after the range 
+   * change delay. Range changes during the delay replace the pending one.
+   * 
+   * @param {Object} evt the range changed event
+   * @returns {undefined}
+   */
+  this.scheduleRangeChange = function (evt) {
+    var state = this.getState();
+
+    pendingRangeChange = {
+      "start": evt.start.getTime(),
+      "end": evt.end.getTime(),
+      "byUser": evt.byUser
+    };
+
+    if (rangeChangeTimerId !== -1) {
+      window.clearTimeout(rangeChangeTimerId);
+      rangeChangeTimerId = -1;
+
+      // The range is still changing so wait longer.
+      if (state.rangeChangeDelayMode === "adaptive") {
+        rangeChangeDelay = Math.min(Math.max(rangeChangeDelay * 2, 1), 
+            state.rangeChangeMaxDelay);
+      }
+    }
+    else {
+      rangeChangeDelay = state.rangeChangeDelay;
+    }
+
+    if (animationTimerId !== -1) {
+      // Reported when the animation finishes.
+    }
+    else if (rangeChangeDelay <= 0) {
+      this.reportRangeChange();
+    }
+    else {
+      this.startRangeChangeTimer();
+    }
+  };
+
+  /**
+   * Starts (or restarts) the timer that reports the pending range change.
+   * 
+   * @returns {undefined}
+   */
+  this.startRangeChangeTimer = function () {
+    if (rangeChangeTimerId !== -1) {
+      window.clearTimeout(rangeChangeTimerId);
+    }
+
+    var that = this;
+    rangeChangeTimerId = window.setTimeout(function () {
+      rangeChangeTimerId = -1;
+      if (timeline && animationTimerId === -1) {
+        that.reportRangeChange();
+      }
+    }, rangeChangeDelay);
+  };
+
+  /**
+   * Reports the pending range change, if any, to the server.
+   * 
+   * @returns {undefined}
+   */
+  this.reportRangeChange = function () {
+    if (pendingRangeChange) {
+      console_log("Range changed. Notifying the server.");
+      rpcProxy.rangeChanged(pendingRangeChange.start, pendingRangeChange.end, 
+          pendingRangeChange.byUser);
+      pendingRangeChange = null;
+    }
+  };
+
   /**
    * Called when the component is removed from the UI.
    * 
@@ -212,6 +602,15 @@ org_mpilone_vaadin_timeline_Timeline = function () {
       if (rangeChangeTimerId !== -1) {
         window.clearTimeout(rangeChangeTimerId);
       }
+      if (animationTimerId !== -1) {
+        window.clearTimeout(animationTimerId);
+      }
+      if (fetchRetryTimerId !== -1) {
+        window.clearTimeout(fetchRetryTimerId);
+      }
+      if (visibleGroupsTimerId !== -1) {
+        window.clearTimeout(visibleGroupsTimerId);
+      }
 
       timeline.destroy();
     }
@@ -220,9 +619,47 @@ org_mpilone_vaadin_timeline_Timeline = function () {
       // to be raised due to the onMoving method.
     }
     rangeChangeTimerId = -1;
+    animationTimerId = -1;
+    fetchRetryTimerId = -1;
+    visibleGroupsTimerId = -1;
+    pendingRangeChange = null;
     timeline = null;
   };
 
+  /**
+   * Finds the first and last group labels that are vertically visible in 
+   * the left panel and reports them to the server if they changed. The 
+   * labels are in the same order as the group IDs of the item set.
+   * 
+   * @returns {undefined}
+   */
+  this.reportVisibleGroups = function () {
+    var panel = element.querySelector(".vis-panel.vis-left");
+    var groupIds = timeline.itemSet ? timeline.itemSet.groupIds : null;
+    if (!panel || !groupIds) {
+      return;
+    }
+
+    var panelRect = panel.getBoundingClientRect();
+    var labels = panel.querySelectorAll(".vis-labelset .vis-label");
+    var first = null;
+    var last = null;
+    for (var i = 0; i < labels.length && i < groupIds.length; i++) {
+      var rect = labels[i].getBoundingClientRect();
+      if (rect.bottom > panelRect.top && rect.top < panelRect.bottom) {
+        if (first === null) {
+          first = groupIds[i];
+        }
+        last = groupIds[i];
+      }
+    }
+
+    if (first !== visibleGroups[0] || last !== visibleGroups[1]) {
+      visibleGroups = [first, last];
+      rpcProxy.visibleGroupsChanged(first, last);
+    }
+  };
+
   /*
    * Called when the state on the server side changes.
    */
@@ -256,6 +693,47 @@ org_mpilone_vaadin_timeline_Timeline = function () {
     return copy;  
   };
 
+/**
+ * Clones a group from the server. Nested groups are indented and groups that 
+ * can be expanded get an expand/collapse marker in the label. Clicking the 
+ * label is reported to the server which expands or collapses the group.
+ * 
+ * @param {Object} group the group to clone
+ * @returns {Object} the new clone
+ */
+  this.cloneGroup = function (group) {
+    var copy = this.shallowClone(group);
+    delete copy.nestingLevel;
+    delete copy.expanded;
+
+    if (group.nestingLevel > 0) {
+      copy.style = "padding-left: " + (group.nestingLevel * 16) + "px;" 
+          + (group.style ? group.style : "");
+    }
+    if (group.expanded === true || group.expanded === false) {
+      copy.content = (group.expanded ? "\u25BE " : "\u25B8 ") 
+          + (group.content ? group.content : "");
+      copy.className = (group.className ? group.className + " " : "") 
+          + "timeline-group-expandable";
+    }
+    return copy;
+  };
+
+/**
+ * Clones an item from the server. Point items have no end so the property is 
+ * removed rather than passing null to the timeline.
+ * 
+ * @param {Object} item the item to clone
+ * @returns {Object} the new clone
+ */
+  this.cloneItem = function(item) {
+    var copy = this.shallowClone(item);
+    if (copy.end === null || copy.end === undefined) {
+      delete copy.end;
+    }
+    return copy;  
+  };
+
   // -----------------------
   // Init component
   this.registerRpc("org.mpilone.vaadin.timeline.shared.TimelineClientRpc", this);
@@ -266,30 +744,79 @@ org_mpilone_vaadin_timeline_Timeline = function () {
 
   var that = this;
   timeline.on('rangechanged', function (evt) {
-    if (rangeChangeTimerId !== -1) {
-      window.clearTimeout(rangeChangeTimerId);
+    // Delay the call to the server because we only care about the last 
+    // update, not all the changes in between. This is similar to the 
+    // @Delay annotation on the ServerRpc interface but that isn't supported 
+    // in a JavaScript component.
+    that.scheduleRangeChange(evt);
+  });
+
+  timeline.on('rangechange', function (evt) {
+    // Keep waiting while the user is still dragging.
+    if (evt.byUser && rangeChangeTimerId !== -1 
+        && that.getState().rangeChangeDelayMode === "adaptive") {
+      that.startRangeChangeTimer();
     }
-    rangeChangeTimerId = -1;
+  });
 
-    if (that.getState().options.zoomable) {
-      // Delay the call to the server because we only care about the last 
-      // update, not all the changes in between. This is similar to the 
-      // @Delay annotation on the ServerRpc interface but that isn't supported 
-      // in a JavaScript component.
-      rangeChangeTimerId = window.setTimeout(function () {
-        console_log("Range changed. Notifying the server.");
-        rpcProxy.rangeChanged(evt.start.getTime(), evt.end.getTime(), evt.byUser);
-        rangeChangeTimerId = -1;
-      }, 250);
+  timeline.on('changed', function () {
+    if (!that.getState().groupVirtualization) {
+      return;
     }
-    else {
-      console_log("Range changed. Notifying the server.");
-      rpcProxy.rangeChanged(evt.start.getTime(), evt.end.getTime(), evt.byUser);
+
+    // Delay the check because the timeline redraws many times while 
+    // scrolling and we only care about where it stops.
+    if (visibleGroupsTimerId !== -1) {
+      window.clearTimeout(visibleGroupsTimerId);
     }
+    visibleGroupsTimerId = window.setTimeout(function () {
+      visibleGroupsTimerId = -1;
+      if (timeline) {
+        that.reportVisibleGroups();
+      }
+    }, 250);
   });
 
   timeline.on('select', function (evt) {
-    rpcProxy.select(evt.items);
+    var srcEvent = evt.event ? evt.event.srcEvent : null;
+    var multiselect = evt.event && (evt.event.type === 'press' || (srcEvent 
+        && (srcEvent.ctrlKey || srcEvent.metaKey || srcEvent.shiftKey)));
+
+    if (!multiselect) {
+      // The selection was replaced so send it all. This is at most one item.
+      rpcProxy.select(evt.items);
+    }
+    else {
+      // Only send the changes so a large selection isn't sent on every 
+      // click. Items that are no longer displayed were not deselected by 
+      // the user.
+      var oldIds = {};
+      var newIds = {};
+      for (var i = 0; i < selection.length; i++) {
+        oldIds[selection[i]] = true;
+      }
+      for (var i = 0; i < evt.items.length; i++) {
+        newIds[evt.items[i]] = true;
+      }
+
+      var added = [];
+      var removed = [];
+      for (var i = 0; i < evt.items.length; i++) {
+        if (!oldIds[evt.items[i]]) {
+          added.push(evt.items[i]);
+        }
+      }
+      for (var i = 0; i < selection.length; i++) {
+        if (!newIds[selection[i]] && itemsDataSet.get(selection[i]) !== null) {
+          removed.push(selection[i]);
+        }
+      }
+
+      if (added.length > 0 || removed.length > 0) {
+        rpcProxy.selectionChanged(added, removed);
+      }
+    }
+    selection = evt.items;
   });
 
   timeline.on('click', function (props) {
@@ -0,0 +1,140 @@
+package org.mpilone.vaadin.timeline;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.Test;
+
+/**
+ * Tests for the tiling in the {@link AbstractItemProvider}.
+ *
+ * @author mpilone
+ */
+public class AbstractItemProviderTest {
+
+  @Test
+  public void testTiledItems() {
+    TestItemProvider provider = new TestItemProvider();
+    provider.setTilingEnabled(true);
+
+    // The window covers the 512ms tiles [0, 511] and [512, 1023].
+    TimelineItem spanning = new BasicTimelineItem("span", new Date(100),
+        new Date(900), null);
+    TimelineItem noId = new BasicTimelineItem(null, new Date(200), null, null);
+    TimelineItem dup1 = new BasicTimelineItem("dup", new Date(300), null, null);
+    TimelineItem dup2 = new BasicTimelineItem("dup", new Date(700), null, null);
+    TimelineItem outside = new BasicTimelineItem("out", new Date(1010), null,
+        null);
+    provider.addAllItems(Arrays.asList(spanning, noId, dup1, dup2, outside));
+
+    List<TimelineItem> items = provider.getItems(new Date(0), new Date(1000));
+    assertEquals(4, items.size());
+    assertTrue(items.containsAll(Arrays.asList(spanning, noId, dup1, dup2)));
+    assertEquals(2, provider.getTileMissCount());
+
+    // A small pan is served from the cached tiles.
+    items = provider.getItems(new Date(10), new Date(1010));
+    assertEquals(5, items.size());
+    assertEquals(2, provider.getTileMissCount());
+    assertEquals(2, provider.getTileHitCount());
+  }
+
+  @Test
+  public void testTiledItemsAcrossTiles() {
+    TestItemProvider provider = new TestItemProvider();
+    provider.setTilingEnabled(true);
+
+    // Spans all three tiles but starts before the window.
+    provider.addItem(new BasicTimelineItem("span", new Date(-100), new Date(
+        2000), null));
+
+    // Each tile returns a new instance like a database backed provider.
+    provider.copyItems = true;
+
+    List<TimelineItem> items = provider.getItems(new Date(300), new Date(
+        1300));
+    assertEquals(1, items.size());
+    assertEquals("span", items.get(0).getId());
+  }
+
+  @Test
+  public void testTiledGroupItems() {
+    TestItemProvider provider = new TestItemProvider();
+    provider.setTilingEnabled(true);
+
+    BasicTimelineItem item1 = new BasicTimelineItem(1, new Date(100), null,
+        null);
+    item1.setGroupId("g1");
+    BasicTimelineItem item2 = new BasicTimelineItem(2, new Date(200), null,
+        null);
+    item2.setGroupId("g2");
+    provider.addAllItems(Arrays.<TimelineItem>asList(item1, item2));
+
+    assertEquals(Arrays.<TimelineItem>asList(item1), provider.getItems(
+        new Date(0), new Date(1000), Collections.singleton("g1")));
+    assertEquals(Arrays.<TimelineItem>asList(item2), provider.getItems(
+        new Date(0), new Date(1000), Collections.singleton("g2")));
+    assertEquals(2, provider.getItems(new Date(0), new Date(1000)).size());
+
+    // The group filter is pushed down for each tile and set of groups.
+    assertEquals(4, provider.groupFetchCount);
+    assertEquals(6, provider.getTileMissCount());
+  }
+
+  @Test
+  public void testChangeDuringTileFetch() {
+    TestItemProvider provider = new TestItemProvider();
+    provider.setTilingEnabled(true);
+    provider.addItem(new BasicTimelineItem(1, new Date(100), null, null));
+    provider.change = new BasicTimelineItem(2, new Date(200), null, null);
+
+    // The first tile is loaded before the change and must not be cached.
+    assertEquals(1, provider.getItems(new Date(0), new Date(1000)).size());
+    assertEquals(2, provider.getItems(new Date(0), new Date(1000)).size());
+    assertEquals(3, provider.getTileMissCount());
+  }
+
+  /**
+   * A provider with no window expansion that can copy the items returned,
+   * counts the group fetches, and can add an item while fetching a tile.
+   */
+  private static class TestItemProvider extends BasicItemProvider {
+
+    private boolean copyItems;
+    private int groupFetchCount;
+    private TimelineItem change;
+
+    public TestItemProvider() {
+      setWindowExpandFactor(0);
+    }
+
+    @Override
+    public List<TimelineItem> doGetItems(Date startDate, Date endDate) {
+      List<TimelineItem> items = super.doGetItems(startDate, endDate);
+
+      if (copyItems) {
+        List<TimelineItem> copies = new ArrayList<>();
+        for (TimelineItem item : items) {
+          copies.add(new BasicTimelineItem(item.getId(), item.getStart(), item.
+              getEnd(), item.getContent()));
+        }
+        items = copies;
+      }
+
+      if (change != null) {
+        TimelineItem item = change;
+        change = null;
+        addItem(item);
+      }
+      return items;
+    }
+
+    @Override
+    protected List<TimelineItem> doGetItems(Date startDate, Date endDate,
+        Set<String> groupIds) {
+      groupFetchCount++;
+      return super.doGetItems(startDate, endDate, groupIds);
+    }
+  }
+}
@@ -0,0 +1,73 @@
+package org.mpilone.vaadin.timeline;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.Test;
+
+/**
+ * Tests for the {@link CachingItemProvider}.
+ *
+ * @author mpilone
+ */
+public class CachingItemProviderTest {
+
+  @Test
+  public void testCachesWindows() {
+    BasicItemProvider basic = new BasicItemProvider();
+    basic.setWindowExpandFactor(0);
+    basic.addItem(new BasicTimelineItem(1, new Date(1000), null, "item 1"));
+
+    CachingItemProvider provider = new CachingItemProvider(basic);
+    assertEquals(1, provider.getItems(new Date(0), new Date(2000)).size());
+    assertEquals(1, provider.getItems(new Date(0), new Date(2000)).size());
+    assertEquals(1, provider.getHitCount());
+    assertEquals(1, provider.getMissCount());
+
+    // A change in the wrapped provider invalidates the cache.
+    basic.addItem(new BasicTimelineItem(2, new Date(1500), null, "item 2"));
+    assertEquals(0, provider.getCachedWindowCount());
+    assertEquals(2, provider.getItems(new Date(0), new Date(2000)).size());
+  }
+
+  @Test
+  public void testChangeDuringFetch() {
+    // A slow provider that is modified (by another thread in practice) after
+    // it has read the items but before they are returned.
+    SlowItemProvider slow = new SlowItemProvider();
+    slow.setWindowExpandFactor(0);
+    slow.addItem(new BasicTimelineItem(1, new Date(1000), null, "item 1"));
+
+    CachingItemProvider provider = new CachingItemProvider(slow);
+    slow.change = new BasicTimelineItem(2, new Date(1500), null, "item 2");
+
+    // The first fetch returns the items it read but must not cache them.
+    assertEquals(1, provider.getItems(new Date(0), new Date(2000)).size());
+    assertEquals(0, provider.getCachedWindowCount());
+
+    assertEquals(2, provider.getItems(new Date(0), new Date(2000)).size());
+    assertEquals(1, provider.getCachedWindowCount());
+  }
+
+  /**
+   * A provider that adds an item, firing an item set change event, in the
+   * middle of loading the items.
+   */
+  private static class SlowItemProvider extends BasicItemProvider {
+
+    private TimelineItem change;
+
+    @Override
+    public List<TimelineItem> doGetItems(Date startDate, Date endDate) {
+      List<TimelineItem> items = super.doGetItems(startDate, endDate);
+
+      if (change != null) {
+        TimelineItem item = change;
+        change = null;
+        addItem(item);
+      }
+      return items;
+    }
+  }
+}
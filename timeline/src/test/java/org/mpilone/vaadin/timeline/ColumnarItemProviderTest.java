@@ -0,0 +1,73 @@
+package org.mpilone.vaadin.timeline;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.Test;
+
+/**
+ * Tests for the {@link ColumnarItemProvider}.
+ *
+ * @author mpilone
+ */
+public class ColumnarItemProviderTest {
+
+  @Test
+  public void testLongEarlyItem() {
+    List<TimelineItem> items = new ArrayList<>();
+    items.add(new BasicTimelineItem("long", new Date(0), new Date(1000000),
+        "long"));
+    for (int i = 1; i < 1000; ++i) {
+      items.add(new BasicTimelineItem(i, new Date(i * 1000L), new Date(i
+          * 1000L + 500), "item " + i));
+    }
+
+    ColumnarItemProvider provider = new ColumnarItemProvider(items);
+    provider.setWindowExpandFactor(0);
+
+    List<TimelineItem> result = provider.getItems(new Date(500200), new Date(
+        502000));
+    List<Object> ids = new ArrayList<>();
+    for (TimelineItem item : result) {
+      ids.add(item.getId());
+    }
+    assertEquals(Arrays.<Object>asList("long", 500, 501, 502), ids);
+  }
+
+  @Test
+  public void testMatchesBasicProvider() {
+    Random random = new Random(2);
+    List<TimelineItem> items = ItemProviderAssert.randomItems(random, 2000);
+
+    ColumnarItemProvider provider = new ColumnarItemProvider(items);
+    provider.setWindowExpandFactor(0);
+    assertEquals(items.size(), provider.size());
+
+    ItemProviderAssert.assertSameItems(ItemProviderAssert.basicProvider(
+        items), provider, random);
+  }
+
+  @Test
+  public void testStrings() {
+    BasicTimelineItem item1 = new BasicTimelineItem(1, new Date(1000), null,
+        "café");
+    item1.setTitle("title");
+    item1.setGroupId("g");
+    BasicTimelineItem item2 = new BasicTimelineItem(2, new Date(2000), null,
+        null);
+    item2.setGroupId("g");
+
+    ColumnarItemProvider provider = new ColumnarItemProvider(Arrays.asList(
+        item1, item2));
+    List<TimelineItem> result = provider.getItems(new Date(0), new Date(3000));
+
+    assertEquals(2, result.size());
+    assertEquals("café", result.get(0).getContent());
+    assertEquals("title", result.get(0).getTitle());
+    assertEquals("g", result.get(0).getGroupId());
+    assertNull(result.get(1).getContent());
+    assertNull(result.get(1).getTitle());
+    assertEquals("g", result.get(1).getGroupId());
+  }
+}
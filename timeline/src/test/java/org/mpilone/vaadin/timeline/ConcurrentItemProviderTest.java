@@ -0,0 +1,78 @@
+package org.mpilone.vaadin.timeline;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.Test;
+
+/**
+ * Tests for the {@link ConcurrentItemProvider}.
+ *
+ * @author mpilone
+ */
+public class ConcurrentItemProviderTest {
+
+  @Test
+  public void testMatchesBasicProvider() {
+    Random random = new Random(4);
+    List<TimelineItem> items = ItemProviderAssert.randomItems(random, 2000);
+
+    // Add the items in a few batches to merge them into the snapshot.
+    ConcurrentItemProvider provider = new ConcurrentItemProvider();
+    provider.setWindowExpandFactor(0);
+    for (int i = 0; i < items.size(); i += 500) {
+      provider.addAllItems(items.subList(i, i + 500));
+    }
+    assertEquals(items.size(), provider.size());
+
+    ItemProviderAssert.assertSameItems(ItemProviderAssert.basicProvider(
+        items), provider, random);
+
+    // Replace some of the items in a single update.
+    List<TimelineItem> removed = items.subList(0, 300);
+    List<TimelineItem> added = ItemProviderAssert.randomItems(random, 300).
+        subList(1, 300);
+    provider.update(added, removed);
+
+    List<TimelineItem> remaining = new ArrayList<>(items.subList(300, items.
+        size()));
+    remaining.addAll(added);
+    assertEquals(remaining.size(), provider.size());
+    ItemProviderAssert.assertSameItems(ItemProviderAssert.basicProvider(
+        remaining), provider, random);
+  }
+
+  @Test
+  public void testTiledMatchesBasicProvider() {
+    Random random = new Random(5);
+    List<TimelineItem> items = ItemProviderAssert.randomItems(random, 2000);
+
+    ConcurrentItemProvider provider = new ConcurrentItemProvider();
+    provider.setWindowExpandFactor(0);
+    provider.setTilingEnabled(true);
+    provider.addAllItems(items);
+
+    ItemProviderAssert.assertSameItems(ItemProviderAssert.basicProvider(
+        items), provider, random);
+  }
+
+  @Test
+  public void testRemoveAllItems() {
+    ConcurrentItemProvider provider = new ConcurrentItemProvider();
+    List<TimelineItem> items = Arrays.<TimelineItem>asList(
+        new BasicTimelineItem(1, new Date(1000), null, null),
+        new BasicTimelineItem(2, new Date(2000), new Date(3000), null));
+    provider.addAllItems(items);
+
+    List<TimelineItemProvider.ItemSetChangeEvent> events = new ArrayList<>();
+    provider.addItemSetChangeListener(events::add);
+    provider.removeAllItems();
+
+    assertEquals(0, provider.size());
+    assertEquals(1, events.size());
+    assertTrue(events.get(0).isDetailed());
+    assertEquals(new HashSet<>(items), new HashSet<>(events.get(0).
+        getRemovedItems()));
+  }
+}
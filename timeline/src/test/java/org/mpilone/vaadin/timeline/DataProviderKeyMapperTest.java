@@ -0,0 +1,116 @@
+package org.mpilone.vaadin.timeline;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.Test;
+
+/**
+ * Tests for the {@link DataProviderKeyMapper}.
+ *
+ * @author mpilone
+ */
+public class DataProviderKeyMapperTest {
+
+  @Test
+  public void testKeys() {
+    DataProviderKeyMapper mapper = new DataProviderKeyMapper();
+
+    String key1 = mapper.getKey("a");
+    String key2 = mapper.getKey("b");
+    assertNotEquals(key1, key2);
+    assertEquals(key1, mapper.getKey("a"));
+    assertEquals(key1, mapper.findKey("a"));
+    assertEquals("a", mapper.getItemId(key1));
+    assertEquals(Arrays.asList("a", "b"), mapper.getItemIds(Arrays.asList(
+        key1, key2)));
+
+    // Finding a key never maps the item.
+    assertNull(mapper.findKey("c"));
+  }
+
+  @Test
+  public void testGenerationEviction() {
+    DataProviderKeyMapper mapper = new DataProviderKeyMapper();
+
+    String keyA = mapper.getKey("a");
+    String keyB = mapper.getKey("b");
+    mapper.setActiveRows(Arrays.asList("a", "b"));
+
+    // Only the rows in the latest generation are kept.
+    mapper.setActiveRows(Arrays.asList("a"));
+    assertEquals(keyA, mapper.findKey("a"));
+    assertNull(mapper.findKey("b"));
+    try {
+      mapper.getItemId(keyB);
+      fail("Expected the key to be evicted.");
+    }
+    catch (IllegalStateException ex) {
+      // expected
+    }
+
+    // A key created after the rows were set survives until the next
+    // generation.
+    String keyC = mapper.getKey("c");
+    assertEquals("c", mapper.getItemId(keyC));
+    mapper.setActiveRows(Collections.emptyList());
+    assertNull(mapper.findKey("a"));
+    assertNull(mapper.findKey("c"));
+  }
+
+  @Test
+  public void testPinnedSurviveEviction() {
+    DataProviderKeyMapper mapper = new DataProviderKeyMapper();
+
+    String key = mapper.getKey("a");
+    mapper.pin("a");
+    assertTrue(mapper.isPinned("a"));
+
+    mapper.setActiveRows(Collections.emptyList());
+    assertEquals(key, mapper.findKey("a"));
+
+    mapper.unpin("a");
+    mapper.setActiveRows(Collections.emptyList());
+    assertNull(mapper.findKey("a"));
+  }
+
+  @Test
+  public void testKeysNotReused() {
+    DataProviderKeyMapper mapper = new DataProviderKeyMapper();
+
+    String key1 = mapper.getKey("a");
+    mapper.setActiveRows(Collections.emptyList());
+
+    // A new mapping for an evicted item gets a new key so stale client keys
+    // can't refer to it.
+    String key2 = mapper.getKey("a");
+    assertNotEquals(key1, key2);
+  }
+
+  @Test
+  public void testCodec() {
+    DataProviderKeyMapper mapper = new DataProviderKeyMapper();
+    mapper.setCodec(new ItemKeyCodec.Numeric());
+
+    // Encoded IDs don't need entries so they are never evicted.
+    String key1 = mapper.getKey(42L);
+    assertEquals(Long.toString(42, 36), key1);
+    mapper.setActiveRows(Collections.emptyList());
+    assertEquals(key1, mapper.findKey(42L));
+    assertEquals(42L, mapper.getItemId(key1));
+
+    // Other IDs are mapped with the reserved prefix.
+    String key2 = mapper.getKey("a");
+    assertTrue(key2.startsWith(ItemKeyCodec.RESERVED_PREFIX));
+    assertEquals("a", mapper.getItemId(key2));
+
+    mapper.setActiveRows(Arrays.asList(42L));
+    assertNull(mapper.findKey("a"));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testUnknownKey() {
+    new DataProviderKeyMapper().getItemId("zz");
+  }
+}
@@ -0,0 +1,120 @@
+package org.mpilone.vaadin.timeline;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.Test;
+
+/**
+ * Tests for the {@link IntervalIndexItemProvider}.
+ *
+ * @author mpilone
+ */
+public class IntervalIndexItemProviderTest {
+
+  @Test
+  public void testEqualItemsAreKept() {
+    TimelineItem item1 = new EqualItem(new Date(1000));
+    TimelineItem item2 = new EqualItem(new Date(2000));
+
+    IntervalIndexItemProvider provider = new IntervalIndexItemProvider();
+    provider.setWindowExpandFactor(0);
+    provider.addItem(item1);
+    provider.addItem(item2);
+
+    assertEquals(2, provider.size());
+    assertEquals(2, provider.getItems(new Date(0), new Date(5000)).size());
+
+    // Removing an equal item removes a single item like the basic provider.
+    provider.removeItem(new EqualItem(new Date(0)));
+    assertEquals(1, provider.size());
+    assertEquals(1, provider.getItems(new Date(0), new Date(5000)).size());
+  }
+
+  @Test
+  public void testMatchesBasicProvider() {
+    Random random = new Random(3);
+    List<TimelineItem> items = ItemProviderAssert.randomItems(random, 2000);
+
+    IntervalIndexItemProvider provider = new IntervalIndexItemProvider();
+    provider.setWindowExpandFactor(0);
+    provider.addAllItems(items);
+
+    ItemProviderAssert.assertSameItems(ItemProviderAssert.basicProvider(
+        items), provider, random);
+
+    // Remove some of the items individually.
+    BasicItemProvider expected = ItemProviderAssert.basicProvider(items);
+    for (TimelineItem item : items.subList(0, 500)) {
+      provider.removeItem(item);
+      expected.removeItem(item);
+    }
+    ItemProviderAssert.assertSameItems(expected, provider, random);
+  }
+
+  @Test
+  public void testSameInstanceIsReindexed() {
+    BasicTimelineItem item = new BasicTimelineItem(1, new Date(1000), null,
+        "a");
+
+    IntervalIndexItemProvider provider = new IntervalIndexItemProvider();
+    provider.setWindowExpandFactor(0);
+    provider.addItem(item);
+
+    item.setStart(new Date(9000));
+    provider.addItem(item);
+
+    assertEquals(1, provider.size());
+    assertTrue(provider.getItems(new Date(0), new Date(5000)).isEmpty());
+    assertEquals(Collections.singletonList(item), provider.getItems(new Date(
+        8000), new Date(10000)));
+  }
+
+  @Test
+  public void testDetailedEvents() {
+    BasicTimelineItem item1 = new BasicTimelineItem(1, new Date(1000), null,
+        "a");
+    BasicTimelineItem item2 = new BasicTimelineItem(2, new Date(2000),
+        new Date(3000), "b");
+
+    IntervalIndexItemProvider provider = new IntervalIndexItemProvider();
+    List<TimelineItemProvider.ItemSetChangeEvent> events = new ArrayList<>();
+    provider.addItemSetChangeListener(events::add);
+
+    provider.addItem(item1);
+    provider.addItem(item2);
+    provider.removeItem(item1);
+    provider.removeAllItems();
+
+    assertEquals(4, events.size());
+    for (TimelineItemProvider.ItemSetChangeEvent event : events) {
+      assertTrue(event.isDetailed());
+    }
+    assertEquals(Collections.singletonList(item1), new ArrayList<>(events.get(
+        2).getRemovedItems()));
+    assertEquals(Collections.singletonList(item2), new ArrayList<>(events.get(
+        3).getRemovedItems()));
+    assertEquals(0, provider.size());
+  }
+
+  /**
+   * An item that is equal to every other instance of the class.
+   */
+  private static class EqualItem extends BasicTimelineItem {
+
+    public EqualItem(Date start) {
+      super("same", start, null, "equal");
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof EqualItem;
+    }
+
+    @Override
+    public int hashCode() {
+      return 1;
+    }
+  }
+}
@@ -0,0 +1,73 @@
+package org.mpilone.vaadin.timeline;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.Test;
+
+/**
+ * Tests for the {@link ItemClusterer}.
+ *
+ * @author mpilone
+ */
+public class ItemClustererTest {
+
+  @Test
+  public void testClustersStableWhenPanning() {
+    // Ten buckets of 100ms in the window.
+    ItemClusterer clusterer = new ItemClusterer(2, 10);
+
+    List<TimelineItem> items = new ArrayList<>();
+    for (int i = 0; i < 3; ++i) {
+      items.add(new BasicTimelineItem("a" + i, new Date(440 + i * 10), null,
+          null));
+      items.add(new BasicTimelineItem("b" + i, new Date(540 + i * 10), null,
+          null));
+    }
+
+    List<TimelineItem> result1 = clusterer.cluster(items, new DateRange(
+        new Date(0), new Date(1000)));
+    List<TimelineItem> result2 = clusterer.cluster(items, new DateRange(
+        new Date(50), new Date(1050)));
+
+    assertEquals(2, result1.size());
+    assertEquals(new HashSet<>(ids(result1)), new HashSet<>(ids(result2)));
+  }
+
+  @Test
+  public void testItemsOutsideWindow() {
+    ItemClusterer clusterer = new ItemClusterer(2, 10);
+
+    // Items before the window are not clustered with the items at the start
+    // of the window.
+    List<TimelineItem> items = new ArrayList<>();
+    items.add(new BasicTimelineItem(1, new Date(-500), null, null));
+    items.add(new BasicTimelineItem(2, new Date(-300), null, null));
+    items.add(new BasicTimelineItem(3, new Date(10), null, null));
+
+    List<TimelineItem> result = clusterer.cluster(items, new DateRange(
+        new Date(0), new Date(1000)));
+    assertEquals(items, result);
+
+    // But a dense run outside the window is.
+    items.add(new BasicTimelineItem(4, new Date(-290), null, null));
+    items.add(new BasicTimelineItem(5, new Date(-280), null, null));
+    result = clusterer.cluster(items, new DateRange(new Date(0), new Date(
+        1000)));
+    assertEquals(3, result.size());
+
+    ClusterItem cluster = (ClusterItem) result.get(1);
+    assertEquals(Arrays.<Object>asList(2, 4, 5), cluster.getItemIds());
+    assertEquals(new Date(-300), cluster.getStart());
+    assertEquals(new Date(-280), cluster.getEnd());
+  }
+
+  private static List<Object> ids(List<TimelineItem> items) {
+    List<Object> ids = new ArrayList<>();
+    for (TimelineItem item : items) {
+      ids.add(item.getId());
+    }
+    return ids;
+  }
+}
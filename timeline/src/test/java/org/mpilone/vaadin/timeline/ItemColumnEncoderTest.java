@@ -0,0 +1,141 @@
+package org.mpilone.vaadin.timeline;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.Test;
+import org.mpilone.vaadin.timeline.shared.TimelineClientRpc;
+
+/**
+ * Tests for the {@link ItemColumnEncoder}. The items are decoded the same way
+ * as the client connector does.
+ *
+ * @author mpilone
+ */
+public class ItemColumnEncoderTest {
+
+  @Test
+  public void testRoundTrip() {
+    ItemColumnEncoder encoder = new ItemColumnEncoder();
+    List<String> dictionary = new ArrayList<>();
+
+    List<TimelineClientRpc.Item> items = new ArrayList<>();
+    for (int i = 0; i < 5; ++i) {
+      TimelineClientRpc.Item item = createItem(i);
+      item.title = "title " + i;
+      items.add(item);
+    }
+    items.get(2).end = null;
+    items.get(3).editable = null;
+    items.get(4).group = null;
+
+    TimelineClientRpc.ItemColumns columns = encoder.encode(items);
+    assertEquals(items, decode(columns, dictionary));
+
+    // The unique content and titles are sent inline, the repeated group, style
+    // and type are added to the dictionary.
+    assertEquals(10, columns.inlineStrings.length);
+    assertEquals(Arrays.asList("g", "s", "range"), Arrays.asList(
+        columns.strings));
+    assertEquals(3, encoder.getDictionarySize());
+    assertEquals(-2, columns.contents[0]);
+    assertEquals("content 0", columns.inlineStrings[-2 - columns.contents[0]]);
+    assertEquals(-1, columns.groups[4]);
+  }
+
+  @Test
+  public void testDictionaryReused() {
+    ItemColumnEncoder encoder = new ItemColumnEncoder();
+    List<String> dictionary = new ArrayList<>();
+
+    List<TimelineClientRpc.Item> items = Arrays.asList(createItem(1),
+        createItem(2));
+    assertEquals(items, decode(encoder.encode(items), dictionary));
+
+    // The dictionary strings are only sent once but a string that was sent
+    // inline and now repeats is added.
+    TimelineClientRpc.Item item = createItem(3);
+    item.content = "content 2";
+    item.title = "title 3";
+    items = Arrays.asList(createItem(2), item);
+    TimelineClientRpc.ItemColumns columns = encoder.encode(items);
+    assertEquals(Arrays.asList("content 2"), Arrays.asList(columns.strings));
+    assertEquals(Arrays.asList("title 3"), Arrays.asList(
+        columns.inlineStrings));
+    assertEquals(3, columns.stringOffset);
+    assertEquals(items, decode(columns, dictionary));
+  }
+
+  @Test
+  public void testDictionaryCleared() {
+    ItemColumnEncoder encoder = new ItemColumnEncoder(2);
+    List<String> dictionary = new ArrayList<>();
+
+    List<TimelineClientRpc.Item> items = Arrays.asList(createItem(1),
+        createItem(1));
+    assertEquals(items, decode(encoder.encode(items), dictionary));
+    assertEquals(4, encoder.getDictionarySize());
+
+    // The dictionary is too large so it starts over.
+    items = Arrays.asList(createItem(2), createItem(2));
+    TimelineClientRpc.ItemColumns columns = encoder.encode(items);
+    assertEquals(0, columns.stringOffset);
+    assertEquals(items, decode(columns, dictionary));
+    assertEquals(4, dictionary.size());
+  }
+
+  private static TimelineClientRpc.Item createItem(int index) {
+    TimelineClientRpc.Item item = new TimelineClientRpc.Item();
+    item.id = String.valueOf(index);
+    item.start = index * 1000L;
+    item.end = index * 1000L + 500;
+    item.content = "content " + index;
+    item.group = "g";
+    item.style = "s";
+    item.type = "range";
+    item.editable = true;
+    return item;
+  }
+
+  /**
+   * Decodes the columns like the client connector by updating the client
+   * dictionary and resolving the indexes.
+   *
+   * @param columns the encoded items
+   * @param dictionary the client copy of the dictionary
+   *
+   * @return the decoded items
+   */
+  private static List<TimelineClientRpc.Item> decode(
+      TimelineClientRpc.ItemColumns columns, List<String> dictionary) {
+    dictionary.subList(columns.stringOffset, dictionary.size()).clear();
+    dictionary.addAll(Arrays.asList(columns.strings));
+
+    List<TimelineClientRpc.Item> items = new ArrayList<>();
+    for (int i = 0; i < columns.ids.length; ++i) {
+      TimelineClientRpc.Item item = new TimelineClientRpc.Item();
+      item.id = columns.ids[i];
+      item.start = columns.starts[i];
+      item.end = columns.ends[i];
+      item.content = lookup(columns.contents[i], columns, dictionary);
+      item.title = lookup(columns.titles[i], columns, dictionary);
+      item.group = lookup(columns.groups[i], columns, dictionary);
+      item.subgroup = lookup(columns.subgroups[i], columns, dictionary);
+      item.className = lookup(columns.classNames[i], columns, dictionary);
+      item.style = lookup(columns.styles[i], columns, dictionary);
+      item.type = lookup(columns.types[i], columns, dictionary);
+      item.editable = columns.editables[i];
+      items.add(item);
+    }
+    return items;
+  }
+
+  private static String lookup(int index,
+      TimelineClientRpc.ItemColumns columns, List<String> dictionary) {
+    if (index >= 0) {
+      return dictionary.get(index);
+    }
+    return index == -1 ? null : columns.inlineStrings[-2 - index];
+  }
+}
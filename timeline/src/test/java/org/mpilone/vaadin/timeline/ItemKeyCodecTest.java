@@ -0,0 +1,81 @@
+package org.mpilone.vaadin.timeline;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.Test;
+
+/**
+ * Tests for the {@link ItemKeyCodec} implementations.
+ *
+ * @author mpilone
+ */
+public class ItemKeyCodecTest {
+
+  @Test
+  public void testNumeric() {
+    ItemKeyCodec codec = new ItemKeyCodec.Numeric();
+
+    for (long id : new long[]{0, 1, 35, 36, -1, Long.MAX_VALUE,
+      Long.MIN_VALUE}) {
+      String key = codec.encode(id);
+      assertFalse(key.startsWith(ItemKeyCodec.RESERVED_PREFIX));
+      assertEquals(id, codec.decode(key));
+    }
+    assertEquals("z", codec.encode(35L));
+
+    // Only longs can be encoded.
+    assertNull(codec.encode(1));
+    assertNull(codec.encode("1"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNumericInvalidKey() {
+    new ItemKeyCodec.Numeric().decode("not a key!");
+  }
+
+  @Test
+  public void testUuid() {
+    ItemKeyCodec codec = new ItemKeyCodec.Uuid();
+
+    UUID id = UUID.randomUUID();
+    String key = codec.encode(id);
+    assertEquals(22, key.length());
+    assertEquals(id, codec.decode(key));
+
+    assertNull(codec.encode(id.toString()));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUuidInvalidKey() {
+    new ItemKeyCodec.Uuid().decode("AAAA");
+  }
+
+  @Test
+  public void testUuidString() {
+    ItemKeyCodec codec = new ItemKeyCodec.UuidString();
+
+    String id = UUID.randomUUID().toString();
+    String key = codec.encode(id);
+    assertEquals(22, key.length());
+    assertEquals(id, codec.decode(key));
+
+    // Only the canonical format decodes to an equal ID.
+    assertNull(codec.encode(id.toUpperCase(Locale.ROOT)));
+    assertNull(codec.encode("not a uuid"));
+    assertNull(codec.encode(UUID.fromString(id)));
+  }
+
+  @Test
+  public void testIdentity() {
+    ItemKeyCodec codec = new ItemKeyCodec.Identity();
+
+    assertEquals("item 1", codec.encode("item 1"));
+    assertEquals("item 1", codec.decode("item 1"));
+
+    // Keys with the reserved prefix are left to the mapper.
+    assertNull(codec.encode(ItemKeyCodec.RESERVED_PREFIX + "1"));
+    assertNull(codec.encode(1L));
+  }
+}
@@ -0,0 +1,101 @@
+package org.mpilone.vaadin.timeline;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+/**
+ * Helpers to compare the results of item providers with the
+ * {@link BasicItemProvider}.
+ *
+ * @author mpilone
+ */
+final class ItemProviderAssert {
+
+  private ItemProviderAssert() {
+    // Static helpers only.
+  }
+
+  /**
+   * Creates random range and point items with random groups between 0 and
+   * 1,000,000 millis. The first item spans most of the time so that it
+   * intersects almost every window.
+   *
+   * @param random the random number generator
+   * @param count the number of items to create
+   *
+   * @return the items
+   */
+  static List<TimelineItem> randomItems(Random random, int count) {
+    List<TimelineItem> items = new ArrayList<>();
+    items.add(new BasicTimelineItem("long", new Date(0), new Date(900000),
+        "long"));
+
+    for (int i = 1; i < count; ++i) {
+      long start = random.nextInt(1000000);
+      BasicTimelineItem item = new BasicTimelineItem("i" + i, new Date(start),
+          random.nextBoolean() ? null : new Date(start + random.nextInt(
+              5000)), "item " + i);
+
+      int group = random.nextInt(5);
+      item.setGroupId(group == 0 ? null : "g" + group);
+      items.add(item);
+    }
+    return items;
+  }
+
+  /**
+   * Creates a basic provider with no window expansion containing the items.
+   *
+   * @param items the items
+   *
+   * @return the provider
+   */
+  static BasicItemProvider basicProvider(Collection<TimelineItem> items) {
+    BasicItemProvider provider = new BasicItemProvider();
+    provider.setWindowExpandFactor(0);
+    provider.addAllItems(items);
+    return provider;
+  }
+
+  /**
+   * Asserts that the providers return the same items for random windows, with
+   * and without group filtering. The providers must not expand the window.
+   *
+   * @param expected the provider with the expected results
+   * @param actual the provider to check
+   * @param random the random number generator
+   */
+  static void assertSameItems(AbstractItemProvider expected,
+      AbstractItemProvider actual, Random random) {
+    Set<String> groupIds = new HashSet<>(Arrays.asList("g1", "g3"));
+
+    for (int i = 0; i < 100; ++i) {
+      long start = random.nextInt(1100000) - 50000;
+      Date startDate = new Date(start);
+      Date endDate = new Date(start + random.nextInt(20000));
+
+      assertEquals(ids(expected.getItems(startDate, endDate)), ids(actual.
+          getItems(startDate, endDate)));
+      assertEquals(ids(expected.getItems(startDate, endDate, groupIds)), ids(
+          actual.getItems(startDate, endDate, groupIds)));
+    }
+  }
+
+  /**
+   * Returns the sorted IDs of the items as strings so duplicates are
+   * detected.
+   *
+   * @param items the items
+   *
+   * @return the sorted IDs
+   */
+  static List<String> ids(List<TimelineItem> items) {
+    List<String> ids = new ArrayList<>();
+    for (TimelineItem item : items) {
+      ids.add(String.valueOf(item.getId()));
+    }
+    Collections.sort(ids);
+    return ids;
+  }
+}
@@ -0,0 +1,120 @@
+package org.mpilone.vaadin.timeline;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.Test;
+
+/**
+ * Tests for the {@link ItemReductionStrategy} implementations.
+ *
+ * @author mpilone
+ */
+public class ItemReductionStrategyTest {
+
+  @Test
+  public void testStrideUnsorted() {
+    // The items are in reverse order with the first half of the list
+    // covering the second half of the time.
+    List<TimelineItem> items = new ArrayList<>();
+    for (int i = 99; i >= 0; --i) {
+      items.add(new BasicTimelineItem(i, new Date(i * 1000L), null, null));
+    }
+
+    List<TimelineItem> result = new ItemReductionStrategy.Stride().reduce(
+        items, 4);
+    assertEquals(Arrays.<Object>asList(0, 25, 50, 75), ids(result));
+  }
+
+  @Test
+  public void testStrideWithinBudget() {
+    List<TimelineItem> items = Arrays.<TimelineItem>asList(
+        new BasicTimelineItem(2, new Date(2000), null, null),
+        new BasicTimelineItem(1, new Date(1000), null, null));
+
+    assertSame(items, new ItemReductionStrategy.Stride().reduce(items, 2));
+  }
+
+  @Test
+  public void testPriority() {
+    List<TimelineItem> items = new ArrayList<>();
+    for (int id : new int[]{7, 1, 9, 3, 8}) {
+      items.add(new BasicTimelineItem(id, new Date(id * 1000L), null, null));
+    }
+
+    // The highest IDs are kept in their original order.
+    List<TimelineItem> result = new ItemReductionStrategy.Priority(
+        (i1, i2) -> Integer.compare((Integer) i2.getId(), (Integer) i1.
+        getId())).reduce(items, 3);
+    assertEquals(Arrays.<Object>asList(7, 9, 8), ids(result));
+
+    // Ties are broken by the original order.
+    result = new ItemReductionStrategy.Priority((i1, i2) -> 0).reduce(items,
+        2);
+    assertEquals(Arrays.<Object>asList(7, 1), ids(result));
+  }
+
+  @Test
+  public void testGroupQuotaEven() {
+    List<TimelineItem> items = new ArrayList<>();
+    items.addAll(groupItems("a", 50));
+    items.addAll(groupItems("b", 50));
+    items.addAll(groupItems("c", 50));
+
+    List<TimelineItem> result = new ItemReductionStrategy.GroupQuota().reduce(
+        items, 30);
+    assertEquals(30, result.size());
+    assertEquals(10, countGroup(result, "a"));
+    assertEquals(10, countGroup(result, "b"));
+    assertEquals(10, countGroup(result, "c"));
+  }
+
+  @Test
+  public void testGroupQuotaShared() {
+    // The dense group is first so it would crowd out the others if the items
+    // were sampled without quotas.
+    List<TimelineItem> items = new ArrayList<>();
+    items.addAll(groupItems("a", 200));
+    items.addAll(groupItems("b", 2));
+    items.addAll(groupItems(null, 40));
+
+    // The small group is kept whole and its unused quota is shared by the
+    // other groups.
+    List<TimelineItem> result = new ItemReductionStrategy.GroupQuota().reduce(
+        items, 20);
+    assertEquals(20, result.size());
+    assertEquals(9, countGroup(result, "a"));
+    assertEquals(2, countGroup(result, "b"));
+    assertEquals(9, countGroup(result, null));
+  }
+
+  private static List<TimelineItem> groupItems(String groupId, int count) {
+    List<TimelineItem> items = new ArrayList<>();
+    for (int i = 0; i < count; ++i) {
+      BasicTimelineItem item = new BasicTimelineItem(groupId + i, new Date(i
+          * 1000L), null, null);
+      item.setGroupId(groupId);
+      items.add(item);
+    }
+    return items;
+  }
+
+  private static int countGroup(List<TimelineItem> items, String groupId) {
+    int count = 0;
+    for (TimelineItem item : items) {
+      if (Objects.equals(groupId, item.getGroupId())) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  static List<Object> ids(List<TimelineItem> items) {
+    List<Object> ids = new ArrayList<>();
+    for (TimelineItem item : items) {
+      ids.add(item.getId());
+    }
+    return ids;
+  }
+}
@@ -0,0 +1,202 @@
+package org.mpilone.vaadin.timeline;
+
+import static org.junit.Assert.*;
+
+import java.sql.*;
+import java.util.*;
+import java.util.Date;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.*;
+
+/**
+ * Tests for the {@link JdbcItemProvider} against an in memory H2 database.
+ *
+ * @author mpilone
+ */
+public class JdbcItemProviderTest {
+
+  private static int databaseCount;
+
+  private JdbcDataSource dataSource;
+  private Connection keepAlive;
+
+  @Before
+  public void setUp() throws SQLException {
+    dataSource = new JdbcDataSource();
+    dataSource.setURL("jdbc:h2:mem:timeline" + (databaseCount++));
+
+    // The in memory database is dropped when the last connection closes.
+    keepAlive = dataSource.getConnection();
+    try (Statement stmt = keepAlive.createStatement()) {
+      stmt.execute("CREATE TABLE events (id INT PRIMARY KEY, "
+          + "start_ts TIMESTAMP NOT NULL, end_ts TIMESTAMP, "
+          + "content VARCHAR(100), group_id VARCHAR(20), type VARCHAR(20))");
+    }
+
+    insert(1, 1000, 2000, "g1", "range");
+    insert(2, 500, 5000, "g2", null);
+    insert(3, 3000, null, "g1", "point");
+    insert(4, 100, null, "g2", null);
+    insert(5, 6000, 7000, "g3", null);
+  }
+
+  @After
+  public void tearDown() throws SQLException {
+    keepAlive.close();
+  }
+
+  @Test
+  public void testRangeQuery() {
+    JdbcItemProvider provider = createProvider(true);
+
+    // Items overlapping the window, including the one spanning it.
+    assertEquals(set(1, 2), ids(provider.getItems(new Date(1500), new Date(
+        2500))));
+    assertEquals(set(2, 5), ids(provider.getItems(new Date(4000), new Date(
+        6000))));
+    assertEquals(set(), ids(provider.getItems(new Date(8000), new Date(
+        9000))));
+  }
+
+  @Test
+  public void testPointItems() {
+    JdbcItemProvider provider = createProvider(true);
+
+    // Point items are only returned if they start in the window.
+    assertEquals(set(2, 3), ids(provider.getItems(new Date(2500), new Date(
+        3000))));
+    assertEquals(set(2), ids(provider.getItems(new Date(3001), new Date(
+        4000))));
+    assertEquals(set(4), ids(provider.getItems(new Date(0), new Date(100))));
+  }
+
+  @Test
+  public void testMapping() {
+    JdbcItemProvider provider = createProvider(true);
+
+    List<TimelineItem> items = provider.getItems(new Date(1000), new Date(
+        1000));
+    TimelineItem item = null;
+    for (TimelineItem i : items) {
+      if (((Number) i.getId()).intValue() == 1) {
+        item = i;
+      }
+    }
+
+    assertNotNull(item);
+    assertEquals(new Date(1000), item.getStart());
+    assertEquals(new Date(2000), item.getEnd());
+    assertEquals("item 1", item.getContent());
+    assertEquals("g1", item.getGroupId());
+    assertEquals(TimelineOptions.ItemType.RANGE, item.getType());
+  }
+
+  @Test
+  public void testTypeIgnoresDefaultLocale() {
+    Locale locale = Locale.getDefault();
+    try {
+      // The Turkish upper case of "point" is "POİNT".
+      Locale.setDefault(new Locale("tr", "TR"));
+
+      JdbcItemProvider provider = createProvider(true);
+      List<TimelineItem> items = provider.getItems(new Date(3000), new Date(
+          3000));
+      assertEquals(set(2, 3), ids(items));
+    }
+    finally {
+      Locale.setDefault(locale);
+    }
+  }
+
+  @Test
+  public void testGroupQuery() {
+    JdbcItemProvider provider = createProvider(true);
+
+    assertEquals(set(1, 3), ids(provider.getItems(new Date(0), new Date(
+        10000), Collections.singleton("g1"))));
+    assertEquals(set(2, 4, 5), ids(provider.getItems(new Date(0), new Date(
+        10000), new HashSet<>(Arrays.asList("g2", "g3")))));
+    assertEquals(set(), ids(provider.getItems(new Date(0), new Date(10000),
+        Collections.<String>emptySet())));
+  }
+
+  @Test
+  public void testGroupQueryWithoutGroupColumn() {
+    JdbcItemProvider provider = createProvider(false);
+
+    // The groups can't be filtered so all the items in the window are
+    // returned.
+    assertEquals(set(1, 2, 3, 4, 5), ids(provider.getItems(new Date(0),
+        new Date(10000), Collections.singleton("g1"))));
+  }
+
+  @Test
+  public void testGroupQueryWithManyGroups() {
+    JdbcItemProvider provider = createProvider(true);
+
+    // More groups than fit in a single IN list.
+    Set<String> groupIds = new HashSet<>();
+    for (int i = 0; i < 1200; ++i) {
+      groupIds.add("other" + i);
+    }
+    groupIds.add("g1");
+    groupIds.add("g3");
+
+    assertEquals(set(1, 3, 5), ids(provider.getItems(new Date(0), new Date(
+        10000), groupIds)));
+  }
+
+  /**
+   * Creates a provider for the events table with no window expansion.
+   *
+   * @param groups true to map the group ID column
+   *
+   * @return the new provider
+   */
+  private JdbcItemProvider createProvider(boolean groups) {
+    JdbcItemProvider.ColumnMapping mapping =
+        new JdbcItemProvider.ColumnMapping("id", "start_ts", "end_ts",
+            "content");
+    mapping.setTypeColumn("type");
+    if (groups) {
+      mapping.setGroupIdColumn("group_id");
+    }
+
+    JdbcItemProvider provider = new JdbcItemProvider(dataSource, "events",
+        mapping);
+    provider.setWindowExpandFactor(0);
+    return provider;
+  }
+
+  private void insert(int id, long start, Long end, String groupId,
+      String type) throws SQLException {
+    try (PreparedStatement stmt = keepAlive.prepareStatement(
+        "INSERT INTO events VALUES (?, ?, ?, ?, ?, ?)")) {
+      stmt.setInt(1, id);
+      stmt.setTimestamp(2, new Timestamp(start));
+      stmt.setTimestamp(3, end == null ? null : new Timestamp(end));
+      stmt.setString(4, "item " + id);
+      stmt.setString(5, groupId);
+      stmt.setString(6, type);
+      stmt.executeUpdate();
+    }
+  }
+
+  private void insert(int id, long start, long end, String groupId,
+      String type) throws SQLException {
+    insert(id, start, Long.valueOf(end), groupId, type);
+  }
+
+  private static Set<Integer> ids(List<TimelineItem> items) {
+    Set<Integer> ids = new HashSet<>();
+    for (TimelineItem item : items) {
+      ids.add(((Number) item.getId()).intValue());
+    }
+    return ids;
+  }
+
+  private static Set<Integer> set(Integer... ids) {
+    return new HashSet<>(Arrays.asList(ids));
+  }
+}
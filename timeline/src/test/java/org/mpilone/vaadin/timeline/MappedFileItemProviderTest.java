@@ -0,0 +1,93 @@
+package org.mpilone.vaadin.timeline;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.file.*;
+import java.util.*;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for the {@link MappedFileItemProvider} and
+ * {@link TimelineSnapshotWriter}.
+ *
+ * @author mpilone
+ */
+public class MappedFileItemProviderTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    BasicTimelineItem item = new BasicTimelineItem(1, new Date(1000),
+        new Date(2000), "content");
+    item.setTitle("title");
+    item.setGroupId("group");
+    item.setSubgroupId("subgroup");
+    item.setStyleName("style-name");
+    item.setStyle("color: red");
+    item.setType(TimelineOptions.ItemType.RANGE);
+    item.setEditable(true);
+    BasicTimelineItem point = new BasicTimelineItem("2", new Date(1500), null,
+        null);
+
+    Path file = folder.getRoot().toPath().resolve("items.snap");
+    TimelineSnapshotWriter.write(file, Arrays.asList(point, item));
+
+    // The temporary strings file is removed when the writer is closed.
+    File[] files = folder.getRoot().listFiles();
+    assertEquals(1, files.length);
+
+    try (MappedFileItemProvider provider = new MappedFileItemProvider(file)) {
+      List<TimelineItem> result = provider.getItems(new Date(0), new Date(
+          3000));
+      assertEquals(2, result.size());
+
+      TimelineItem read = result.get(0);
+      assertEquals("1", read.getId());
+      assertEquals(new Date(1000), read.getStart());
+      assertEquals(new Date(2000), read.getEnd());
+      assertEquals("content", read.getContent());
+      assertEquals("title", read.getTitle());
+      assertEquals("group", read.getGroupId());
+      assertEquals("subgroup", read.getSubgroupId());
+      assertEquals("style-name", read.getStyleName());
+      assertEquals("color: red", read.getStyle());
+      assertEquals(TimelineOptions.ItemType.RANGE, read.getType());
+      assertEquals(Boolean.TRUE, read.getEditable());
+
+      read = result.get(1);
+      assertEquals("2", read.getId());
+      assertNull(read.getEnd());
+      assertNull(read.getContent());
+      assertNull(read.getType());
+      assertNull(read.getEditable());
+    }
+  }
+
+  @Test
+  public void testMatchesBasicProvider() throws Exception {
+    Random random = new Random(1);
+    List<TimelineItem> items = ItemProviderAssert.randomItems(random, 2000);
+
+    Path file = folder.getRoot().toPath().resolve("items.snap");
+    List<TimelineItem> sorted = new ArrayList<>(items);
+    sorted.sort((i1, i2) -> i1.getStart().compareTo(i2.getStart()));
+    try (TimelineSnapshotWriter writer = new TimelineSnapshotWriter(file, 16)) {
+      for (TimelineItem item : sorted) {
+        writer.append(item);
+      }
+    }
+
+    try (MappedFileItemProvider provider = new MappedFileItemProvider(file)) {
+      provider.setWindowExpandFactor(0);
+      assertEquals(items.size(), provider.size());
+
+      ItemProviderAssert.assertSameItems(ItemProviderAssert.basicProvider(
+          items), provider, random);
+    }
+  }
+}
@@ -0,0 +1,80 @@
+package org.mpilone.vaadin.timeline;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.Field;
+import java.util.*;
+
+import org.junit.Test;
+import org.mpilone.vaadin.timeline.shared.TimelineClientRpc;
+import org.mpilone.vaadin.timeline.shared.TimelineServerRpc;
+
+import com.vaadin.server.ClientMethodInvocation;
+
+/**
+ * Tests for the {@link Timeline} that inspect the RPC calls made to the
+ * client.
+ *
+ * @author mpilone
+ */
+public class TimelineTest {
+
+  @Test
+  public void testBudgetKeepsSelection() throws Exception {
+    BasicItemProvider provider = new BasicItemProvider();
+    provider.setWindowExpandFactor(0);
+    for (int i = 0; i < 100; ++i) {
+      provider.addItem(new BasicTimelineItem(i, new Date(i * 1000L), null,
+          null));
+    }
+
+    Timeline timeline = new Timeline("test", provider);
+    timeline.setItemBudget(10);
+    timeline.setSelection(Arrays.<Object>asList(3, 57), null);
+
+    List<TimelineClientRpc.Item> items = fetchItems(timeline, 0, 99000);
+    assertEquals(10, items.size());
+
+    // The selected items are kept and the others are sampled from the rest of
+    // the budget, all in the original order.
+    List<Long> starts = new ArrayList<>();
+    for (TimelineClientRpc.Item item : items) {
+      starts.add(item.start);
+    }
+    assertEquals(Arrays.asList(0L, 3000L, 13000L, 25000L, 37000L, 50000L,
+        57000L, 63000L, 75000L, 87000L), starts);
+  }
+
+  /**
+   * Performs the initial response, changes the window as the client would, and
+   * returns the items sent to the client in the following response.
+   *
+   * @param timeline the timeline
+   * @param start the start of the window
+   * @param end the end of the window
+   *
+   * @return the items sent to the client
+   *
+   * @throws ReflectiveOperationException if the server RPC can't be accessed
+   */
+  private static List<TimelineClientRpc.Item> fetchItems(Timeline timeline,
+      long start, long end) throws ReflectiveOperationException {
+    timeline.beforeClientResponse(true);
+    timeline.retrievePendingRpcCalls();
+
+    Field field = Timeline.class.getDeclaredField("serverRpc");
+    field.setAccessible(true);
+    ((TimelineServerRpc) field.get(timeline)).rangeChanged(start, end, true);
+    timeline.beforeClientResponse(false);
+
+    for (ClientMethodInvocation invocation : timeline.
+        retrievePendingRpcCalls()) {
+      if (invocation.getMethodName().equals("setItems")) {
+        return Arrays.asList(
+            (TimelineClientRpc.Item[]) invocation.getParameters()[0]);
+      }
+    }
+    fail("No items sent to the client.");
+    return null;
+  }
+}
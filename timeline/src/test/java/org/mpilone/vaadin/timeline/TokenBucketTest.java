@@ -0,0 +1,81 @@
+package org.mpilone.vaadin.timeline;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import org.junit.Test;
+
+/**
+ * Tests for the {@link TokenBucket}.
+ *
+ * @author mpilone
+ */
+public class TokenBucketTest {
+
+  @Test
+  public void testDelay() {
+    TokenBucket bucket = new TokenBucket(10);
+    assertEquals(0, bucket.getDelayMillis(1));
+    assertEquals(0, bucket.getDelayMillis(10));
+
+    // One token is added every 100 millis.
+    bucket.consume(10);
+    assertDelay(100, bucket.getDelayMillis(1));
+    assertDelay(1000, bucket.getDelayMillis(10));
+  }
+
+  @Test
+  public void testDebt() {
+    TokenBucket bucket = new TokenBucket(10);
+
+    // The bucket goes into debt and must earn back the extra tokens.
+    bucket.consume(30);
+    assertDelay(2000, bucket.getDelayMillis(0));
+    assertDelay(2100, bucket.getDelayMillis(1));
+  }
+
+  @Test
+  public void testCapacity() {
+    // The bucket holds one second of tokens.
+    TokenBucket bucket = new TokenBucket(1000);
+    assertEquals(0, bucket.getDelayMillis(1000));
+    assertEquals(1, bucket.getDelayMillis(1001));
+
+    // But always at least one token.
+    bucket = new TokenBucket(0.5);
+    assertEquals(0, bucket.getDelayMillis(1));
+    assertDelay(2000, bucket.getDelayMillis(2));
+  }
+
+  @Test
+  public void testSerialization() throws Exception {
+    TokenBucket bucket = new TokenBucket(10);
+    bucket.consume(10);
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(bucket);
+    }
+    try (ObjectInputStream in = new ObjectInputStream(
+        new ByteArrayInputStream(bytes.toByteArray()))) {
+      bucket = (TokenBucket) in.readObject();
+    }
+
+    // The refill time is reset so the tokens are unchanged.
+    assertEquals(10, bucket.getRate(), 0);
+    assertDelay(100, bucket.getDelayMillis(1));
+  }
+
+  /**
+   * Asserts that the delay is at most the expected delay and no more than 10
+   * millis less to allow for the time the test takes to run.
+   *
+   * @param expected the expected delay if no time passed
+   * @param actual the actual delay
+   */
+  private static void assertDelay(long expected, long actual) {
+    assertTrue("Expected about " + expected + " but was " + actual,
+        actual <= expected && actual >= expected - 10);
+  }
+}
@@ -0,0 +1,82 @@
+package org.mpilone.vaadin.timeline;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.Test;
+
+/**
+ * Tests for the {@link WindowPrefetcher}.
+ *
+ * @author mpilone
+ */
+public class WindowPrefetcherTest {
+
+  @Test
+  public void testPrefetchFromWindowEdge() {
+    List<DateRange> queries = new ArrayList<>();
+    BasicItemProvider provider = new BasicItemProvider() {
+      @Override
+      public List<TimelineItem> doGetItems(Date startDate, Date endDate) {
+        queries.add(new DateRange(startDate, endDate));
+        return super.doGetItems(startDate, endDate);
+      }
+    };
+    provider.setWindowExpandFactor(0);
+
+    // A long item spanning the edge of the window and point items.
+    provider.addItem(new BasicTimelineItem("long", new Date(900), new Date(
+        1500), null));
+    for (int i = 0; i <= 100; ++i) {
+      provider.addItem(new BasicTimelineItem(i, new Date(i * 100L), null,
+          null));
+    }
+
+    WindowPrefetcher prefetcher = new WindowPrefetcher(Runnable::run);
+    prefetcher.setMaxDepth(2);
+
+    // Panning forward.
+    DateRange window = new DateRange(new Date(100), new Date(1100));
+    prefetcher.rangeChanged(new DateRange(new Date(0), new Date(1000)));
+    prefetcher.rangeChanged(window);
+    List<TimelineItem> windowItems = provider.getItems(window.getStart(),
+        window.getEnd());
+
+    queries.clear();
+    assertTrue(prefetcher.prefetch(window, windowItems, null, provider));
+
+    // Only the span beyond the window was queried.
+    assertEquals(Arrays.asList(new DateRange(new Date(1100), new Date(3100))),
+        queries);
+    assertEquals(22, prefetcher.drainFetchedItemCount());
+
+    // A window overlapping the current window and the span is served from the
+    // buffer with the padding and without duplicates.
+    List<TimelineItem> items = prefetcher.getItems(new DateRange(new Date(
+        500), new Date(1500)));
+    assertNotNull(items);
+
+    List<Object> ids = new ArrayList<>();
+    for (TimelineItem item : items) {
+      ids.add(item.getId());
+    }
+    Collections.sort(ids, (id1, id2) -> id1.toString().compareTo(id2.
+        toString()));
+    List<Object> expected = new ArrayList<>();
+    expected.add("long");
+    for (int i = 4; i <= 16; ++i) {
+      expected.add(i);
+    }
+    Collections.sort(expected, (id1, id2) -> id1.toString().compareTo(id2.
+        toString()));
+    assertEquals(expected, ids);
+
+    // The buffer already covers the span so nothing is fetched.
+    assertFalse(prefetcher.prefetch(window, windowItems, null, provider));
+
+    // Windows outside of the buffer aren't served.
+    assertNull(prefetcher.getItems(new DateRange(new Date(0), new Date(
+        1000))));
+  }
+}